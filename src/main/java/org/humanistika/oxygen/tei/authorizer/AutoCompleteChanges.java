@@ -0,0 +1,119 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the auto-completes which are unchanged
+ * when the configuration is reloaded
+ *
+ * An auto-complete of the previous configuration is matched to an
+ * auto-complete of the reloaded configuration which completes the
+ * same attribute of the same elements. The match is unchanged if the
+ * suggestions for it would be retrieved and cached in the same way,
+ * in which case the suggestions already cached for it remain valid.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class AutoCompleteChanges {
+
+    private AutoCompleteChanges() {
+    }
+
+    /**
+     * Find the unchanged auto-completes
+     *
+     * @param previous the auto-completes of the previous configuration
+     * @param reloaded the auto-completes of the reloaded configuration
+     *
+     * @return a map from each unchanged auto-complete of the previous
+     *     configuration to its counterpart in the reloaded configuration
+     */
+    static Map<AutoComplete, AutoComplete> unchanged(@Nullable final List<AutoComplete> previous, @Nullable final List<AutoComplete> reloaded) {
+        final Map<AutoComplete, AutoComplete> unchanged = new IdentityHashMap<>();
+        if(previous == null || reloaded == null) {
+            return unchanged;
+        }
+
+        final Map<List<Object>, Deque<AutoComplete>> byTarget = new HashMap<>();
+        for(final AutoComplete autoComplete : reloaded) {
+            byTarget.computeIfAbsent(target(autoComplete), key -> new ArrayDeque<>()).add(autoComplete);
+        }
+
+        for(final AutoComplete autoComplete : previous) {
+            final Deque<AutoComplete> counterparts = byTarget.get(target(autoComplete));
+            final AutoComplete counterpart = counterparts == null ? null : counterparts.poll();
+            if(counterpart != null && source(autoComplete).equals(source(counterpart))) {
+                unchanged.put(autoComplete, counterpart);
+            }
+        }
+        return unchanged;
+    }
+
+    /**
+     * The attribute and elements which an auto-complete completes
+     */
+    private static List<Object> target(final AutoComplete autoComplete) {
+        return Arrays.asList(
+                autoComplete.getNamespaceBindings(),
+                autoComplete.getContext(),
+                autoComplete.getAttribute(),
+                autoComplete.getSelection() == null ? null : autoComplete.getSelection().getXPath(),
+                autoComplete.getDependent() == null ? null : autoComplete.getDependent().getAttribute(),
+                autoComplete.getDependent() == null ? null : autoComplete.getDependent().getDefault()
+        );
+    }
+
+    /**
+     * How the suggestions for an auto-complete are retrieved and cached
+     */
+    private static List<Object> source(final AutoComplete autoComplete) {
+        final RequestInfo requestInfo = autoComplete.getRequestInfo();
+        final Authentication authentication = requestInfo == null ? null : requestInfo.getAuthentication();
+        final CacheInfo cacheInfo = autoComplete.getCacheInfo();
+        return Arrays.asList(
+                requestInfo == null ? null : requestInfo.getUrl(),
+                authentication == null ? null : authentication.getAuthenticationType(),
+                authentication == null ? null : authentication.getUsername(),
+                authentication == null ? null : authentication.getPassword(),
+                autoComplete.getResponseAction() == null ? null : autoComplete.getResponseAction().getTransformation(),
+                autoComplete.getPageSize(),
+                cacheInfo.getTtl(),
+                cacheInfo.getMaxEntries(),
+                cacheInfo.getIndexTtl(),
+                cacheInfo.isPrefixFilter()
+        );
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import ro.sync.contentcompletion.xml.ContextElement;
+
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An index of the auto-completes by the name of their
+ * attribute, built once when the configuration is loaded
+ *
+ * Each auto-complete is held as a {@link Candidate} whose XPaths and
+ * namespace context are prepared in advance. Where the context of an
+ * auto-complete is a simple path, the name of its last step is also
+ * extracted, so that elements with a different name can be rejected
+ * without evaluating the XPath.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class AutoCompleteIndex {
+
+    /**
+     * A simple path, e.g. //tei:w or /tei:TEI//tei:w, capturing the prefix and local name of its last step
+     */
+    private final static Pattern SIMPLE_PATH = Pattern.compile("^(?:/{1,2}[A-Za-z_][\\w.\\-]*(?::[A-Za-z_][\\w.\\-]*)?)*/{1,2}(?:([A-Za-z_][\\w.\\-]*):)?([A-Za-z_][\\w.\\-]*)$");
+
+    private final Map<String, List<Candidate>> byAttribute;
+
+    private AutoCompleteIndex(final Map<String, List<Candidate>> byAttribute) {
+        this.byAttribute = byAttribute;
+    }
+
+    /**
+     * Build an index of auto-completes
+     *
+     * @param autoCompletes the auto-completes, in order of precedence
+     *
+     * @return the index
+     */
+    static AutoCompleteIndex build(@Nullable final List<AutoComplete> autoCompletes) {
+        final Map<String, List<Candidate>> byAttribute = new HashMap<>();
+        if(autoCompletes != null) {
+            //auto-completes with the same interned namespace bindings share a namespace context
+            final Map<Map<String, String>, NamespaceContext> namespaceContexts = new IdentityHashMap<>();
+            for(final AutoComplete autoComplete : autoCompletes) {
+                final NamespaceContext namespaceContext = namespaceContexts.computeIfAbsent(autoComplete.getNamespaceBindings(), NamespaceBindingsContext::new);
+                byAttribute.computeIfAbsent(autoComplete.getAttribute(), attribute -> new ArrayList<>()).add(new Candidate(autoComplete, namespaceContext));
+            }
+        }
+        return new AutoCompleteIndex(byAttribute);
+    }
+
+    /**
+     * Get the candidate auto-completes for an attribute
+     *
+     * @param attributeName the qualified name of the attribute
+     *
+     * @return the candidates, in order of precedence
+     */
+    List<Candidate> getCandidates(@Nullable final String attributeName) {
+        final List<Candidate> candidates = attributeName == null ? null : byAttribute.get(attributeName);
+        return candidates == null ? Collections.emptyList() : candidates;
+    }
+
+    /**
+     * An auto-complete, with its XPaths prepared for evaluation
+     */
+    static class Candidate {
+        final AutoComplete autoComplete;
+        final NamespaceContext namespaceContext;
+
+        /**
+         * Evaluates to true if the context item is matched by the context of the auto-complete
+         */
+        final String contextXPath;
+
+        /**
+         * Evaluates to the selected value, or null if the auto-complete has no selection
+         */
+        @Nullable final String selectionXPath;
+
+        @Nullable private final String elementLocalName;
+        @Nullable private final String elementNamespace;
+
+        Candidate(final AutoComplete autoComplete) {
+            this(autoComplete, new NamespaceBindingsContext(autoComplete.getNamespaceBindings()));
+        }
+
+        Candidate(final AutoComplete autoComplete, final NamespaceContext namespaceContext) {
+            this.autoComplete = autoComplete;
+            this.namespaceContext = namespaceContext;
+            this.contextXPath = "for $n in . return exists((" + autoComplete.getContext() + ")[. is $n])";
+            this.selectionXPath = autoComplete.getSelection() == null ? null : "string(" + autoComplete.getSelection().getXPath() + ")";
+
+            final Matcher matcher = autoComplete.getContext() == null ? null : SIMPLE_PATH.matcher(autoComplete.getContext().trim());
+            if(matcher != null && matcher.matches()) {
+                final String prefix = matcher.group(1);
+                this.elementLocalName = matcher.group(2);
+                if(prefix == null) {
+                    // the default element namespace is not known, so only the local name can be compared
+                    this.elementNamespace = null;
+                } else {
+                    final String namespace = autoComplete.getNamespaceBindings() == null ? null : autoComplete.getNamespaceBindings().get(prefix);
+                    this.elementNamespace = namespace == null ? XMLConstants.NULL_NS_URI : namespace;
+                }
+            } else {
+                this.elementLocalName = null;
+                this.elementNamespace = null;
+            }
+        }
+
+        /**
+         * Cheaply determine whether the context of the auto-complete could match an element
+         *
+         * @param element the element
+         *
+         * @return false if the context cannot match the element, true if the context XPath must be evaluated
+         */
+        boolean mayMatch(final ContextElement element) {
+            if(elementLocalName == null || element.getQName() == null) {
+                return true;
+            }
+
+            final String qname = element.getQName();
+            final int idxColon = qname.indexOf(':');
+            final String localName = idxColon == -1 ? qname : qname.substring(idxColon + 1);
+            if(!elementLocalName.equals(localName)) {
+                return false;
+            }
+
+            if(elementNamespace != null) {
+                final String namespace = element.getNamespace() == null ? XMLConstants.NULL_NS_URI : element.getNamespace();
+                return elementNamespace.equals(namespace);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A NamespaceContext backed by the namespace
+ * bindings of an auto-complete
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class NamespaceBindingsContext implements NamespaceContext {
+    private final Map<String, String> namespaceBindings;
+
+    NamespaceBindingsContext(final Map<String, String> namespaceBindings) {
+        this.namespaceBindings = namespaceBindings;
+    }
+
+    @Override
+    public String getNamespaceURI(final String prefix) {
+        final String namespaceUri = namespaceBindings.get(prefix);
+        return namespaceUri == null ? XMLConstants.NULL_NS_URI : namespaceUri;
+    }
+
+    @Override
+    public String getPrefix(final String namespaceURI) {
+        for (final Map.Entry<String, String> binding : namespaceBindings.entrySet()) {
+            if (binding.getValue().equals(namespaceURI)) {
+                return binding.getKey();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<String> getPrefixes(final String namespaceURI) {
+        final String prefix = getPrefix(namespaceURI);
+        return prefix == null ? Collections.emptyIterator() : Collections.singletonList(prefix).iterator();
+    }
+}
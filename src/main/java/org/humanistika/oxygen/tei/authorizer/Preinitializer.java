@@ -0,0 +1,100 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initializes the subsystems of the plugin in the background
+ * when it is loaded, rather than on the first completion
+ *
+ * The steps are run in order on a single low priority daemon thread.
+ * A step which fails is logged and the remaining steps are still run,
+ * as anything which a step did not initialize is simply initialized
+ * when it is first needed.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class Preinitializer {
+    private final static Logger LOGGER = LoggerFactory.getLogger(Preinitializer.class);
+
+    /**
+     * A step of the initialization
+     */
+    @FunctionalInterface
+    interface Step {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    /**
+     * Add a step to the initialization
+     *
+     * @param name the name of the step, for logging
+     * @param step the step
+     *
+     * @return this
+     */
+    Preinitializer step(final String name, final Step step) {
+        steps.put(name, step);
+        return this;
+    }
+
+    /**
+     * Start running the steps in the background
+     *
+     * @return a future which is completed when all of the steps have been run
+     */
+    CompletableFuture<Void> start() {
+        final Thread thread = new Thread(this::run, "tei-authorizer-init");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return ready;
+    }
+
+    private void run() {
+        final long start = System.nanoTime();
+        try {
+            for(final Map.Entry<String, Step> step : steps.entrySet()) {
+                final long stepStart = System.nanoTime();
+                try {
+                    step.getValue().run();
+                    LOGGER.debug("Initialized {} in {}ms", step.getKey(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart));
+                } catch(final Exception e) {
+                    LOGGER.warn("Unable to initialize " + step.getKey() + " in advance, it will be initialized when first needed: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            LOGGER.info("TEI-Authorizer ready in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            ready.complete(null);
+        }
+    }
+}
@@ -19,26 +19,72 @@
  */
 package org.humanistika.oxygen.tei.authorizer;
 
+import org.humanistika.ns.tei_completer.Suggestion;
+import org.humanistika.ns.tei_completer.Suggestions;
+import org.humanistika.oxygen.tei.authorizer.cache.SingleFlight;
+import org.humanistika.oxygen.tei.authorizer.cache.SuggestionCache;
+import org.humanistika.oxygen.tei.authorizer.cache.SuggestionPrefetcher;
+import org.humanistika.oxygen.tei.authorizer.cache.SuggestionTrie;
 import org.humanistika.oxygen.tei.authorizer.configuration.ConfigurationFactory;
+import org.humanistika.oxygen.tei.authorizer.configuration.ConfigurationWatcher;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
 import org.humanistika.oxygen.tei.authorizer.gui.NewSuggestionForm;
+import org.humanistika.oxygen.tei.authorizer.gui.PatternInputVerifier;
+import org.humanistika.oxygen.tei.authorizer.gui.RequiredVerifier;
+import org.humanistika.oxygen.tei.authorizer.index.SuggestionIndexes;
+import org.humanistika.oxygen.tei.authorizer.metrics.Metrics;
+import org.humanistika.oxygen.tei.authorizer.metrics.MetricsReporter;
+import org.humanistika.oxygen.tei.authorizer.queue.QueuedUpload;
+import org.humanistika.oxygen.tei.authorizer.queue.UploadQueue;
 import org.humanistika.oxygen.tei.authorizer.remote.Client;
+import org.humanistika.oxygen.tei.authorizer.remote.impl.JerseyClient;
 import org.humanistika.oxygen.tei.authorizer.remote.impl.JerseyClientFactory;
 import org.humanistika.oxygen.tei.completer.TeiCompleter;
 import org.humanistika.oxygen.tei.completer.configuration.Configuration;
 import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Dependent;
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
 import org.humanistika.oxygen.tei.completer.remote.ClientFactory;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ro.sync.contentcompletion.xml.Attr;
 import ro.sync.contentcompletion.xml.CIValue;
+import ro.sync.contentcompletion.xml.ContextElement;
 import ro.sync.contentcompletion.xml.WhatPossibleValuesHasAttributeContext;
+import ro.sync.exml.workspace.api.PluginWorkspace;
+import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
+import ro.sync.exml.workspace.api.listeners.WSEditorChangeListener;
 
 import javax.swing.*;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.NamespaceContext;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * TEI-Authorizer
@@ -57,6 +103,152 @@ import java.util.List;
  */
 public class TeiAuthorizer extends TeiCompleter {
     private final static Logger LOGGER = LoggerFactory.getLogger(TeiAuthorizer.class);
+    private final static String UPLOAD_JOURNAL_FILE_NAME = "upload-queue.journal";
+    private final static String METRICS_SNAPSHOT_FILE_NAME = "metrics.properties";
+    private final static String SUGGESTION_INDEX_DIRECTORY_NAME = "suggestion-index";
+    private final static long METRICS_SNAPSHOT_INTERVAL = TimeUnit.MINUTES.toSeconds(1);
+
+    private final static String FILTER_TIMER = "filterAttributeValues";
+    private final static String FILTER_CALLS = "filterAttributeValues.calls";
+    private final static String FILTER_MATCHED = "filterAttributeValues.matched";
+    private final static String FILTER_SUGGESTIONS = "filterAttributeValues.suggestions";
+
+    private final static String CACHE_HITS = "suggestionCache.hits";
+    private final static String CACHE_MISSES = "suggestionCache.misses";
+    private final static String INDEX_HITS = "suggestionIndex.hits";
+    private final static String INDEX_FALLBACKS = "suggestionIndex.fallbacks";
+    private final static String BUDGET_EXCEEDED = "filterAttributeValues.budgetExceeded";
+    private final static String FETCH_COALESCED = "suggestionFetch.coalesced";
+    private final static String CONFIGURATION_RELOADS = "configuration.reloads";
+    private final static int FETCH_THREADS = 4;
+
+    private final static Metrics metrics = Metrics.getInstance();
+    private final static SuggestionCache suggestionCache = new SuggestionCache();
+    private final static SingleFlight<AutoCompleteMatch, List<CIValue>> suggestionFetches = new SingleFlight<>(metrics.counter(FETCH_COALESCED));
+    @Nullable private static volatile LoadedConfiguration loadedConfiguration = null;
+    @Nullable private static ConfigurationWatcher configurationWatcher = null;
+    @Nullable private static volatile UploadQueue uploadQueue = null;
+    private final static Set<String> unconfiguredUploadKeys = ConcurrentHashMap.newKeySet();
+    @Nullable private static volatile MetricsReporter metricsReporter = null;
+    @Nullable private static volatile SuggestionIndexes suggestionIndexes = null;
+    @Nullable private static PrefetchListener prefetchListener = null;
+    @Nullable private volatile ExecutorService fetchExecutor = null;
+    private final CompletableFuture<Void> ready;
+
+    static {
+        //release the resources which are shared by all instances before Oxygen exits
+        Runtime.getRuntime().addShutdownHook(new Thread(TeiAuthorizer::dispose, "tei-authorizer-shutdown"));
+    }
+
+    public TeiAuthorizer() {
+        super();
+        installPrefetcher();
+        this.ready = PreInitialization.ready;
+    }
+
+    /**
+     * Releases the resources which are shared by all instances of
+     * the plugin, any which are needed again are recreated on demand
+     */
+    public static void dispose() {
+        synchronized(TeiAuthorizer.class) {
+            if(prefetchListener != null) {
+                prefetchListener.remove();
+                prefetchListener = null;
+            }
+
+            if(configurationWatcher != null) {
+                try {
+                    configurationWatcher.close();
+                } catch(final IOException e) {
+                    LOGGER.warn("Unable to stop watching configuration: " + e.getMessage(), e);
+                }
+                configurationWatcher = null;
+            }
+            loadedConfiguration = null;
+
+            if(suggestionIndexes != null) {
+                //merges any recent suggestions into the index files
+                suggestionIndexes.close();
+                suggestionIndexes = null;
+            }
+
+            if(uploadQueue != null) {
+                try {
+                    uploadQueue.close();
+                } catch(final IOException e) {
+                    LOGGER.warn("Unable to close upload queue: " + e.getMessage(), e);
+                }
+                uploadQueue = null;
+            }
+
+            if(metricsReporter != null) {
+                metricsReporter.close();
+                metricsReporter = null;
+            }
+        }
+    }
+
+    /**
+     * Determines whether the plugin has finished initializing in the
+     * background, after which the first completion is as fast as any other
+     *
+     * @return true if the plugin is ready
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * Holds the pre-initialization, which is started when the first
+     * instance of the plugin is created, and shared by all instances
+     */
+    private static class PreInitialization {
+        private final static CompletableFuture<Void> ready = preInitialize();
+    }
+
+    /**
+     * Initializes the configuration, the clients and the dialogs in the
+     * background when the plugin is loaded by Oxygen, so that the first
+     * completion does not pay for them on the event dispatch thread
+     *
+     * @return a future which is completed when the plugin is ready
+     */
+    private static CompletableFuture<Void> preInitialize() {
+        if(PluginWorkspaceProvider.getPluginWorkspace() == null) {
+            //not running within Oxygen
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return new Preinitializer()
+                .step("configuration", TeiAuthorizer::getLoadedConfiguration)
+                .step("clients", TeiAuthorizer::preInitializeClients)
+                .step("new suggestion form", () -> {
+                    for(final Class<?> clazz : new Class<?>[] { NewSuggestionForm.class, PatternInputVerifier.class, RequiredVerifier.class }) {
+                        Class.forName(clazz.getName(), true, clazz.getClassLoader());
+                    }
+                })
+                .start();
+    }
+
+    /**
+     * Builds the shared client for each server and type of authentication used
+     * by the auto-completes, and initializes its Jersey runtime and JAXB contexts
+     */
+    private static void preInitializeClients() throws JAXBException {
+        final List<AutoComplete> autoCompletes = getAutoCompletes();
+        if(autoCompletes == null) {
+            return;
+        }
+
+        final Set<JerseyClient> clients = new HashSet<>();
+        for(final AutoComplete autoComplete : autoCompletes) {
+            final JerseyClient client = getRequestClient(autoComplete, autoComplete.getRequestInfo());
+            if(clients.add(client)) {
+                client.preInitialize();
+            }
+        }
+    }
 
     @Override
     public String getDescription() {
@@ -69,43 +261,620 @@ public class TeiAuthorizer extends TeiCompleter {
      */
     @Override
     public List<CIValue> filterAttributeValues(List<CIValue> list, final WhatPossibleValuesHasAttributeContext context) {
+        final long start = System.nanoTime();
+        metrics.counter(FILTER_CALLS).increment();
         if (context != null) {
-            final AutoCompleteSuggestions<org.humanistika.oxygen.tei.completer.configuration.beans.AutoComplete> autoCompleteSuggestions = getAutoCompleteSuggestions(context);
+            final MatchedSuggestions matchedSuggestions = getMatchedSuggestions(context);
 
-            if(autoCompleteSuggestions != null) {
+            if(matchedSuggestions != null) {
+                metrics.counter(FILTER_MATCHED).increment();
                 if (list == null) {
                     list = new ArrayList<>();
                 }
 
-                list.addAll(autoCompleteSuggestions.getSuggestions());
+                final AutoCompleteMatch match = matchedSuggestions.match;
+                final String prefix = getPrefix(match, context);
+                List<CIValue> suggestions = filterByPrefix(match, matchedSuggestions.suggestions, prefix);
 
+                //only show the first page of suggestions, the user may ask for "More..."
+                final int pageSize = match.autoComplete.getPageSize();
+                boolean more = false;
+                if(pageSize > 0) {
+                    //if the server returned a full page it may have more, however many of the page match the prefix
+                    more = match.autoComplete.isServerPaged() && matchedSuggestions.suggestions.size() >= pageSize;
+                    if(suggestions.size() > pageSize) {
+                        suggestions = suggestions.subList(0, pageSize);
+                        more = true;
+                    }
+                }
 
-                final AutoComplete autoComplete = ((AutoComplete)autoCompleteSuggestions.getAutoComplete());
-                final UploadInfo uploadInfo = autoComplete.getUploadInfo();
+                metrics.counter(FILTER_SUGGESTIONS).add(suggestions.size());
+                list.addAll(suggestions);
+                if(more) {
+                    list.add(new MoreSuggestionsCIValue(match.autoComplete, match.selectedValue, match.dependentValue, prefix, pageSize));
+                }
 
-                //only show the "Add New..." if there is an auto-complete with upload config for the
-                if(uploadInfo != null) {
-                    final AutoCompleteContext autoCompleteContext = autoCompleteSuggestions.getAutoCompleteContext();
 
+                //only show the "Add New..." if there is an auto-complete with upload config for the
+                if(match.autoComplete.hasUpload()) {
                     //Add an "Add New..." option to the list
-                    list.add(new AddNewSuggestionCIValue(uploadInfo, autoCompleteContext.getSelectedValue(), autoCompleteContext.getDependentValue()));
+                    list.add(new AddNewSuggestionCIValue(match.autoComplete, match.selectedValue, match.dependentValue));
                 }
             }
         }
+        metrics.timer(FILTER_TIMER).recordSince(start);
         return list;
     }
 
+    /**
+     * Get the suggestions for the context, from the suggestion cache
+     * or the persistent suggestion index if possible, otherwise from the server.
+     *
+     * If the server returns no suggestions, for example because it is
+     * unreachable, then any suggestions in the index are used regardless
+     * of their age
+     *
+     * The auto-completes are only matched through the index of their
+     * attribute names, so an auto-complete which is not in the index
+     * is never matched
+     *
+     * @param context the context of the attribute
+     *
+     * @return the suggestions, or null if no auto-complete matches the context
+     */
+    @Nullable
+    private MatchedSuggestions getMatchedSuggestions(final WhatPossibleValuesHasAttributeContext context) {
+        final AutoCompleteMatch match = matchAutoComplete(context);
+        if(match == null) {
+            return null;
+        }
+
+        final List<CIValue> cached = suggestionCache.get(match.autoComplete, match.selectedValue, match.dependentValue);
+        if(cached != null) {
+            metrics.counter(CACHE_HITS).increment();
+            return new MatchedSuggestions(match, cached);
+        }
+
+        final CacheInfo cacheInfo = match.autoComplete.getCacheInfo();
+        if(cacheInfo.isEnabled() && cacheInfo.getIndexTtl() > 0) {
+            final List<CIValue> indexed = getSuggestionIndexes().lookup(match.autoComplete, match.selectedValue, match.dependentValue, cacheInfo.getIndexTtl());
+            if(indexed != null) {
+                metrics.counter(INDEX_HITS).increment();
+                return new MatchedSuggestions(match, suggestionCache.put(match.autoComplete, match.selectedValue, match.dependentValue, indexed));
+            }
+        }
+        metrics.counter(CACHE_MISSES).increment();
+
+        if(match.autoComplete.getLatencyBudget() > 0) {
+            return new MatchedSuggestions(match, fetchWithinBudget(match));
+        }
+
+        // NOTE: concurrent completions for the same values share a single request to the server
+        List<CIValue> retrievedSuggestions;
+        try {
+            retrievedSuggestions = suggestionFetches.get(match, () -> requestSuggestions(match.autoComplete, match.selectedValue, match.dependentValue));
+        } catch(final RuntimeException e) {
+            LOGGER.error("Unable to retrieve suggestions: " + e.getMessage(), e);
+            retrievedSuggestions = Collections.emptyList();
+        }
+        return new MatchedSuggestions(match, cacheRetrieved(match, retrievedSuggestions));
+    }
+
+    /**
+     * Fetch the suggestions from the server, waiting at most for
+     * the latency budget of the auto-complete
+     *
+     * If the server does not respond within the budget, the fetch continues
+     * in the background and caches the suggestions for the next completion.
+     *
+     * @param match the auto-complete and values to fetch the suggestions for
+     *
+     * @return the suggestions, or if the budget is exceeded, any previously
+     *     retrieved suggestions from the index, otherwise an empty list
+     */
+    private List<CIValue> fetchWithinBudget(final AutoCompleteMatch match) {
+        final CompletableFuture<List<CIValue>> fetch = suggestionFetches
+                .submit(match, () -> requestSuggestions(match.autoComplete, match.selectedValue, match.dependentValue), getFetchExecutor())
+                .thenApply(retrievedSuggestions -> cacheRetrieved(match, retrievedSuggestions));
+        try {
+            return fetch.get(match.autoComplete.getLatencyBudget(), TimeUnit.MILLISECONDS);
+        } catch(final TimeoutException e) {
+            metrics.counter(BUDGET_EXCEEDED).increment();
+        } catch(final ExecutionException e) {
+            LOGGER.error("Unable to retrieve suggestions: " + e.getCause().getMessage(), e.getCause());
+        } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(match.autoComplete.getCacheInfo().isEnabled()) {
+            final List<CIValue> indexed = getSuggestionIndexes().lookup(match.autoComplete, match.selectedValue, match.dependentValue, Long.MAX_VALUE);
+            if(indexed != null) {
+                return indexed;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Cache the suggestions retrieved from the server
+     *
+     * If the server returned no suggestions, for example because it is unreachable,
+     * any previously retrieved suggestions in the index are used instead.
+     *
+     * @param retrieved the auto-complete and values that the suggestions were retrieved for
+     * @param retrievedSuggestions the suggestions retrieved from the server
+     *
+     * @return the suggestions, including any pending suggestions
+     */
+    private List<CIValue> cacheRetrieved(final AutoCompleteMatch retrieved, List<CIValue> retrievedSuggestions) {
+        if(retrieved.autoComplete.getCacheInfo().isEnabled()) {
+            if(retrievedSuggestions.isEmpty()) {
+                final List<CIValue> indexed = getSuggestionIndexes().lookup(retrieved.autoComplete, retrieved.selectedValue, retrieved.dependentValue, Long.MAX_VALUE);
+                if(indexed != null && !indexed.isEmpty()) {
+                    metrics.counter(INDEX_FALLBACKS).increment();
+                    retrievedSuggestions = indexed;
+                }
+            } else {
+                getSuggestionIndexes().update(retrieved.autoComplete, retrieved.selectedValue, retrieved.dependentValue, retrievedSuggestions);
+            }
+        }
+        return suggestionCache.put(retrieved.autoComplete, retrieved.selectedValue, retrieved.dependentValue, retrievedSuggestions);
+    }
+
+    /**
+     * Get the value already entered for the attribute, if the
+     * auto-complete is configured to filter the suggestions by it
+     *
+     * @param match the auto-complete that the suggestions are for
+     * @param context the context of the attribute
+     *
+     * @return the prefix, or null if the suggestions are not filtered
+     */
+    @Nullable
+    private static String getPrefix(final AutoCompleteMatch match, final WhatPossibleValuesHasAttributeContext context) {
+        if(!match.autoComplete.getCacheInfo().isPrefixFilter() || context.getElementStack() == null || context.getElementStack().isEmpty()) {
+            return null;
+        }
+
+        final String prefix = getAttributeValue(context.getElementStack().peek(), context.getAttributeName());
+        if(prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        return prefix;
+    }
+
+    /**
+     * Narrows the suggestions to those which start with the prefix
+     *
+     * @param match the auto-complete that the suggestions are for
+     * @param suggestions the suggestions
+     * @param prefix the prefix, or null if the suggestions are not filtered
+     *
+     * @return the matching suggestions
+     */
+    private static List<CIValue> filterByPrefix(final AutoCompleteMatch match, final List<CIValue> suggestions, @Nullable final String prefix) {
+        if(prefix == null) {
+            return suggestions;
+        }
+
+        final List<CIValue> matching = suggestionCache.getMatching(match.autoComplete, match.selectedValue, match.dependentValue, prefix);
+        return matching != null ? matching : SuggestionTrie.filter(suggestions, prefix);
+    }
+
+    /**
+     * Find the auto-complete which matches the context, and
+     * determine the selected and dependent values for it
+     *
+     * @param context the context of the attribute
+     *
+     * @return the match, or null if no auto-complete matches the context
+     */
+    @Nullable
+    private AutoCompleteMatch matchAutoComplete(final WhatPossibleValuesHasAttributeContext context) {
+        final Stack<ContextElement> elementStack = context.getElementStack();
+        if(elementStack == null || elementStack.isEmpty()) {
+            return null;
+        }
+
+        final ContextElement element = elementStack.peek();
+        for(final AutoCompleteIndex.Candidate candidate : getAutoCompleteIndex().getCandidates(context.getAttributeName())) {
+            if(!candidate.mayMatch(element)
+                    || !"true".equals(evaluateString(context, candidate.contextXPath, candidate.namespaceContext))) {
+                continue;
+            }
+
+            final AutoComplete autoComplete = candidate.autoComplete;
+            final String selectedValue = candidate.selectionXPath == null ? null : evaluateString(context, candidate.selectionXPath, candidate.namespaceContext);
+            final String dependentValue = autoComplete.getDependent() == null ? null : getDependentValue(element, autoComplete.getDependent());
+            return new AutoCompleteMatch(autoComplete, selectedValue, dependentValue);
+        }
+        return null;
+    }
+
+    /**
+     * Get the index of the auto-completes by attribute name,
+     * which is built whenever the configuration is loaded
+     *
+     * @return the index of the auto-completes
+     */
+    private static AutoCompleteIndex getAutoCompleteIndex() {
+        return getLoadedConfiguration().autoCompleteIndex;
+    }
+
+    @Nullable
+    private static String evaluateString(final WhatPossibleValuesHasAttributeContext context, final String xpath, final NamespaceContext namespaceContext) {
+        final Object[] result = context.executeXPath(xpath, namespaceContext, true);
+        if(result == null || result.length == 0 || result[0] == null) {
+            return null;
+        }
+        return String.valueOf(result[0]);
+    }
+
+    @Nullable
+    private static String getDependentValue(final ContextElement element, final Dependent dependent) {
+        final String value = getAttributeValue(element, dependent.getAttribute());
+        if(value != null && !value.isEmpty()) {
+            return value;
+        }
+        return dependent.getDefault();
+    }
+
+    @Nullable
+    private static String getAttributeValue(final ContextElement element, final String attributeName) {
+        if(element.getAttributes() != null) {
+            for(final Attr attr : element.getAttributes()) {
+                if(attr.getQName().equals(attributeName)) {
+                    return attr.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prefetches suggestions in the background for documents
+     * when they are opened in Oxygen, so that the first
+     * completion is served from the suggestion cache
+     *
+     * The prefetcher is only installed once for the workspace,
+     * however many instances of the plugin are created
+     */
+    private static void installPrefetcher() {
+        final PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
+        if(pluginWorkspace == null) {
+            //not running within Oxygen
+            return;
+        }
+
+        final PrefetchListener listener;
+        synchronized(TeiAuthorizer.class) {
+            if(prefetchListener != null) {
+                if(prefetchListener.pluginWorkspace == pluginWorkspace) {
+                    return;
+                }
+                prefetchListener.remove();
+            }
+
+            listener = new PrefetchListener(pluginWorkspace, new SuggestionPrefetcher(suggestionCache, TeiAuthorizer::getAutoCompletes, TeiAuthorizer::fetchSuggestions));
+            pluginWorkspace.addEditorChangeListener(listener, PluginWorkspace.MAIN_EDITING_AREA);
+            prefetchListener = listener;
+        }
+
+        //documents which were opened before we were loaded
+        final URL[] editorLocations = pluginWorkspace.getAllEditorLocations(PluginWorkspace.MAIN_EDITING_AREA);
+        if(editorLocations != null) {
+            for(final URL editorLocation : editorLocations) {
+                listener.editorOpened(editorLocation);
+            }
+        }
+    }
+
+    @Nullable
+    private static List<AutoComplete> getAutoCompletes() {
+        return getLoadedConfiguration().getAutoCompletes();
+    }
+
+    /**
+     * Fetch the suggestions for an auto-complete from the server
+     *
+     * @param autoComplete the auto-complete
+     * @param selectedValue the selected value
+     * @param dependentValue the dependent value
+     *
+     * @return the suggestions
+     */
+    private static List<CIValue> fetchSuggestions(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue) {
+        final List<CIValue> values = suggestionFetches.get(new AutoCompleteMatch(autoComplete, selectedValue, dependentValue), () -> requestSuggestions(autoComplete, selectedValue, dependentValue));
+        if(!values.isEmpty()) {
+            getSuggestionIndexes().update(autoComplete, selectedValue, dependentValue, values);
+        }
+        return values;
+    }
+
+    /**
+     * Request the suggestions for an auto-complete from the server
+     *
+     * @param autoComplete the auto-complete
+     * @param selectedValue the selected value
+     * @param dependentValue the dependent value
+     *
+     * @return the suggestions, which may be shared by concurrent callers so are unmodifiable
+     */
+    private static List<CIValue> requestSuggestions(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue) {
+        return requestSuggestions(autoComplete, selectedValue, dependentValue, 0);
+    }
+
+    /**
+     * Request a page of the suggestions for an auto-complete from the server
+     *
+     * @param autoComplete the auto-complete
+     * @param selectedValue the selected value
+     * @param dependentValue the dependent value
+     * @param offset the offset of the page, ignored unless the server pages the suggestions
+     *
+     * @return the suggestions, which may be shared by concurrent callers so are unmodifiable
+     */
+    private static List<CIValue> requestSuggestions(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final int offset) {
+        final RequestInfo requestInfo = autoComplete.getPageRequestInfo(offset);
+        final Suggestions suggestions = getRequestClient(autoComplete, requestInfo).getSuggestions(requestInfo, selectedValue, dependentValue, autoComplete.getResponseAction());
+
+        final List<CIValue> values = new ArrayList<>();
+        if(suggestions != null) {
+            for(final Suggestion suggestion : suggestions.getSuggestion()) {
+                values.add(new CIValue(suggestion.getValue(), suggestion.getDescription()));
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public Configuration getConfiguration() {
-        if(configuration == null) {
+        return getLoadedConfiguration().configuration;
+    }
+
+    /**
+     * Get the configuration, which is shared by all instances of the plugin
+     *
+     * When the configuration is first loaded, the background
+     * work which depends on the configuration is also started
+     *
+     * @return the configuration, and the index of its auto-completes
+     */
+    private static LoadedConfiguration getLoadedConfiguration() {
+        LoadedConfiguration loaded = loadedConfiguration;
+        if(loaded == null) {
+            synchronized(TeiAuthorizer.class) {
+                loaded = loadedConfiguration;
+                if(loaded == null) {
+                    loaded = new LoadedConfiguration(ConfigurationFactory.getInstance().loadConfiguration());
+                    loadedConfiguration = loaded;
+
+                    //start replaying any uploads which were queued in a previous session
+                    getUploadQueue();
+
+                    startMetrics();
+
+                    watchConfiguration();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reload the configuration in the background whenever
+     * the configuration file is changed
+     *
+     * Must be called whilst holding the lock on this class
+     */
+    private static void watchConfiguration() {
+        try {
+            configurationWatcher = ConfigurationFactory.getInstance().watchConfiguration(TeiAuthorizer::reloadConfiguration);
+        } catch(final IOException e) {
+            LOGGER.warn("Unable to watch configuration for changes, it will only be loaded at startup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Publish a reloaded configuration
+     *
+     * The index of the reloaded auto-completes is built before the configuration
+     * is published, and both are published together, so completions which are in
+     * progress continue with the previous configuration and are never blocked. Cached
+     * suggestions are kept for the auto-completes which are unchanged, and discarded
+     * for the others.
+     *
+     * @param reloaded the reloaded configuration, whose auto-completes have already been loaded
+     */
+    private static void reloadConfiguration(final Configuration reloaded) {
+        final LoadedConfiguration reloadedConfiguration = new LoadedConfiguration(reloaded);
+        final List<AutoComplete> reloadedAutoCompletes = reloadedConfiguration.getAutoCompletes();
+
+        final LoadedConfiguration previousConfiguration;
+        synchronized(TeiAuthorizer.class) {
+            previousConfiguration = loadedConfiguration;
+            if(previousConfiguration == null) {
+                //disposed whilst reloading
+                return;
+            }
+            loadedConfiguration = reloadedConfiguration;
+        }
+
+        final List<AutoComplete> previousAutoCompletes = previousConfiguration.getAutoCompletes();
+
+        int kept = 0;
+        if(previousAutoCompletes != null) {
+            final Map<AutoComplete, AutoComplete> unchanged = AutoCompleteChanges.unchanged(previousAutoCompletes, reloadedAutoCompletes);
+            for(final AutoComplete previous : previousAutoCompletes) {
+                final AutoComplete counterpart = unchanged.get(previous);
+                if(counterpart != null) {
+                    suggestionCache.transfer(previous, counterpart);
+                    kept++;
+                } else {
+                    suggestionCache.invalidate(previous);
+                }
+            }
+        }
+
+        //uploads which were kept in the queue may now be configured
+        final UploadQueue uploadQueue = TeiAuthorizer.uploadQueue;
+        if(uploadQueue != null) {
+            uploadQueue.retry();
+        }
+
+        metrics.counter(CONFIGURATION_RELOADS).increment();
+        LOGGER.info("Reloaded configuration with {} auto-completes, {} unchanged", reloadedAutoCompletes.size(), kept);
+    }
+
+    /**
+     * Get the queue of uploads which are waiting
+     * for the server to become reachable
+     *
+     * The queue is shared by all instances of the plugin, as
+     * only one queue may append to and replay the journal
+     *
+     * @return the upload queue, or null if the queue could not be opened
+     */
+    @Nullable
+    static UploadQueue getUploadQueue() {
+        UploadQueue queue = uploadQueue;
+        if(queue == null) {
+            synchronized(TeiAuthorizer.class) {
+                queue = uploadQueue;
+                if(queue == null) {
+                    final Path journalFile = ConfigurationFactory.getInstance().getConfigDirectory().resolve(UPLOAD_JOURNAL_FILE_NAME);
+                    try {
+                        queue = new UploadQueue(journalFile, TeiAuthorizer::uploadQueuedSuggestions, TeiAuthorizer::queuedSuggestionRejected);
+                        uploadQueue = queue;
+                    } catch(final IOException e) {
+                        //e.g. another instance of Oxygen is replaying the queue
+                        LOGGER.error("Unable to open upload queue: " + journalFile.toAbsolutePath() + ". " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Get the executor which fetches suggestions from the
+     * server in the background, when the latency budget
+     * of an auto-complete is exceeded
+     *
+     * @return the executor
+     */
+    private ExecutorService getFetchExecutor() {
+        if(fetchExecutor == null) {
             synchronized(this) {
-                if(configuration == null) {
-                    this.configuration = ConfigurationFactory.getInstance().loadConfiguration();
+                if(fetchExecutor == null) {
+                    final AtomicInteger threadCount = new AtomicInteger();
+                    this.fetchExecutor = Executors.newFixedThreadPool(FETCH_THREADS, runnable -> {
+                        final Thread thread = new Thread(runnable, "tei-authorizer-fetch-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
                 }
             }
         }
-        return configuration;
+        return fetchExecutor;
+    }
+
+    /**
+     * Get the persistent indexes of the suggestions
+     * which have been retrieved from the server
+     *
+     * The indexes are shared by all instances of the plugin,
+     * as they map the same index files
+     *
+     * @return the suggestion indexes
+     */
+    private static SuggestionIndexes getSuggestionIndexes() {
+        SuggestionIndexes indexes = suggestionIndexes;
+        if(indexes == null) {
+            synchronized(TeiAuthorizer.class) {
+                indexes = suggestionIndexes;
+                if(indexes == null) {
+                    indexes = new SuggestionIndexes(ConfigurationFactory.getInstance().getConfigDirectory().resolve(SUGGESTION_INDEX_DIRECTORY_NAME));
+                    suggestionIndexes = indexes;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Exposes the metrics over JMX, and starts periodically
+     * writing a snapshot of them to the config directory
+     */
+    private static void startMetrics() {
+        metrics.registerMBean();
+        if(metricsReporter == null) {
+            final Path snapshotFile = ConfigurationFactory.getInstance().getConfigDirectory().resolve(METRICS_SNAPSHOT_FILE_NAME);
+            metricsReporter = new MetricsReporter(metrics, snapshotFile, METRICS_SNAPSHOT_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    @Nullable
+    private static List<Client.SuggestionResponse> uploadQueuedSuggestions(final List<QueuedUpload> queuedUploads) {
+        final String uploadKey = queuedUploads.get(0).getUploadKey();
+        final AutoComplete autoComplete = findAutoComplete(uploadKey);
+        if(autoComplete == null) {
+            //the suggestions are kept in the queue, in case the configuration is restored
+            if(unconfiguredUploadKeys.add(uploadKey)) {
+                final String msg = queuedUploads.size() + " queued suggestions cannot be uploaded, as there is no longer an upload configured for:" + System.getProperty("line.separator") + uploadKey + System.getProperty("line.separator") + "They will be uploaded once it is configured again";
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, msg, "Queued Suggestions Not Uploaded", JOptionPane.WARNING_MESSAGE));
+            }
+            return null;
+        }
+        unconfiguredUploadKeys.remove(uploadKey);
+        final UploadInfo uploadInfo = autoComplete.getUploadInfo();
+        return getUploadClient(uploadInfo).uploadSuggestions(uploadInfo, queuedUploads);
+    }
+
+    private static void queuedSuggestionRejected(final QueuedUpload queuedUpload, final Client.SuggestionResponse suggestionResponse) {
+        final String msg;
+        if(suggestionResponse.isUnconfirmed()) {
+            //the suggestion remains queued, and is uploaded again by the next replay
+            msg = "Unable to confirm that the server accepted the queued suggestion '" + queuedUpload.getSuggestion() + "', it will be uploaded again later";
+        } else {
+            final AutoComplete autoComplete = findAutoComplete(queuedUpload.getUploadKey());
+            if(autoComplete != null) {
+                suggestionCache.removePending(autoComplete, queuedUpload.getSelectionValue(), queuedUpload.getDependentValue(), queuedUpload.getSuggestion());
+            }
+            msg = "The server rejected the queued suggestion '" + queuedUpload.getSuggestion() + "'. Please correct the document";
+        }
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, suggestionResponse.getMessage() != null ? msg + ":" + System.getProperty("line.separator") + suggestionResponse.getMessage() : msg, "Error Uploading Suggestion", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Find the auto-complete for a queued upload
+     *
+     * @param uploadKey the key of the upload configuration
+     *
+     * @return the auto-complete with the upload configuration, or null if there is no such configuration
+     */
+    @Nullable
+    private static AutoComplete findAutoComplete(final String uploadKey) {
+        final List<AutoComplete> autoCompletes = getAutoCompletes();
+        if(autoCompletes != null) {
+            for (final AutoComplete autoComplete : autoCompletes) {
+                if (uploadKey.equals(autoComplete.getUploadKey())) {
+                    return autoComplete;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static JerseyClient getRequestClient(final AutoComplete autoComplete, @Nullable final RequestInfo requestInfo) {
+        final Authentication.AuthenticationType authenticationType = requestInfo == null || requestInfo.getAuthentication() == null ? null : requestInfo.getAuthentication().getAuthenticationType();
+        return JerseyClientFactory.getInstance().getClient(autoComplete.getRequestServerInfo(), authenticationType);
+    }
+
+    private static Client getUploadClient(final UploadInfo uploadInfo) {
+        final Authentication.AuthenticationType authenticationType = uploadInfo.getAuthentication() == null ? null : uploadInfo.getAuthentication().getAuthenticationType();
+        return JerseyClientFactory.getInstance().getClient(uploadInfo.getServerInfo(), authenticationType);
     }
 
     @Override
@@ -120,15 +889,22 @@ public class TeiAuthorizer extends TeiCompleter {
      */
     public class AddNewSuggestionCIValue extends CIValue {
 
-        private final UploadInfo uploadInfo;
+        private final AutoComplete autoComplete;
+        private final Supplier<UploadInfo> uploadInfo;
         private String suggestion = null;
         private String description = null;
         @Nullable private final String selectionValue;
         @Nullable private final String dependentValue;
 
-        public AddNewSuggestionCIValue(final UploadInfo uploadInfo, @Nullable final String selectionValue, @Nullable final String dependentValue) {
+        /**
+         * @param autoComplete The auto-complete, which must have an upload configuration
+         * @param selectionValue The selected value
+         * @param dependentValue The dependent value
+         */
+        public AddNewSuggestionCIValue(final AutoComplete autoComplete, @Nullable final String selectionValue, @Nullable final String dependentValue) {
             super("Add New...", "Add a new suggestion");
-            this.uploadInfo = uploadInfo;
+            this.autoComplete = autoComplete;
+            this.uploadInfo = autoComplete.getUploadInfoSupplier();
             this.selectionValue = selectionValue;
             this.dependentValue = dependentValue;
         }
@@ -142,20 +918,34 @@ public class TeiAuthorizer extends TeiCompleter {
 
                 if(suggestedAutocomplete != null) {
 
-                    //upload to the server, on error alert the user, on success replace in document
-                    final Client.SuggestionResponse suggestionResponse = uploadSuggestion(suggestedAutocomplete);
-                    if (suggestionResponse.isSuccess()) {
-                        //process the result from the dialog
-                        final String suggestion = suggestedAutocomplete.getSuggestion();
-                        this.suggestion = (suggestion == null ? "" : suggestion);
-                        this.description = suggestedAutocomplete.getDescription();
+                    if(uploadInfo.get().isAsync()) {
+                        //optimistically insert into the document, and upload to the server in the background
+                        acceptSuggestion(suggestedAutocomplete);
+                        addPendingSuggestion(suggestedAutocomplete);
+                        uploadSuggestionAsync(suggestedAutocomplete).whenComplete((suggestionResponse, e) -> {
+                            if(e != null) {
+                                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                                LOGGER.error("Unable to upload the suggestion '" + suggestedAutocomplete.getSuggestion() + "' which was already inserted: " + cause.getMessage(), cause);
+                                uploadedAsync(suggestedAutocomplete, new Client.SuggestionResponse(false, cause.getMessage()));
+                            } else {
+                                uploadedAsync(suggestedAutocomplete, suggestionResponse);
+                            }
+                        });
                     } else {
-                        final KeyboardFocusManager keyboardFocusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
-                        final Component comp = keyboardFocusManager.getFocusOwner();
-                        final Frame frame = getParentFrame(comp);
-                        final String msg = "Unable to upload the suggestion to the server";
-                        JOptionPane.showMessageDialog(frame, suggestionResponse.getMessage() != null ? msg + ":" + System.getProperty("line.separator") + suggestionResponse.getMessage() : msg, "Error Uploading Suggestion", JOptionPane.ERROR_MESSAGE);
-                        this.suggestion = "";
+                        //upload to the server, on error alert the user, on success replace in document
+                        final Client.SuggestionResponse suggestionResponse = uploadSuggestion(suggestedAutocomplete);
+                        if (suggestionResponse.isSuccess()) {
+                            acceptSuggestion(suggestedAutocomplete);
+                            addPendingSuggestion(suggestedAutocomplete);
+                        } else if(suggestionResponse.isRetryable() && queueSuggestion(suggestedAutocomplete)) {
+                            //the server is unreachable, the suggestion will be uploaded later, so we can still use it now
+                            acceptSuggestion(suggestedAutocomplete);
+                            addPendingSuggestion(suggestedAutocomplete);
+                            showUploadQueued(suggestionResponse);
+                        } else {
+                            showUploadError(suggestionResponse, "Unable to upload the suggestion to the server");
+                            this.suggestion = "";
+                        }
                     }
                 }
             }
@@ -163,10 +953,100 @@ public class TeiAuthorizer extends TeiCompleter {
             return suggestion;
         }
 
+        /**
+         * Process the response to a suggestion which was optimistically
+         * inserted into the document and uploaded in the background
+         *
+         * If the server is unreachable, or its response could not be understood,
+         * the suggestion is queued, otherwise if it was not accepted, the
+         * user is asked to correct the document.
+         *
+         * @param suggestedAutocomplete The suggestion entered by the user
+         * @param suggestionResponse The response to the upload
+         */
+        private void uploadedAsync(final SuggestedAutocomplete suggestedAutocomplete, final Client.SuggestionResponse suggestionResponse) {
+            if(!suggestionResponse.isSuccess() && suggestionResponse.isRetryable() && queueSuggestion(suggestedAutocomplete)) {
+                LOGGER.warn("Server unreachable, queued the suggestion '{}' which was already inserted: {}", suggestedAutocomplete.getSuggestion(), suggestionResponse.getMessage());
+            } else if(suggestionResponse.isUnconfirmed()) {
+                //the server may not have accepted it, so it is uploaded again later
+                final boolean queued = queueSuggestion(suggestedAutocomplete);
+                LOGGER.warn("Unable to confirm upload of the suggestion '{}' which was already inserted: {}", suggestedAutocomplete.getSuggestion(), suggestionResponse.getMessage());
+                SwingUtilities.invokeLater(() -> showUploadError(suggestionResponse, "The suggestion '" + suggestedAutocomplete.getSuggestion() + "' was inserted, but it is unknown whether the server accepted it" + (queued ? ", it will be uploaded again later" : ". Please check the server")));
+            } else if(!suggestionResponse.isSuccess()) {
+                suggestionCache.removePending(autoComplete, selectionValue, dependentValue, suggestedAutocomplete.getSuggestion());
+                LOGGER.warn("Server rejected the suggestion '{}' which was already inserted: {}", suggestedAutocomplete.getSuggestion(), suggestionResponse.getMessage());
+                SwingUtilities.invokeLater(() -> showUploadError(suggestionResponse, "The suggestion '" + suggestedAutocomplete.getSuggestion() + "' was inserted, but the server rejected it. Please correct the document"));
+            }
+        }
+
+        /**
+         * Process the result from the dialog
+         *
+         * @param suggestedAutocomplete The suggestion entered by the user
+         */
+        private void acceptSuggestion(final SuggestedAutocomplete suggestedAutocomplete) {
+            final String suggestion = suggestedAutocomplete.getSuggestion();
+            this.suggestion = (suggestion == null ? "" : suggestion);
+            this.description = suggestedAutocomplete.getDescription();
+        }
+
+        /**
+         * Add the suggestion to the suggestion cache, so that it is offered
+         * by the next completion even before the server returns it
+         *
+         * @param suggestedAutocomplete The suggestion entered by the user
+         */
+        private void addPendingSuggestion(final SuggestedAutocomplete suggestedAutocomplete) {
+            if(suggestedAutocomplete.getSuggestion() != null) {
+                suggestionCache.putPending(autoComplete, selectionValue, dependentValue, suggestedAutocomplete.getSuggestion(), suggestedAutocomplete.getDescription());
+            }
+        }
+
+        /**
+         * Queue the suggestion to be uploaded when the server is reachable
+         *
+         * @param suggestedAutocomplete The suggestion entered by the user
+         *
+         * @return true if the suggestion was queued, false otherwise
+         */
+        private boolean queueSuggestion(final SuggestedAutocomplete suggestedAutocomplete) {
+            final UploadQueue uploadQueue = getUploadQueue();
+            if(uploadQueue == null) {
+                return false;
+            }
+
+            try {
+                uploadQueue.enqueue(uploadInfo.get(), suggestedAutocomplete.getSuggestion(), suggestedAutocomplete.getDescription(), selectionValue, dependentValue, suggestedAutocomplete.getUserValues());
+                return true;
+            } catch(final IOException e) {
+                LOGGER.error("Unable to queue suggestion: " + e.getMessage(), e);
+                return false;
+            }
+        }
+
         private Client.SuggestionResponse uploadSuggestion(final SuggestedAutocomplete suggestedAutocomplete) {
-            final Authentication.AuthenticationType authenticationType = uploadInfo.getAuthentication() == null ? null : uploadInfo.getAuthentication().getAuthenticationType();
-            final Client client = (Client)getClient(authenticationType);
-            return client.uploadSuggestion(uploadInfo, suggestedAutocomplete.getSuggestion(), suggestedAutocomplete.getDescription(), selectionValue, dependentValue, suggestedAutocomplete.getUserValues());
+            final UploadInfo uploadInfo = this.uploadInfo.get();
+            return getUploadClient(uploadInfo).uploadSuggestion(uploadInfo, suggestedAutocomplete.getSuggestion(), suggestedAutocomplete.getDescription(), selectionValue, dependentValue, suggestedAutocomplete.getUserValues());
+        }
+
+        private CompletableFuture<Client.SuggestionResponse> uploadSuggestionAsync(final SuggestedAutocomplete suggestedAutocomplete) {
+            final UploadInfo uploadInfo = this.uploadInfo.get();
+            return getUploadClient(uploadInfo).uploadSuggestionAsync(uploadInfo, suggestedAutocomplete.getSuggestion(), suggestedAutocomplete.getDescription(), selectionValue, dependentValue, suggestedAutocomplete.getUserValues());
+        }
+
+        /**
+         * Alerts the user that an upload failed
+         *
+         * Must be called from the Swing Event Dispatch Thread
+         *
+         * @param suggestionResponse The response from the server
+         * @param msg The message to show to the user
+         */
+        private void showUploadError(final Client.SuggestionResponse suggestionResponse, final String msg) {
+            final KeyboardFocusManager keyboardFocusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+            final Component comp = keyboardFocusManager.getFocusOwner();
+            final Frame frame = getParentFrame(comp);
+            JOptionPane.showMessageDialog(frame, suggestionResponse.getMessage() != null ? msg + ":" + System.getProperty("line.separator") + suggestionResponse.getMessage() : msg, "Error Uploading Suggestion", JOptionPane.ERROR_MESSAGE);
         }
 
         /**
@@ -181,7 +1061,7 @@ public class TeiAuthorizer extends TeiCompleter {
             final KeyboardFocusManager keyboardFocusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
             final Component comp = keyboardFocusManager.getFocusOwner();
             final Frame frame = getParentFrame(comp);
-            final NewSuggestionForm newSuggestionForm = new NewSuggestionForm(frame, uploadInfo.getUserFieldsInfo());
+            final NewSuggestionForm newSuggestionForm = new NewSuggestionForm(frame, uploadInfo.get().getUserFieldsInfo());
 
             //set location of the dialog
             if(comp instanceof JTextArea) {
@@ -202,21 +1082,306 @@ public class TeiAuthorizer extends TeiCompleter {
             return suggestedAutocomplete;
         }
 
-        private Frame getParentFrame(final Component component) {
-            if(component == null) {
-                return null;
+        /**
+         * Informs the user that the suggestion could
+         * not be uploaded now, but has been queued
+         *
+         * Must be called from the Swing Event Dispatch Thread
+         *
+         * @param suggestionResponse The response from the server
+         */
+        private void showUploadQueued(final Client.SuggestionResponse suggestionResponse) {
+            final KeyboardFocusManager keyboardFocusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+            final Component comp = keyboardFocusManager.getFocusOwner();
+            final Frame frame = getParentFrame(comp);
+            final String msg = "Unable to reach the server, the suggestion will be uploaded once the server is reachable";
+            JOptionPane.showMessageDialog(frame, suggestionResponse.getMessage() != null ? msg + ":" + System.getProperty("line.separator") + suggestionResponse.getMessage() : msg, "Suggestion Queued", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    @Nullable
+    private static Frame getParentFrame(final Component component) {
+        if(component == null) {
+            return null;
+        }
+
+        final Component parent = component.getParent();
+        if(parent == null) {
+            return null;
+        }
+
+        if(parent instanceof Frame) {
+            return (Frame)parent;
+        }
+
+        return getParentFrame(parent);
+    }
+
+    /**
+     * A CIValue labelled "More..." which loads
+     * the next page of suggestions and prompts the
+     * user to choose from them via a dialog box
+     */
+    public class MoreSuggestionsCIValue extends CIValue {
+
+        private final AutoComplete autoComplete;
+        @Nullable private final String selectionValue;
+        @Nullable private final String dependentValue;
+        @Nullable private final String prefix;
+        private final int offset;
+        private String suggestion = null;
+
+        /**
+         * @param autoComplete The auto-complete, which must have a page size
+         * @param selectionValue The selected value
+         * @param dependentValue The dependent value
+         * @param prefix The prefix which the suggestions were filtered by, or null if they were not filtered
+         * @param offset The offset of the next page of suggestions
+         */
+        public MoreSuggestionsCIValue(final AutoComplete autoComplete, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final String prefix, final int offset) {
+            super("More...", "Show more suggestions");
+            this.autoComplete = autoComplete;
+            this.selectionValue = selectionValue;
+            this.dependentValue = dependentValue;
+            this.prefix = prefix;
+            this.offset = offset;
+        }
+
+        @Override
+        public String getInsertString() {
+            if(suggestion == null) {
+                int pageOffset = offset;
+                while(true) {
+                    final int loadOffset = pageOffset;
+                    final CompletableFuture<Page> page = CompletableFuture.supplyAsync(() -> loadPage(loadOffset), getFetchExecutor());
+                    final CIValue chosen = promptUserForSuggestion(page);
+                    if(chosen == null) {
+                        break;
+                    } else if(chosen == this) {
+                        pageOffset += autoComplete.getPageSize();
+                    } else {
+                        this.suggestion = chosen.getValue();
+                        break;
+                    }
+                }
+            }
+            return suggestion;
+        }
+
+        /**
+         * Load a page of the suggestions which match the prefix, as in the
+         * completion popup, either from the server if it pages the suggestions,
+         * or from all of the suggestions otherwise
+         *
+         * May make requests to the server, so must not be called
+         * from the Swing Event Dispatch Thread
+         *
+         * @param pageOffset the offset of the page
+         *
+         * @return the page of suggestions
+         */
+        private Page loadPage(final int pageOffset) {
+            final int pageSize = autoComplete.getPageSize();
+            if(autoComplete.isServerPaged()) {
+                final List<CIValue> page = requestSuggestions(autoComplete, selectionValue, dependentValue, pageOffset);
+                //if the server returned a full page it may have more, however many of the page match the prefix
+                return new Page(prefix == null ? page : SuggestionTrie.filter(page, prefix), page.size() >= pageSize);
+            }
+
+            final AutoCompleteMatch match = new AutoCompleteMatch(autoComplete, selectionValue, dependentValue);
+            final List<CIValue> matching = filterByPrefix(match, getAllSuggestions(match), prefix);
+            return new Page(matching.subList(Math.min(pageOffset, matching.size()), Math.min(pageOffset + pageSize, matching.size())), matching.size() > pageOffset + pageSize);
+        }
+
+        private List<CIValue> getAllSuggestions(final AutoCompleteMatch match) {
+            final List<CIValue> cached = suggestionCache.get(autoComplete, selectionValue, dependentValue);
+            if(cached != null) {
+                return cached;
             }
+            return cacheRetrieved(match, suggestionFetches.get(match, () -> requestSuggestions(autoComplete, selectionValue, dependentValue)));
+        }
 
-            final Component parent = component.getParent();
-            if(parent == null) {
+        /**
+         * Displays a dialog which prompts the user to choose a suggestion
+         *
+         * The dialog is shown whilst the page of suggestions is
+         * loaded, and the suggestions are added to it once loaded.
+         *
+         * Must be called from the Swing Event Dispatch Thread
+         *
+         * @param page the page of suggestions to choose from
+         *
+         * @return the chosen suggestion, this if the user asked for more suggestions, or null if the user cancelled
+         */
+        @Nullable
+        private CIValue promptUserForSuggestion(final CompletableFuture<Page> page) {
+            final JLabel label = new JLabel("Loading suggestions...");
+            final DefaultListModel<Choice> choices = new DefaultListModel<>();
+            final JList<Choice> list = new JList<>(choices);
+            list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            final JOptionPane optionPane = new JOptionPane(new Object[] { label, new JScrollPane(list) }, JOptionPane.PLAIN_MESSAGE, JOptionPane.OK_CANCEL_OPTION);
+            list.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(final MouseEvent e) {
+                    if(e.getClickCount() == 2 && list.getSelectedValue() != null) {
+                        optionPane.setValue(JOptionPane.OK_OPTION);
+                    }
+                }
+            });
+
+            page.whenComplete((loaded, e) -> SwingUtilities.invokeLater(() -> {
+                if(e != null) {
+                    final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    LOGGER.error("Unable to retrieve suggestions: " + cause.getMessage(), cause);
+                    label.setText("Unable to retrieve suggestions: " + cause.getMessage());
+                    return;
+                }
+
+                for(final CIValue suggestion : loaded.suggestions) {
+                    choices.addElement(new Choice(suggestion));
+                }
+                if(loaded.more) {
+                    choices.addElement(new Choice(this));
+                }
+                if(choices.isEmpty()) {
+                    label.setText("There are no more suggestions");
+                } else {
+                    label.setText("Choose a suggestion:");
+                    list.setSelectedIndex(0);
+                    list.requestFocusInWindow();
+                }
+            }));
+
+            final Component comp = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
+            final JDialog dialog = optionPane.createDialog(getParentFrame(comp), "More Suggestions");
+            dialog.setVisible(true);
+            dialog.dispose();
+
+            if(!Integer.valueOf(JOptionPane.OK_OPTION).equals(optionPane.getValue())) {
                 return null;
             }
+            final Choice chosen = list.getSelectedValue();
+            return chosen == null ? null : chosen.suggestion;
+        }
+    }
+
+    /**
+     * A page of suggestions for the "More..." dialog
+     */
+    private static class Page {
+        private final List<CIValue> suggestions;
+        private final boolean more;
+
+        private Page(final List<CIValue> suggestions, final boolean more) {
+            this.suggestions = suggestions;
+            this.more = more;
+        }
+    }
+
+    /**
+     * A suggestion as displayed in the "More..." dialog
+     */
+    private static class Choice {
+        private final CIValue suggestion;
+
+        private Choice(final CIValue suggestion) {
+            this.suggestion = suggestion;
+        }
+
+        @Override
+        public String toString() {
+            return suggestion.getAnnotation() == null ? suggestion.getValue() : suggestion.getValue() + " - " + suggestion.getAnnotation();
+        }
+    }
+
+    /**
+     * An auto-complete which matches a context,
+     * with the selected and dependent values
+     */
+    private static class AutoCompleteMatch {
+        private final AutoComplete autoComplete;
+        @Nullable private final String selectedValue;
+        @Nullable private final String dependentValue;
+
+        private AutoCompleteMatch(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue) {
+            this.autoComplete = autoComplete;
+            this.selectedValue = selectedValue;
+            this.dependentValue = dependentValue;
+        }
 
-            if(parent instanceof Frame) {
-                return (Frame)parent;
+        @Override
+        public boolean equals(final Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(o == null || getClass() != o.getClass()) {
+                return false;
             }
+            final AutoCompleteMatch other = (AutoCompleteMatch) o;
+            return autoComplete == other.autoComplete
+                    && Objects.equals(selectedValue, other.selectedValue)
+                    && Objects.equals(dependentValue, other.dependentValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(autoComplete), selectedValue, dependentValue);
+        }
+    }
+
+    /**
+     * Prefetches the suggestions for documents
+     * when they are opened in a workspace
+     */
+    private static class PrefetchListener extends WSEditorChangeListener {
+        private final PluginWorkspace pluginWorkspace;
+        private final SuggestionPrefetcher prefetcher;
+
+        private PrefetchListener(final PluginWorkspace pluginWorkspace, final SuggestionPrefetcher prefetcher) {
+            this.pluginWorkspace = pluginWorkspace;
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        public void editorOpened(final URL editorLocation) {
+            prefetcher.prefetch(editorLocation);
+        }
+
+        /**
+         * Stops prefetching for the workspace
+         */
+        private void remove() {
+            pluginWorkspace.removeEditorChangeListener(this, PluginWorkspace.MAIN_EDITING_AREA);
+            prefetcher.close();
+        }
+    }
+
+    /**
+     * A configuration, with the index of its auto-completes,
+     * which are published together so that they are always consistent
+     */
+    private static class LoadedConfiguration {
+        private final Configuration configuration;
+        private final AutoCompleteIndex autoCompleteIndex;
+
+        private LoadedConfiguration(final Configuration configuration) {
+            this.configuration = configuration;
+            this.autoCompleteIndex = AutoCompleteIndex.build(getAutoCompletes());
+        }
+
+        @Nullable
+        private List<AutoComplete> getAutoCompletes() {
+            return ((org.humanistika.oxygen.tei.authorizer.configuration.Configuration)configuration).getAutoCompletes();
+        }
+    }
+
+    private static class MatchedSuggestions {
+        private final AutoCompleteMatch match;
+        private final List<CIValue> suggestions;
 
-            return getParentFrame(parent);
+        private MatchedSuggestions(final AutoCompleteMatch match, final List<CIValue> suggestions) {
+            this.match = match;
+            this.suggestions = suggestions;
         }
     }
 }
@@ -0,0 +1,138 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests
+ *
+ * Whilst a request for a key is in-flight, any further requests
+ * for the same key share its result rather than being made again.
+ * Once the request completes the key is forgotten, so results
+ * are never cached here.
+ *
+ * @param <K> the type of the key which identifies a request
+ * @param <V> the type of the result of a request
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced;
+
+    /**
+     * @param coalesced a counter of the requests which shared the result of an in-flight request
+     */
+    public SingleFlight(final LongAdder coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    /**
+     * Make a request on the calling thread, or wait for
+     * the result of an identical in-flight request
+     *
+     * @param key the key which identifies the request
+     * @param request the request
+     *
+     * @return the result of the request
+     *
+     * @throws RuntimeException if the request failed
+     */
+    public V get(final K key, final Supplier<V> request) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        run(key, future, request);
+        return await(future);
+    }
+
+    /**
+     * Make a request asynchronously, or share the result
+     * of an identical in-flight request
+     *
+     * @param key the key which identifies the request
+     * @param request the request
+     * @param executor the executor to make the request on
+     *
+     * @return the future result of the request
+     */
+    public CompletableFuture<V> submit(final K key, final Supplier<V> request, final Executor executor) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        try {
+            executor.execute(() -> run(key, future, request));
+        } catch (final RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @return the number of requests which are in-flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private void run(final K key, final CompletableFuture<V> future, final Supplier<V> request) {
+        try {
+            future.complete(request.get());
+        } catch (final Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static <V> V await(final CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
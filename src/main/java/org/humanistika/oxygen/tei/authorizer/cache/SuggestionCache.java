@@ -0,0 +1,391 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-memory cache of the suggestions retrieved from a server
+ *
+ * Suggestions are keyed by the auto-complete, the selected value
+ * and the dependent value. Each auto-complete has its own LRU segment,
+ * bounded and expired according to its {@link CacheInfo}, so that
+ * lookups for different auto-completes do not contend.
+ *
+ * Suggestions which have been uploaded to the server can be added
+ * as pending, they are included in the cached suggestions until the
+ * server also returns them, or until {@link #PENDING_TTL} has passed.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionCache {
+
+    /**
+     * The maximum time in milliseconds that a suggestion
+     * remains pending whilst the server does not return it
+     */
+    public final static long PENDING_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private final static long PENDING_TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(PENDING_TTL);
+    private final static String PENDING_ANNOTATION = "pending upload to the server";
+
+    private final ConcurrentMap<AutoComplete, Segment> segments = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public SuggestionCache() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock a source of nanosecond time, used for expiry
+     */
+    SuggestionCache(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Get cached suggestions
+     *
+     * @param autoComplete the auto-complete that the suggestions are for
+     * @param selectedValue the selected value that the suggestions were retrieved for
+     * @param dependentValue the dependent value that the suggestions were retrieved for
+     *
+     * @return the suggestions, or null if there are no unexpired suggestions in the cache
+     */
+    @Nullable
+    public List<CIValue> get(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue) {
+        final Segment segment = segments.get(autoComplete);
+        if (segment == null) {
+            return null;
+        }
+        return segment.get(new Key(selectedValue, dependentValue), clock.getAsLong());
+    }
+
+    /**
+     * Get the cached suggestions whose value or description
+     * starts with a prefix, ignoring case
+     *
+     * The cached suggestions are indexed in a {@link SuggestionTrie}
+     * the first time that they are filtered.
+     *
+     * @param autoComplete the auto-complete that the suggestions are for
+     * @param selectedValue the selected value that the suggestions were retrieved for
+     * @param dependentValue the dependent value that the suggestions were retrieved for
+     * @param prefix the prefix
+     *
+     * @return the matching suggestions, or null if there are no unexpired suggestions in the cache
+     */
+    @Nullable
+    public List<CIValue> getMatching(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final String prefix) {
+        final Segment segment = segments.get(autoComplete);
+        if (segment == null) {
+            return null;
+        }
+        return segment.getMatching(new Key(selectedValue, dependentValue), prefix, clock.getAsLong());
+    }
+
+    /**
+     * Cache suggestions
+     *
+     * @param autoComplete the auto-complete that the suggestions are for
+     * @param selectedValue the selected value that the suggestions were retrieved for
+     * @param dependentValue the dependent value that the suggestions were retrieved for
+     * @param suggestions the suggestions retrieved from the server
+     *
+     * @return the suggestions, including any pending suggestions which the server did not return
+     */
+    public List<CIValue> put(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final List<CIValue> suggestions) {
+        final CacheInfo cacheInfo = autoComplete.getCacheInfo();
+        final Segment segment = cacheInfo.isEnabled() ? segments.computeIfAbsent(autoComplete, k -> new Segment(cacheInfo)) : segments.get(autoComplete);
+        if (segment == null) {
+            return suggestions;
+        }
+        return segment.put(new Key(selectedValue, dependentValue), Collections.unmodifiableList(new ArrayList<>(suggestions)), cacheInfo.isEnabled(), clock.getAsLong());
+    }
+
+    /**
+     * Add a suggestion which has been uploaded to the server, but
+     * which the server may not yet return
+     *
+     * @param autoComplete the auto-complete that the suggestion is for
+     * @param selectedValue the selected value that the suggestion was uploaded with
+     * @param dependentValue the dependent value that the suggestion was uploaded with
+     * @param suggestion the suggestion
+     * @param description the description of the suggestion, or null
+     */
+    public void putPending(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final String suggestion, @Nullable final String description) {
+        final Segment segment = segments.computeIfAbsent(autoComplete, k -> new Segment(autoComplete.getCacheInfo()));
+        final String annotation = description == null ? PENDING_ANNOTATION : description + " (" + PENDING_ANNOTATION + ")";
+        segment.putPending(new Key(selectedValue, dependentValue), new CIValue(suggestion, annotation), clock.getAsLong());
+    }
+
+    /**
+     * Remove a pending suggestion, e.g. because the server rejected it
+     *
+     * @param autoComplete the auto-complete that the suggestion is for
+     * @param selectedValue the selected value that the suggestion was uploaded with
+     * @param dependentValue the dependent value that the suggestion was uploaded with
+     * @param suggestion the suggestion
+     */
+    public void removePending(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final String suggestion) {
+        final Segment segment = segments.get(autoComplete);
+        if (segment != null) {
+            segment.removePending(new Key(selectedValue, dependentValue), suggestion);
+        }
+    }
+
+    /**
+     * Remove all cached suggestions for an auto-complete
+     *
+     * @param autoComplete the auto-complete
+     */
+    public void invalidate(final AutoComplete autoComplete) {
+        segments.remove(autoComplete);
+    }
+
+    /**
+     * Move the cached and pending suggestions of an auto-complete
+     * to its replacement, e.g. when the configuration is reloaded
+     * and the auto-complete is unchanged
+     *
+     * @param from the auto-complete which is being replaced
+     * @param to the replacement auto-complete
+     */
+    public void transfer(final AutoComplete from, final AutoComplete to) {
+        final Segment segment = segments.remove(from);
+        if (segment != null) {
+            segments.putIfAbsent(to, segment);
+        }
+    }
+
+    /**
+     * Remove all cached suggestions
+     */
+    public void clear() {
+        segments.clear();
+    }
+
+    /**
+     * An LRU map of the suggestions for a single auto-complete
+     */
+    private static class Segment {
+        private final long ttl;
+        private final LinkedHashMap<Key, Entry> entries;
+        private final Map<Key, Map<String, Pending>> pending = new HashMap<>();
+
+        private Segment(final CacheInfo cacheInfo) {
+            this.ttl = TimeUnit.MILLISECONDS.toNanos(cacheInfo.getTtl());
+            final int maxEntries = cacheInfo.getMaxEntries();
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        @Nullable
+        private synchronized List<CIValue> get(final Key key, final long now) {
+            final Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.created >= ttl) {
+                entries.remove(key);
+                return null;
+            }
+            return withPending(key, entry.suggestions, now);
+        }
+
+        @Nullable
+        private List<CIValue> getMatching(final Key key, final String prefix, final long now) {
+            final Entry entry;
+            final List<CIValue> pendingSuggestions;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                if (now - entry.created >= ttl) {
+                    entries.remove(key);
+                    return null;
+                }
+                pendingSuggestions = withPending(key, Collections.emptyList(), now);
+            }
+
+            // NOTE: the trie is built outside of the lock, so as not to block other lookups
+            final List<CIValue> matching = entry.getTrie().filter(prefix);
+            if (pendingSuggestions.isEmpty()) {
+                return matching;
+            }
+            final List<CIValue> merged = new ArrayList<>(matching);
+            for (final CIValue pendingSuggestion : SuggestionTrie.filter(pendingSuggestions, prefix)) {
+                if (!contains(entry.suggestions, pendingSuggestion.getValue())) {
+                    merged.add(pendingSuggestion);
+                }
+            }
+            return merged;
+        }
+
+        private synchronized List<CIValue> put(final Key key, final List<CIValue> suggestions, final boolean cache, final long now) {
+            if (cache) {
+                entries.put(key, new Entry(suggestions, now));
+            }
+
+            // the server has confirmed any pending suggestions that it returned
+            final Map<String, Pending> pendingSuggestions = pending.get(key);
+            if (pendingSuggestions != null) {
+                for (final CIValue suggestion : suggestions) {
+                    pendingSuggestions.remove(suggestion.getValue());
+                }
+                if (pendingSuggestions.isEmpty()) {
+                    pending.remove(key);
+                }
+            }
+
+            return withPending(key, suggestions, now);
+        }
+
+        private synchronized void putPending(final Key key, final CIValue suggestion, final long now) {
+            pending.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(suggestion.getValue(), new Pending(suggestion, now));
+        }
+
+        private synchronized void removePending(final Key key, final String suggestion) {
+            final Map<String, Pending> pendingSuggestions = pending.get(key);
+            if (pendingSuggestions != null) {
+                pendingSuggestions.remove(suggestion);
+                if (pendingSuggestions.isEmpty()) {
+                    pending.remove(key);
+                }
+            }
+        }
+
+        private List<CIValue> withPending(final Key key, final List<CIValue> suggestions, final long now) {
+            final Map<String, Pending> pendingSuggestions = pending.get(key);
+            if (pendingSuggestions == null) {
+                return suggestions;
+            }
+
+            final List<CIValue> merged = new ArrayList<>(suggestions.size() + pendingSuggestions.size());
+            merged.addAll(suggestions);
+            for (final Iterator<Pending> it = pendingSuggestions.values().iterator(); it.hasNext(); ) {
+                final Pending pendingSuggestion = it.next();
+                if (now - pendingSuggestion.created >= PENDING_TTL_NANOS) {
+                    it.remove();
+                } else if (!contains(suggestions, pendingSuggestion.suggestion.getValue())) {
+                    merged.add(pendingSuggestion.suggestion);
+                }
+            }
+            if (pendingSuggestions.isEmpty()) {
+                pending.remove(key);
+            }
+            return Collections.unmodifiableList(merged);
+        }
+
+        private static boolean contains(final List<CIValue> suggestions, final String value) {
+            for (final CIValue suggestion : suggestions) {
+                if (value.equals(suggestion.getValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The selected and dependent values that suggestions were retrieved for
+     */
+    static class Key {
+        @Nullable final String selectedValue;
+        @Nullable final String dependentValue;
+
+        Key(@Nullable final String selectedValue, @Nullable final String dependentValue) {
+            this.selectedValue = selectedValue;
+            this.dependentValue = dependentValue;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(selectedValue, key.selectedValue)
+                    && Objects.equals(dependentValue, key.dependentValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(selectedValue, dependentValue);
+        }
+    }
+
+    private static class Pending {
+        private final CIValue suggestion;
+        private final long created;
+
+        private Pending(final CIValue suggestion, final long created) {
+            this.suggestion = suggestion;
+            this.created = created;
+        }
+    }
+
+    private static class Entry {
+        private final List<CIValue> suggestions;
+        private final long created;
+        @Nullable private volatile SuggestionTrie trie = null;
+
+        private Entry(final List<CIValue> suggestions, final long created) {
+            this.suggestions = suggestions;
+            this.created = created;
+        }
+
+        private SuggestionTrie getTrie() {
+            SuggestionTrie trie = this.trie;
+            if (trie == null) {
+                // racing threads may each build the trie, but they are equivalent
+                trie = SuggestionTrie.build(suggestions);
+                this.trie = trie;
+            }
+            return trie;
+        }
+    }
+}
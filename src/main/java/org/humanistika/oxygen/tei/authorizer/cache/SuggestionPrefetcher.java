@@ -0,0 +1,224 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmItem;
+import net.sf.saxon.s9api.XdmNode;
+import org.humanistika.oxygen.tei.authorizer.configuration.CompiledXPaths;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Dependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.annotation.Nullable;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.Closeable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Warms the {@link SuggestionCache} when a document is opened
+ *
+ * The document is scanned for the elements which match the context
+ * of each auto-complete that has prefetching enabled, and the suggestions
+ * for the selected and dependent values of those elements are fetched
+ * from the server by a single low priority background thread.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionPrefetcher implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SuggestionPrefetcher.class);
+
+    /**
+     * Fetches suggestions from the server
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        List<CIValue> fetch(AutoComplete autoComplete, @Nullable String selectedValue, @Nullable String dependentValue) throws Exception;
+    }
+
+    private final SuggestionCache suggestionCache;
+    private final Supplier<List<AutoComplete>> autoCompletes;
+    private final Fetcher fetcher;
+    private final ExecutorService executor;
+
+    /**
+     * @param suggestionCache the cache to warm
+     * @param autoCompletes supplies the current auto-completes
+     * @param fetcher fetches suggestions from the server
+     */
+    public SuggestionPrefetcher(final SuggestionCache suggestionCache, final Supplier<List<AutoComplete>> autoCompletes, final Fetcher fetcher) {
+        this.suggestionCache = suggestionCache;
+        this.autoCompletes = autoCompletes;
+        this.fetcher = fetcher;
+        this.executor = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, "tei-authorizer-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Prefetch the suggestions for a document in the background
+     *
+     * @param document the location of the document
+     */
+    public void prefetch(final URL document) {
+        executor.execute(() -> {
+            final List<AutoComplete> prefetchable = getPrefetchable();
+            if (!prefetchable.isEmpty()) {
+                prefetch(new StreamSource(document.toExternalForm()), prefetchable);
+            }
+        });
+    }
+
+    void prefetch(final Source document, final List<AutoComplete> prefetchable) {
+        final Map<AutoComplete, Set<SuggestionCache.Key>> keys;
+        try {
+            keys = scan(document, prefetchable);
+        } catch (final SaxonApiException e) {
+            LOGGER.warn("Unable to scan document for prefetching suggestions: " + document.getSystemId() + ". " + e.getMessage(), e);
+            return;
+        }
+
+        for (final Map.Entry<AutoComplete, Set<SuggestionCache.Key>> autoCompleteKeys : keys.entrySet()) {
+            final AutoComplete autoComplete = autoCompleteKeys.getKey();
+            for (final SuggestionCache.Key key : autoCompleteKeys.getValue()) {
+                if (suggestionCache.get(autoComplete, key.selectedValue, key.dependentValue) != null) {
+                    continue;
+                }
+                try {
+                    final List<CIValue> suggestions = fetcher.fetch(autoComplete, key.selectedValue, key.dependentValue);
+                    suggestionCache.put(autoComplete, key.selectedValue, key.dependentValue, suggestions);
+                } catch (final Exception e) {
+                    // the server is probably unavailable, so don't keep trying for this auto-complete
+                    LOGGER.warn("Unable to prefetch suggestions for: " + autoComplete.getContext() + "/@" + autoComplete.getAttribute() + ". " + e.getMessage(), e);
+                    break;
+                }
+            }
+        }
+    }
+
+    private List<AutoComplete> getPrefetchable() {
+        final List<AutoComplete> prefetchable = new ArrayList<>();
+        final List<AutoComplete> all = autoCompletes.get();
+        if (all != null) {
+            for (final AutoComplete autoComplete : all) {
+                if (autoComplete.getCacheInfo().getPrefetch() > 0) {
+                    prefetchable.add(autoComplete);
+                }
+            }
+        }
+        return prefetchable;
+    }
+
+    /**
+     * Find the distinct selected and dependent values of the
+     * elements in a document which match each auto-complete
+     *
+     * @param document the document to scan
+     * @param prefetchable the auto-completes to scan for
+     *
+     * @return the values for each auto-complete, limited by its prefetch setting
+     */
+    Map<AutoComplete, Set<SuggestionCache.Key>> scan(final Source document, final List<AutoComplete> prefetchable) throws SaxonApiException {
+        final XdmNode doc = CompiledXPaths.PROCESSOR.newDocumentBuilder().build(document);
+
+        final Map<AutoComplete, Set<SuggestionCache.Key>> keys = new LinkedHashMap<>();
+        for (final AutoComplete autoComplete : prefetchable) {
+            final int max = autoComplete.getCacheInfo().getPrefetch();
+            final Dependent dependent = autoComplete.getDependent();
+            final CompiledXPaths xpaths = compiledXPaths(autoComplete);
+
+            final XPathSelector selection = xpaths.getSelection() == null ? null : xpaths.getSelection().load();
+            final XPathSelector dependentSelector = xpaths.getDependent() == null ? null : xpaths.getDependent().load();
+
+            final XPathSelector contexts = xpaths.getContext().load();
+            contexts.setContextItem(doc);
+
+            final Set<SuggestionCache.Key> autoCompleteKeys = new LinkedHashSet<>();
+            for (final XdmItem context : contexts) {
+                if (autoCompleteKeys.size() >= max) {
+                    break;
+                }
+                if (!(context instanceof XdmNode)) {
+                    continue;
+                }
+
+                final String selectedValue = selection == null ? null : evaluateString(selection, context);
+                String dependentValue = dependentSelector == null ? null : evaluateString(dependentSelector, context);
+                if (dependent != null && (dependentValue == null || dependentValue.isEmpty())) {
+                    dependentValue = dependent.getDefault();
+                }
+                autoCompleteKeys.add(new SuggestionCache.Key(selectedValue, dependentValue));
+            }
+            keys.put(autoComplete, autoCompleteKeys);
+        }
+        return keys;
+    }
+
+    /**
+     * Get the XPaths of an auto-complete, which are compiled when
+     * the configuration is loaded, or compile them now if it was
+     * not loaded from a configuration file
+     */
+    private static CompiledXPaths compiledXPaths(final AutoComplete autoComplete) throws SaxonApiException {
+        if (autoComplete.getCompiledXPaths() != null) {
+            return autoComplete.getCompiledXPaths();
+        }
+        return CompiledXPaths.compile(
+                autoComplete.getNamespaceBindings(),
+                autoComplete.getContext(),
+                autoComplete.getSelection() == null ? null : autoComplete.getSelection().getXPath(),
+                autoComplete.getDependent() == null ? null : autoComplete.getDependent().getAttribute()
+        );
+    }
+
+    private static String evaluateString(final XPathSelector selector, final XdmItem context) throws SaxonApiException {
+        selector.setContextItem(context);
+        final XdmItem result = selector.evaluateSingle();
+        return result == null ? null : result.getStringValue();
+    }
+
+    /**
+     * Stops prefetching, any pending documents are discarded
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
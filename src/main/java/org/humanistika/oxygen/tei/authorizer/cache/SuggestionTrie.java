@@ -0,0 +1,310 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable prefix trie over a list of suggestions, for
+ * narrowing the suggestions locally as the user types
+ *
+ * A suggestion matches a prefix when either its value or its
+ * description starts with the prefix, ignoring case. Matching
+ * takes O(prefix length + matches) time, rather than the
+ * O(suggestions) time of {@link #filter(List, String)}.
+ *
+ * The trie is path compressed, so it has at most two nodes per key. The
+ * keys are sorted, so that the keys below any node are a contiguous
+ * range of the sorted keys; each node just records that range and its
+ * depth, and the characters of the edge into a node are read from the
+ * first key in its range. The children of a node are stored contiguously
+ * and sorted by their first character, so that they may be binary searched.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionTrie {
+
+    /**
+     * Only the first characters of each key are held in the trie, longer
+     * prefixes are matched against the candidates found by the trie
+     */
+    final static int MAX_KEY_LENGTH = 64;
+
+    private final List<CIValue> suggestions;
+
+    // the sorted keys, and the suggestion index of each key
+    private final String[] keys;
+    private final int[] postings;
+
+    // the nodes of the trie, the root is node 0
+    private final char[] label;
+    private final int[] childStart;
+    private final int[] childCount;
+    private final int[] from;
+    private final int[] to;
+    private final int[] depth;
+
+    private SuggestionTrie(final List<CIValue> suggestions, final String[] keys, final int[] postings, final char[] label, final int[] childStart, final int[] childCount, final int[] from, final int[] to, final int[] depth) {
+        this.suggestions = suggestions;
+        this.keys = keys;
+        this.postings = postings;
+        this.label = label;
+        this.childStart = childStart;
+        this.childCount = childCount;
+        this.from = from;
+        this.to = to;
+        this.depth = depth;
+    }
+
+    /**
+     * Build a trie from the values and descriptions of suggestions
+     *
+     * @param suggestions the suggestions
+     *
+     * @return the trie
+     */
+    public static SuggestionTrie build(final List<CIValue> suggestions) {
+        final List<Key> keys = new ArrayList<>(suggestions.size() * 2);
+        for (int i = 0; i < suggestions.size(); i++) {
+            final CIValue suggestion = suggestions.get(i);
+            final String value = fold(suggestion.getValue(), MAX_KEY_LENGTH);
+            if (value != null) {
+                keys.add(new Key(value, i));
+            }
+            final String description = fold(suggestion.getAnnotation(), MAX_KEY_LENGTH);
+            if (description != null && !description.equals(value)) {
+                keys.add(new Key(description, i));
+            }
+        }
+        keys.sort(null);
+
+        final String[] sortedKeys = new String[keys.size()];
+        final int[] postings = new int[keys.size()];
+        for (int i = 0; i < postings.length; i++) {
+            sortedKeys[i] = keys.get(i).key;
+            postings[i] = keys.get(i).suggestion;
+        }
+
+        // breadth first, so that the children of each node are allocated contiguously
+        final Nodes nodes = new Nodes(keys.size() + 1);
+        nodes.add('\0', 0, keys.size(), 0);
+        for (int node = 0; node < nodes.size; node++) {
+            final int d = nodes.depth[node];
+            int k = nodes.from[node];
+            final int end = nodes.to[node];
+
+            // keys which end at this node sort first
+            while (k < end && sortedKeys[k].length() == d) {
+                k++;
+            }
+
+            nodes.childStart[node] = nodes.size;
+            while (k < end) {
+                final char c = sortedKeys[k].charAt(d);
+                final int groupStart = k;
+                while (k < end && sortedKeys[k].charAt(d) == c) {
+                    k++;
+                }
+                // the keys are sorted, so the common prefix of the first and last keys is common to the group
+                nodes.add(c, groupStart, k, commonPrefixLength(sortedKeys[groupStart], sortedKeys[k - 1]));
+                nodes.childCount[node]++;
+            }
+        }
+
+        return new SuggestionTrie(suggestions, sortedKeys, postings,
+                Arrays.copyOf(nodes.label, nodes.size), Arrays.copyOf(nodes.childStart, nodes.size), Arrays.copyOf(nodes.childCount, nodes.size),
+                Arrays.copyOf(nodes.from, nodes.size), Arrays.copyOf(nodes.to, nodes.size), Arrays.copyOf(nodes.depth, nodes.size));
+    }
+
+    /**
+     * Find the suggestions whose value or description starts with a prefix, ignoring case
+     *
+     * @param prefix the prefix
+     *
+     * @return the matching suggestions, in their original order
+     */
+    public List<CIValue> filter(final String prefix) {
+        final String folded = fold(prefix, Integer.MAX_VALUE);
+        int node = 0;
+        final int length = Math.min(folded.length(), MAX_KEY_LENGTH);
+        for (int i = 0; i < length; i++) {
+            if (i == depth[node]) {
+                node = child(node, folded.charAt(i));
+                if (node == -1) {
+                    return Collections.emptyList();
+                }
+            } else if (keys[from[node]].charAt(i) != folded.charAt(i)) {
+                return Collections.emptyList();
+            }
+        }
+
+        final int[] matches = Arrays.copyOfRange(postings, from[node], to[node]);
+        Arrays.sort(matches);
+        final List<CIValue> results = new ArrayList<>(matches.length);
+        for (int i = 0; i < matches.length; i++) {
+            if (i > 0 && matches[i] == matches[i - 1]) {
+                continue;
+            }
+            final CIValue suggestion = suggestions.get(matches[i]);
+            if (folded.length() <= MAX_KEY_LENGTH || matches(suggestion, folded)) {
+                results.add(suggestion);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find the suggestions whose value or description starts with a prefix,
+     * ignoring case, by examining each suggestion in turn
+     *
+     * @param suggestions the suggestions
+     * @param prefix the prefix
+     *
+     * @return the matching suggestions, in their original order
+     */
+    public static List<CIValue> filter(final List<CIValue> suggestions, final String prefix) {
+        final String folded = fold(prefix, Integer.MAX_VALUE);
+        final List<CIValue> results = new ArrayList<>();
+        for (final CIValue suggestion : suggestions) {
+            if (matches(suggestion, folded)) {
+                results.add(suggestion);
+            }
+        }
+        return results;
+    }
+
+    private static int commonPrefixLength(final String a, final String b) {
+        final int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private int child(final int node, final char c) {
+        int low = childStart[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (label[mid] < c) {
+                low = mid + 1;
+            } else if (label[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(final CIValue suggestion, final String foldedPrefix) {
+        return startsWith(suggestion.getValue(), foldedPrefix) || startsWith(suggestion.getAnnotation(), foldedPrefix);
+    }
+
+    private static boolean startsWith(@Nullable final String s, final String foldedPrefix) {
+        if (s == null || s.length() < foldedPrefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < foldedPrefix.length(); i++) {
+            if (Character.toLowerCase(s.charAt(i)) != foldedPrefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower-cases each character, so that the folded string has the same length
+     */
+    @Nullable
+    private static String fold(@Nullable final String s, final int maxLength) {
+        if (s == null) {
+            return null;
+        }
+        final char[] folded = new char[Math.min(s.length(), maxLength)];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(s.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    private static class Key implements Comparable<Key> {
+        private final String key;
+        private final int suggestion;
+
+        private Key(final String key, final int suggestion) {
+            this.key = key;
+            this.suggestion = suggestion;
+        }
+
+        @Override
+        public int compareTo(final Key other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    /**
+     * Growable arrays of trie nodes, used whilst building
+     */
+    private static class Nodes {
+        private char[] label;
+        private int[] childStart;
+        private int[] childCount;
+        private int[] from;
+        private int[] to;
+        private int[] depth;
+        private int size = 0;
+
+        private Nodes(final int capacity) {
+            this.label = new char[capacity];
+            this.childStart = new int[capacity];
+            this.childCount = new int[capacity];
+            this.from = new int[capacity];
+            this.to = new int[capacity];
+            this.depth = new int[capacity];
+        }
+
+        private void add(final char c, final int rangeFrom, final int rangeTo, final int nodeDepth) {
+            if (size == label.length) {
+                final int capacity = label.length * 2;
+                label = Arrays.copyOf(label, capacity);
+                childStart = Arrays.copyOf(childStart, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+            }
+            label[size] = c;
+            from[size] = rangeFrom;
+            to[size] = rangeTo;
+            depth[size] = nodeDepth;
+            size++;
+        }
+    }
+}
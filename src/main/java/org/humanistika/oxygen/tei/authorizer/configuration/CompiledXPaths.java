@@ -0,0 +1,110 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * The XPath expressions of an auto-complete,
+ * compiled once when the configuration is loaded
+ *
+ * All expressions are compiled by the same {@link #PROCESSOR}, and so
+ * may only be evaluated against documents built by that processor.
+ *
+ * Instances are immutable and thread-safe, although the selectors
+ * loaded from the executables are not.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class CompiledXPaths {
+
+    /**
+     * The Saxon processor which compiles the expressions
+     */
+    public final static Processor PROCESSOR = new Processor(false);
+
+    private final XPathExecutable context;
+    @Nullable private final XPathExecutable selection;
+    @Nullable private final XPathExecutable dependent;
+
+    private CompiledXPaths(final XPathExecutable context, @Nullable final XPathExecutable selection, @Nullable final XPathExecutable dependent) {
+        this.context = context;
+        this.selection = selection;
+        this.dependent = dependent;
+    }
+
+    /**
+     * Compile the XPath expressions of an auto-complete
+     *
+     * @param namespaceBindings the namespace bindings in scope for the expressions
+     * @param context the XPath which selects the elements to auto-complete
+     * @param selection the XPath, relative to the context, of the selected value, or null
+     * @param dependentAttribute the name of the dependent attribute, or null
+     *
+     * @return the compiled expressions
+     *
+     * @throws SaxonApiException if an expression is malformed
+     */
+    public static CompiledXPaths compile(@Nullable final Map<String, String> namespaceBindings, final String context, @Nullable final String selection, @Nullable final String dependentAttribute) throws SaxonApiException {
+        final XPathCompiler xpathCompiler = PROCESSOR.newXPathCompiler();
+        if (namespaceBindings != null) {
+            for (final Map.Entry<String, String> binding : namespaceBindings.entrySet()) {
+                xpathCompiler.declareNamespace(binding.getKey(), binding.getValue());
+            }
+        }
+
+        return new CompiledXPaths(
+                xpathCompiler.compile(context),
+                selection == null ? null : xpathCompiler.compile("string(" + selection + ")"),
+                dependentAttribute == null ? null : xpathCompiler.compile("string(@" + dependentAttribute + ")")
+        );
+    }
+
+    /**
+     * @return The XPath which selects the elements to auto-complete
+     */
+    public XPathExecutable getContext() {
+        return context;
+    }
+
+    /**
+     * @return The XPath which evaluates to the selected value for a context element, or null if there is no selection
+     */
+    @Nullable
+    public XPathExecutable getSelection() {
+        return selection;
+    }
+
+    /**
+     * @return The XPath which evaluates to the value of the dependent attribute of a context element, or null if there is no dependent
+     */
+    @Nullable
+    public XPathExecutable getDependent() {
+        return dependent;
+    }
+}
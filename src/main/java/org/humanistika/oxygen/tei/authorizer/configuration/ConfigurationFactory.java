@@ -21,6 +21,10 @@ package org.humanistika.oxygen.tei.authorizer.configuration;
 
 import org.humanistika.oxygen.tei.authorizer.configuration.impl.XmlConfiguration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
 /**
  * Factory for creating instances of TeiCompleter
  *
@@ -47,7 +51,42 @@ public class ConfigurationFactory extends org.humanistika.oxygen.tei.completer.c
      */
     @Override
     public Configuration loadConfiguration() {
-        return new XmlConfiguration(configDir.resolve(CONFIG_FILE_NAME_PREFIX + ".xml"));
+        return new XmlConfiguration(getConfigFile());
+    }
+
+    /**
+     * Watches the configuration file, and reloads the
+     * Configuration in the background whenever it changes
+     *
+     * @param listener receives each reloaded Configuration,
+     *     whose auto-completes have already been loaded
+     *
+     * @return the watcher, which should be closed when
+     *     the configuration no longer needs to be watched
+     *
+     * @throws IOException if the configuration file cannot be watched
+     */
+    public ConfigurationWatcher watchConfiguration(final Consumer<Configuration> listener) throws IOException {
+        return new ConfigurationWatcher(getConfigFile(), this::loadConfiguration, listener);
+    }
+
+    /**
+     * Get the configuration file
+     *
+     * @return The path to the configuration file
+     */
+    public Path getConfigFile() {
+        return configDir.resolve(CONFIG_FILE_NAME_PREFIX + ".xml");
+    }
+
+    /**
+     * Get the directory which holds the configuration
+     * and any other persistent state of the TEI-Authorizer
+     *
+     * @return The configuration directory
+     */
+    public Path getConfigDirectory() {
+        return configDir;
     }
 
     protected String getConfigFolderName() {
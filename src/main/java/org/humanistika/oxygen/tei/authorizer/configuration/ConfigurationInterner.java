@@ -0,0 +1,112 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonicalizes the values which are repeated across the
+ * auto-completes of a configuration, so that equal values
+ * share a single immutable instance
+ *
+ * Namespace bindings are copied into compact immutable maps, which
+ * have a specialized representation for a single binding. An interner
+ * is used for the expansion of a single configuration, and is safe
+ * to use from several threads.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class ConfigurationInterner {
+    private final ConcurrentMap<Map<String, String>, Map<String, String>> namespaceBindings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, Authentication> authentications = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ServerInfo, ServerInfo> serverInfos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * @param bindings namespace bindings, which are not modified
+     *
+     * @return an immutable map of the namespace bindings, which is shared by all equal bindings
+     */
+    @Nullable
+    public Map<String, String> namespaceBindings(@Nullable final Map<String, String> bindings) {
+        if(bindings == null) {
+            return null;
+        }
+        final Map<String, String> interned = namespaceBindings.get(bindings);
+        if(interned != null) {
+            return interned;
+        }
+        final Map<String, String> immutable = Map.copyOf(bindings);
+        final Map<String, String> existing = namespaceBindings.putIfAbsent(immutable, immutable);
+        return existing != null ? existing : immutable;
+    }
+
+    /**
+     * @param authentication authentication details
+     *
+     * @return the authentication, or an equal authentication which was interned previously
+     */
+    @Nullable
+    public Authentication authentication(@Nullable final Authentication authentication) {
+        if(authentication == null) {
+            return null;
+        }
+        final Object key = Arrays.asList(authentication.getAuthenticationType(), authentication.getUsername(), authentication.getPassword());
+        final Authentication existing = authentications.putIfAbsent(key, authentication);
+        return existing != null ? existing : authentication;
+    }
+
+    /**
+     * @param serverInfo the configuration of the connections to a server
+     *
+     * @return the server configuration, or an equal server configuration which was interned previously
+     */
+    @Nullable
+    public ServerInfo serverInfo(@Nullable final ServerInfo serverInfo) {
+        if(serverInfo == null) {
+            return null;
+        }
+        final ServerInfo existing = serverInfos.putIfAbsent(serverInfo, serverInfo);
+        return existing != null ? existing : serverInfo;
+    }
+
+    /**
+     * @param str a string, e.g. a base URL or URL template
+     *
+     * @return the string, or an equal string which was interned previously
+     */
+    @Nullable
+    public String string(@Nullable final String str) {
+        if(str == null) {
+            return null;
+        }
+        final String existing = strings.putIfAbsent(str, str);
+        return existing != null ? existing : str;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the configuration file for changes, and reloads
+ * the configuration in the background when it is changed
+ *
+ * Editors often write a file in several steps, so the configuration
+ * is only reloaded once the file has been quiet for {@link #QUIET_PERIOD}
+ * milliseconds. A reloaded configuration is fully expanded before it is
+ * passed to the listener, and a configuration which cannot be loaded
+ * is not passed to the listener at all, so that the previous
+ * configuration remains in use.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class ConfigurationWatcher implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    /**
+     * The time in milliseconds that the configuration file must be unchanged before it is reloaded
+     */
+    public final static long QUIET_PERIOD = 500;
+
+    private final Path configFile;
+    private final Supplier<Configuration> loader;
+    private final Consumer<Configuration> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param configFile the configuration file to watch
+     * @param loader loads the configuration from the configuration file
+     * @param listener receives each reloaded configuration
+     *
+     * @throws IOException if the directory of the configuration file cannot be watched
+     */
+    public ConfigurationWatcher(final Path configFile, final Supplier<Configuration> loader, final Consumer<Configuration> listener) throws IOException {
+        this.configFile = configFile;
+        this.loader = loader;
+        this.listener = listener;
+        this.watchService = configFile.getFileSystem().newWatchService();
+        try {
+            configFile.toAbsolutePath().getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch(final IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::watch, "tei-authorizer-config-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch() {
+        try {
+            while(true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                //keep collecting events until the file has been quiet for a while
+                while(key != null) {
+                    changed |= isConfigFileEvent(key.pollEvents());
+                    if(!key.reset()) {
+                        LOGGER.warn("No longer able to watch configuration file: {}", configFile.toAbsolutePath());
+                        return;
+                    }
+                    key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                }
+
+                if(changed) {
+                    reload();
+                }
+            }
+        } catch(final InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        }
+    }
+
+    private boolean isConfigFileEvent(final List<WatchEvent<?>> events) {
+        for(final WatchEvent<?> event : events) {
+            if(event.kind() == OVERFLOW) {
+                return true;
+            }
+            final Object context = event.context();
+            if(context instanceof Path && configFile.getFileName().equals(context)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reload() {
+        LOGGER.info("Reloading changed configuration: {}", configFile.toAbsolutePath());
+        try {
+            final Configuration configuration = loader.get();
+
+            //expand the configuration here, rather than on the first completion which uses it
+            if(configuration == null || configuration.getAutoCompletes() == null) {
+                LOGGER.warn("Unable to reload configuration: {}, the previous configuration remains in use", configFile.toAbsolutePath());
+                return;
+            }
+
+            listener.accept(configuration);
+        } catch(final RuntimeException e) {
+            LOGGER.error("Unable to reload configuration: " + configFile.toAbsolutePath() + ", the previous configuration remains in use", e);
+        }
+    }
+
+    /**
+     * Stops watching the configuration file
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
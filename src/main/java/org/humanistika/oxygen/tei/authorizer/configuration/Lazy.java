@@ -0,0 +1,89 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * A value which is computed the first time that it is needed,
+ * and then remembered
+ *
+ * The value is computed at most once, even when it is first
+ * needed by several threads at the same time, and may be null.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ *
+ * @param <T> the type of the value
+ */
+public final class Lazy<T> implements Supplier<T> {
+    @Nullable private Supplier<T> supplier;
+    @Nullable private volatile T value;
+    private volatile boolean computed;
+
+    private Lazy(final Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * @param supplier computes the value, it is released once the value has been computed
+     *
+     * @return a lazy value
+     */
+    public static <T> Lazy<T> of(final Supplier<T> supplier) {
+        return new Lazy<>(supplier);
+    }
+
+    /**
+     * @param value the value
+     *
+     * @return a lazy value which has already been computed
+     */
+    public static <T> Lazy<T> value(@Nullable final T value) {
+        final Lazy<T> lazy = new Lazy<>(null);
+        lazy.value = value;
+        lazy.computed = true;
+        return lazy;
+    }
+
+    @Override
+    @Nullable
+    public T get() {
+        if(!computed) {
+            synchronized(this) {
+                if(!computed) {
+                    this.value = supplier.get();
+                    this.computed = true;
+                    this.supplier = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the value has been computed
+     */
+    public boolean isComputed() {
+        return computed;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A URL containing <i>$variable</i> templates, which is
+ * parsed once into a sequence of literal and variable
+ * segments, so that it may be expanded in a single pass.
+ *
+ * The value of each variable is percent-encoded according
+ * to the component of the URL (authority, path, query or
+ * fragment) in which the variable appears.
+ *
+ * Instances are immutable and thread-safe.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public final class UrlTemplate {
+
+    private enum Component {
+        AUTHORITY("!$&'()*+,;="),
+        PATH("!$&'()*+,;=:@"),
+        QUERY("!$'()*,;:@/?"),
+        FRAGMENT("!$&'()*+,;=:@/?");
+
+        /**
+         * Characters in addition to the unreserved characters
+         * which do not need to be encoded within the component
+         */
+        private final String allowed;
+
+        Component(final String allowed) {
+            this.allowed = allowed;
+        }
+
+        private boolean isAllowed(final char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_' || c == '~'
+                    || allowed.indexOf(c) > -1;
+        }
+    }
+
+    private static final class Segment {
+        private final String text;
+        @Nullable private final String variable;
+        private final Component component;
+
+        private Segment(final String text, @Nullable final String variable, final Component component) {
+            this.text = text;
+            this.variable = variable;
+            this.component = component;
+        }
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Segment[] segments;
+    private final int literalLength;
+
+    private UrlTemplate(final Segment[] segments) {
+        this.segments = segments;
+        int len = 0;
+        for (final Segment segment : segments) {
+            if (segment.variable == null) {
+                len += segment.text.length();
+            }
+        }
+        this.literalLength = len;
+    }
+
+    /**
+     * Parse a URL template
+     *
+     * A variable is a '$' followed by one or more ASCII letters.
+     *
+     * @param template The URL template
+     *
+     * @return The compiled template
+     */
+    public static UrlTemplate compile(final String template) {
+        final List<Segment> segments = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        Component component = Component.PATH;
+
+        int i = 0;
+        while (i < template.length()) {
+            final char c = template.charAt(i);
+            if (c == '$') {
+                int end = i + 1;
+                while (end < template.length() && isVariableChar(template.charAt(end))) {
+                    end++;
+                }
+                if (end > i + 1) {
+                    if (literal.length() > 0) {
+                        segments.add(new Segment(literal.toString(), null, component));
+                        literal.setLength(0);
+                    }
+                    segments.add(new Segment(template.substring(i, end), template.substring(i + 1, end), component));
+                    i = end;
+                    continue;
+                }
+            }
+
+            literal.append(c);
+            component = next(component, literal, c);
+            i++;
+        }
+
+        if (literal.length() > 0) {
+            segments.add(new Segment(literal.toString(), null, component));
+        }
+        return new UrlTemplate(segments.toArray(new Segment[0]));
+    }
+
+    private static boolean isVariableChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Determine the component of the URL following a literal character
+     */
+    private static Component next(final Component component, final StringBuilder literal, final char c) {
+        switch (c) {
+            case '#':
+                return Component.FRAGMENT;
+
+            case '?':
+                return component == Component.FRAGMENT ? component : Component.QUERY;
+
+            case '/':
+                if (component == Component.PATH && literal.length() >= 3 && literal.charAt(literal.length() - 2) == '/' && literal.charAt(literal.length() - 3) == ':') {
+                    return Component.AUTHORITY;
+                } else if (component == Component.AUTHORITY) {
+                    return Component.PATH;
+                }
+                return component;
+
+            default:
+                return component;
+        }
+    }
+
+    /**
+     * Substitute a variable with a fixed value,
+     * e.g. a value from the configuration
+     *
+     * @param variable The name of the variable (without the '$')
+     * @param value The value of the variable, if null the template is unchanged
+     * @param encode true if the value should be percent-encoded, false if the value is already a URL fragment
+     *
+     * @return A template with the variable replaced
+     */
+    public UrlTemplate bind(final String variable, @Nullable final String value, final boolean encode) {
+        if (value == null) {
+            return this;
+        }
+
+        final List<Segment> bound = new ArrayList<>(segments.length);
+        for (final Segment segment : segments) {
+            final Segment next;
+            if (variable.equals(segment.variable)) {
+                final StringBuilder builder = new StringBuilder(value.length());
+                append(builder, value, encode ? segment.component : null);
+                next = new Segment(builder.toString(), null, segment.component);
+            } else {
+                next = segment;
+            }
+
+            // merge adjacent literals
+            final int last = bound.size() - 1;
+            if (next.variable == null && last > -1 && bound.get(last).variable == null) {
+                bound.set(last, new Segment(bound.get(last).text + next.text, null, next.component));
+            } else {
+                bound.add(next);
+            }
+        }
+        return new UrlTemplate(bound.toArray(new Segment[0]));
+    }
+
+    /**
+     * Expand the template
+     *
+     * @param values A function which returns the value of a variable,
+     *     or null if the variable should be left unexpanded
+     *
+     * @return The expanded URL
+     */
+    public String expand(final Function<String, String> values) {
+        final StringBuilder builder = new StringBuilder(literalLength + 16 * (segments.length - 1));
+        for (final Segment segment : segments) {
+            if (segment.variable == null) {
+                builder.append(segment.text);
+            } else {
+                final String value = values.apply(segment.variable);
+                if (value == null) {
+                    builder.append(segment.text);
+                } else {
+                    append(builder, value, segment.component);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Append a value, percent-encoding any UTF-8 bytes
+     * which are not allowed in the component
+     *
+     * @param component The component of the URL, or null if the value should not be encoded
+     */
+    private static void append(final StringBuilder builder, final String value, @Nullable final Component component) {
+        if (component == null) {
+            builder.append(value);
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80 && component.isAllowed(c)) {
+                builder.append(c);
+            } else {
+                final int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+                for (final byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    /**
+     * @return The template, with any unbound variables
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(literalLength + 16 * segments.length);
+        for (final Segment segment : segments) {
+            builder.append(segment.text);
+        }
+        return builder.toString();
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.humanistika.oxygen.tei.authorizer.configuration.beans;
 
+import org.humanistika.oxygen.tei.authorizer.configuration.CompiledXPaths;
+import org.humanistika.oxygen.tei.authorizer.configuration.Lazy;
+import org.humanistika.oxygen.tei.authorizer.configuration.UrlTemplate;
 import org.humanistika.oxygen.tei.completer.configuration.beans.Dependent;
 import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
 import org.humanistika.oxygen.tei.completer.configuration.beans.ResponseAction;
@@ -26,23 +29,204 @@ import org.humanistika.oxygen.tei.completer.configuration.beans.Selection;
 
 import javax.annotation.Nullable;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Created by aretter on 07/04/2016.
  */
 public class AutoComplete extends org.humanistika.oxygen.tei.completer.configuration.beans.AutoComplete {
 
+    /**
+     * Variables of the request URL for retrieving a page of suggestions
+     */
+    public enum UrlVar {
+        OFFSET,
+        LIMIT;
+
+        private static final Map<String, UrlVar> BY_CAMEL_NAME = new HashMap<>();
+        static {
+            for (final UrlVar urlVar : values()) {
+                BY_CAMEL_NAME.put(urlVar.camelName(), urlVar);
+            }
+        }
+
+        /**
+         * Get the URL variable from its camel-case name
+         *
+         * @param camelName the camel-case name of the variable
+         *
+         * @return the URL variable, or null if there is no such variable
+         */
+        @Nullable
+        public static UrlVar fromCamelName(final String camelName) {
+            return BY_CAMEL_NAME.get(camelName);
+        }
+
+        public String var() {
+            return "$" + camelName();
+        }
+
+        public String camelName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final ServerInfo requestServerInfo;
     @Nullable
-    private final UploadInfo uploadInfo;
+    private final Supplier<UploadInfo> uploadInfo;
+    @Nullable private final String uploadKey;
+    private final CacheInfo cacheInfo;
+    private final long latencyBudget;
+    private final int pageSize;
+    @Nullable private final UrlTemplate pageUrl;
+    @Nullable private final CompiledXPaths compiledXPaths;
 
     public AutoComplete(final Map<String, String> namespaceBindings, final String context, final String attribute, final Dependent dependent, final Selection selection, final RequestInfo requestInfo, final ResponseAction responseAction, @Nullable final UploadInfo uploadInfo) {
+        this(namespaceBindings, context, attribute, dependent, selection, requestInfo, responseAction, uploadInfo, CacheInfo.DEFAULT);
+    }
+
+    public AutoComplete(final Map<String, String> namespaceBindings, final String context, final String attribute, final Dependent dependent, final Selection selection, final RequestInfo requestInfo, final ResponseAction responseAction, @Nullable final UploadInfo uploadInfo, final CacheInfo cacheInfo) {
+        this(namespaceBindings, context, attribute, dependent, selection, requestInfo, responseAction, uploadInfo, cacheInfo, 0);
+    }
+
+    public AutoComplete(final Map<String, String> namespaceBindings, final String context, final String attribute, final Dependent dependent, final Selection selection, final RequestInfo requestInfo, final ResponseAction responseAction, @Nullable final UploadInfo uploadInfo, final CacheInfo cacheInfo, final long latencyBudget) {
+        this(namespaceBindings, context, attribute, dependent, selection, requestInfo, responseAction, uploadInfo, cacheInfo, latencyBudget, 0);
+    }
+
+    public AutoComplete(final Map<String, String> namespaceBindings, final String context, final String attribute, final Dependent dependent, final Selection selection, final RequestInfo requestInfo, final ResponseAction responseAction, @Nullable final UploadInfo uploadInfo, final CacheInfo cacheInfo, final long latencyBudget, final int pageSize) {
+        this(namespaceBindings, context, attribute, dependent, selection, requestInfo, null, responseAction, uploadInfo == null ? null : Lazy.value(uploadInfo), uploadInfo == null ? null : uploadInfo.getKey(), cacheInfo, latencyBudget, pageSize, null);
+    }
+
+    /**
+     * @param requestServerInfo the configuration of the server that suggestions are requested from, or null for the default configuration
+     * @param uploadInfo supplies the upload configuration, which may be expanded lazily the first time that it is needed, or null if there is no upload configuration
+     * @param uploadKey the key of the upload configuration, see {@link UploadInfo#getKey()}, or null if there is no upload configuration
+     */
+    public AutoComplete(final Map<String, String> namespaceBindings, final String context, final String attribute, final Dependent dependent, final Selection selection, final RequestInfo requestInfo, @Nullable final ServerInfo requestServerInfo, final ResponseAction responseAction, @Nullable final Supplier<UploadInfo> uploadInfo, @Nullable final String uploadKey, final CacheInfo cacheInfo, final long latencyBudget, final int pageSize, @Nullable final CompiledXPaths compiledXPaths) {
         super(namespaceBindings, context, attribute, dependent, selection, requestInfo, responseAction);
+        this.requestServerInfo = requestServerInfo != null ? requestServerInfo : ServerInfo.DEFAULT;
         this.uploadInfo = uploadInfo;
+        this.uploadKey = uploadKey;
+        this.cacheInfo = cacheInfo;
+        this.latencyBudget = latencyBudget;
+        this.pageSize = pageSize;
+        if(pageSize > 0 && requestInfo != null && (requestInfo.getUrl().contains(UrlVar.OFFSET.var()) || requestInfo.getUrl().contains(UrlVar.LIMIT.var()))) {
+            this.pageUrl = UrlTemplate.compile(requestInfo.getUrl());
+        } else {
+            this.pageUrl = null;
+        }
+        this.compiledXPaths = compiledXPaths;
+    }
+
+    /**
+     * Get the configuration of the server that
+     * suggestions are requested from
+     *
+     * @return the configuration of the server
+     */
+    public ServerInfo getRequestServerInfo() {
+        return requestServerInfo;
     }
 
     @Nullable
     public UploadInfo getUploadInfo() {
+        return uploadInfo == null ? null : uploadInfo.get();
+    }
+
+    /**
+     * Get the supplier of the upload configuration, so that
+     * it may be passed on without expanding the configuration
+     *
+     * @return the supplier of the upload configuration, or null if there is no upload configuration
+     */
+    @Nullable
+    public Supplier<UploadInfo> getUploadInfoSupplier() {
         return uploadInfo;
     }
+
+    /**
+     * Determines whether there is an upload configuration,
+     * without expanding it
+     *
+     * @return true if suggestions may be uploaded
+     */
+    public boolean hasUpload() {
+        return uploadInfo != null;
+    }
+
+    /**
+     * Get the key of the upload configuration, without expanding it
+     *
+     * @return the key, see {@link UploadInfo#getKey()}, or null if there is no upload configuration
+     */
+    @Nullable
+    public String getUploadKey() {
+        return uploadKey;
+    }
+
+    public CacheInfo getCacheInfo() {
+        return cacheInfo;
+    }
+
+    /**
+     * @return The maximum time in milliseconds to wait for the server when completing, 0 to wait until it responds
+     */
+    public long getLatencyBudget() {
+        return latencyBudget;
+    }
+
+    /**
+     * @return The compiled context, selection and dependent XPaths, or null if they were not compiled when configured
+     */
+    @Nullable
+    public CompiledXPaths getCompiledXPaths() {
+        return compiledXPaths;
+    }
+
+    /**
+     * @return The maximum number of suggestions to show at once, 0 if there is no maximum
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Determines whether the server returns the suggestions a page at a time,
+     * i.e. the request URL uses the {@link UrlVar#OFFSET} or {@link UrlVar#LIMIT} variables
+     *
+     * @return true if the server pages the suggestions
+     */
+    public boolean isServerPaged() {
+        return pageUrl != null;
+    }
+
+    /**
+     * Get the request for a page of suggestions
+     *
+     * @param offset the offset of the first suggestion of the page
+     *
+     * @return the request, with the {@link UrlVar#OFFSET} and {@link UrlVar#LIMIT} variables expanded
+     */
+    public RequestInfo getPageRequestInfo(final int offset) {
+        if(pageUrl == null) {
+            return getRequestInfo();
+        }
+        final String url = pageUrl.expand(variable -> {
+            final UrlVar urlVar = UrlVar.fromCamelName(variable);
+            if(urlVar == null) {
+                return null;
+            }
+            switch(urlVar) {
+                case OFFSET:
+                    return String.valueOf(offset);
+                case LIMIT:
+                    return String.valueOf(pageSize);
+                default:
+                    return null;
+            }
+        });
+        return new RequestInfo(url, getRequestInfo().getAuthentication());
+    }
 }
@@ -0,0 +1,87 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.beans;
+
+import javax.annotation.Nullable;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Configuration details for uploading a batch of suggestions to a server
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class BatchInfo {
+    private final String url;
+    private final String configuredUrl;
+    private final long window;
+    private final int maxSize;
+
+    public BatchInfo(final String url, final long window, final int maxSize) {
+        this(url, window, maxSize, null);
+    }
+
+    /**
+     * @param configuredUrl The URL as it was configured, before the base URL and credentials were expanded into it, or null if it is the same as the url
+     */
+    public BatchInfo(final String url, final long window, final int maxSize, @Nullable final String configuredUrl) {
+        this.url = url;
+        this.configuredUrl = configuredUrl != null ? configuredUrl : url;
+        this.window = window;
+        this.maxSize = maxSize;
+    }
+
+    public URL getUrl() throws MalformedURLException {
+        return new URL(url);
+    }
+
+    /**
+     * @return The URL of the batch endpoint as it was configured
+     */
+    public String getUrlTemplate() {
+        return url;
+    }
+
+    /**
+     * Get the URL as it was configured, i.e. before
+     * the base URL and credentials were expanded into it
+     *
+     * @return The configured URL
+     */
+    public String getConfiguredUrl() {
+        return configuredUrl;
+    }
+
+    /**
+     * @return The time in milliseconds to wait for further suggestions before sending a batch
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * @return The maximum number of suggestions to send in a single batch
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
@@ -39,8 +39,41 @@ public class BodyInfo {
     }
 
     public enum Encoding {
-        GZIP,
-        NONE
+        GZIP(0, 9),
+        DEFLATE(0, 9),
+        ZSTD(1, 22),
+        NONE(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        private final int minLevel;
+        private final int maxLevel;
+
+        Encoding(final int minLevel, final int maxLevel) {
+            this.minLevel = minLevel;
+            this.maxLevel = maxLevel;
+        }
+
+        /**
+         * @return The lowest compression level of the encoding
+         */
+        public int getMinLevel() {
+            return minLevel;
+        }
+
+        /**
+         * @return The highest compression level of the encoding
+         */
+        public int getMaxLevel() {
+            return maxLevel;
+        }
+
+        /**
+         * @param level A compression level
+         *
+         * @return true if the level is valid for the encoding, any level is valid for {@link #NONE} as it is ignored
+         */
+        public boolean isValidLevel(final int level) {
+            return level >= minLevel && level <= maxLevel;
+        }
     }
 
     private final BodyType bodyType;
@@ -48,13 +81,24 @@ public class BodyInfo {
     private final boolean includeSelection;
     private final boolean includeDependent;
     @Nullable private final Path transformation;
+    @Nullable private final Integer level;
+    private final int minSize;
 
+    /**
+     * Bodies are encoded regardless of their size
+     */
     public BodyInfo(final BodyType bodyType, final Encoding encoding, final boolean includeSelection, final boolean includeDependent, @Nullable final Path transformation) {
+        this(bodyType, encoding, includeSelection, includeDependent, transformation, null, 0);
+    }
+
+    public BodyInfo(final BodyType bodyType, final Encoding encoding, final boolean includeSelection, final boolean includeDependent, @Nullable final Path transformation, @Nullable final Integer level, final int minSize) {
         this.bodyType = bodyType;
         this.encoding = encoding;
         this.includeSelection = includeSelection;
         this.includeDependent = includeDependent;
         this.transformation = transformation;
+        this.level = level;
+        this.minSize = minSize;
     }
 
      public BodyType getBodyType() {
@@ -77,4 +121,19 @@ public class BodyInfo {
      public Path getTransformation() {
          return transformation;
      }
+ 
+     /**
+      * @return The compression level for the encoding, or null for the default level of the encoding
+      */
+     @Nullable
+     public Integer getLevel() {
+         return level;
+     }
+
+     /**
+      * @return The minimum size in bytes of a body before it is encoded
+      */
+     public int getMinSize() {
+         return minSize;
+     }
  }
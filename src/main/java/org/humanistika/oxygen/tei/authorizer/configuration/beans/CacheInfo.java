@@ -0,0 +1,105 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.beans;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration details for caching the
+ * suggestions of an auto-complete
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class CacheInfo {
+    public final static long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(60);
+    public final static int DEFAULT_MAX_ENTRIES = 100;
+
+    /**
+     * Cache settings used when there is no cache configuration
+     */
+    public final static CacheInfo DEFAULT = new CacheInfo(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+
+    private final long ttl;
+    private final int maxEntries;
+    private final int prefetch;
+    private final long indexTtl;
+    private final boolean prefixFilter;
+
+    public CacheInfo(final long ttl, final int maxEntries) {
+        this(ttl, maxEntries, 0);
+    }
+
+    public CacheInfo(final long ttl, final int maxEntries, final int prefetch) {
+        this(ttl, maxEntries, prefetch, 0);
+    }
+
+    public CacheInfo(final long ttl, final int maxEntries, final int prefetch, final long indexTtl) {
+        this(ttl, maxEntries, prefetch, indexTtl, false);
+    }
+
+    public CacheInfo(final long ttl, final int maxEntries, final int prefetch, final long indexTtl, final boolean prefixFilter) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.prefetch = prefetch;
+        this.indexTtl = indexTtl;
+        this.prefixFilter = prefixFilter;
+    }
+
+    /**
+     * @return The time in milliseconds that suggestions are cached for
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return The maximum number of cached suggestion lists, 0 if caching is disabled
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return The maximum number of suggestion lists to prefetch when a document is opened, 0 if prefetching is disabled
+     */
+    public int getPrefetch() {
+        return isEnabled() ? prefetch : 0;
+    }
+
+    /**
+     * @return The time in milliseconds that suggestions from the persistent index are used for before they are requested again from the server
+     */
+    public long getIndexTtl() {
+        return indexTtl;
+    }
+
+    /**
+     * @return true if the suggestions should be narrowed locally to those matching the value already entered for the attribute
+     */
+    public boolean isPrefixFilter() {
+        return prefixFilter;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0 && ttl > 0;
+    }
+}
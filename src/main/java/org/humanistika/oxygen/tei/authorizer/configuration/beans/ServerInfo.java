@@ -0,0 +1,94 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.beans;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration details for the connections made to a server
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class ServerInfo {
+    public final static int DEFAULT_MAX_CONNECTIONS = 20;
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+    public final static long DEFAULT_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Connection settings used when there is no server configuration
+     */
+    public final static ServerInfo DEFAULT = new ServerInfo(null, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+
+    @Nullable private final String baseUrl;
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final long idleTimeout;
+
+    public ServerInfo(@Nullable final String baseUrl, final int maxConnections, final int maxConnectionsPerHost, final long idleTimeout) {
+        this.baseUrl = baseUrl;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Nullable
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * @return The time in milliseconds after which an idle connection is closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ServerInfo that = (ServerInfo) o;
+        return maxConnections == that.maxConnections
+                && maxConnectionsPerHost == that.maxConnectionsPerHost
+                && idleTimeout == that.idleTimeout
+                && Objects.equals(baseUrl, that.baseUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baseUrl, maxConnections, maxConnectionsPerHost, idleTimeout);
+    }
+}
@@ -19,11 +19,13 @@
  */
 package org.humanistika.oxygen.tei.authorizer.configuration.beans;
 
+import org.humanistika.oxygen.tei.authorizer.configuration.UrlTemplate;
 import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
 import javax.annotation.Nullable;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +44,25 @@ public class UploadInfo {
         SELECTION_VALUE,
         DEPENDENT_VALUE;
 
+        private static final Map<String, UrlVar> BY_CAMEL_NAME = new HashMap<>();
+        static {
+            for (final UrlVar urlVar : values()) {
+                BY_CAMEL_NAME.put(urlVar.camelName(), urlVar);
+            }
+        }
+
+        /**
+         * Get the URL variable from its camel-case name
+         *
+         * @param camelName the camel-case name of the variable
+         *
+         * @return the URL variable, or null if there is no such variable
+         */
+        @Nullable
+        public static UrlVar fromCamelName(final String camelName) {
+            return BY_CAMEL_NAME.get(camelName);
+        }
+
         public String var() {
             return "$" + camelName();
         }
@@ -65,27 +86,118 @@ public class UploadInfo {
     }
 
     private final Method method;
-    private final String url;
+    private final UrlTemplate url;
+    private final String configuredUrl;
     @Nullable private final List<UserFieldInfo> userFieldsInfo;
     @Nullable private final Authentication authentication;
     @Nullable private final BodyInfo bodyInfo;
+    private final boolean async;
+    @Nullable private final BatchInfo batchInfo;
+    private final ServerInfo serverInfo;
 
     public UploadInfo(final Method method, final String url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo) {
+        this(method, url, userFieldsInfo, authentication, bodyInfo, false);
+    }
+
+    public UploadInfo(final Method method, final String url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo, final boolean async) {
+        this(method, url, userFieldsInfo, authentication, bodyInfo, async, null);
+    }
+
+    public UploadInfo(final Method method, final String url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo, final boolean async, @Nullable final BatchInfo batchInfo) {
+        this(method, url, userFieldsInfo, authentication, bodyInfo, async, batchInfo, null);
+    }
+
+    public UploadInfo(final Method method, final String url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo, final boolean async, @Nullable final BatchInfo batchInfo, @Nullable final ServerInfo serverInfo) {
+        this(method, url, userFieldsInfo, authentication, bodyInfo, async, batchInfo, serverInfo, null);
+    }
+
+    /**
+     * @param configuredUrl The URL as it was configured, before the base URL and credentials were expanded into it, or null if it is the same as the url
+     */
+    public UploadInfo(final Method method, final String url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo, final boolean async, @Nullable final BatchInfo batchInfo, @Nullable final ServerInfo serverInfo, @Nullable final String configuredUrl) {
+        this(method, UrlTemplate.compile(url), userFieldsInfo, authentication, bodyInfo, async, batchInfo, serverInfo, configuredUrl != null ? configuredUrl : url);
+    }
+
+    /**
+     * @param url The URL template, whose configuration variables may already be bound
+     * @param configuredUrl The URL as it was configured, before the base URL and credentials were expanded into it
+     */
+    public UploadInfo(final Method method, final UrlTemplate url, @Nullable final List<UserFieldInfo> userFieldsInfo, @Nullable final Authentication authentication, @Nullable final BodyInfo bodyInfo, final boolean async, @Nullable final BatchInfo batchInfo, @Nullable final ServerInfo serverInfo, final String configuredUrl) {
         this.method = method;
         this.url = url;
+        this.configuredUrl = configuredUrl;
         this.userFieldsInfo = userFieldsInfo;
         this.authentication = authentication;
         this.bodyInfo = bodyInfo;
+        this.async = async;
+        this.batchInfo = batchInfo;
+        this.serverInfo = serverInfo != null ? serverInfo : ServerInfo.DEFAULT;
     }
 
-    public URL getUrl(final Map<UrlVar, String> substitutions) throws MalformedURLException {
-        String expandedUrl = url;
-        if(substitutions != null) {
-            for (final Map.Entry<UrlVar, String> substitution : substitutions.entrySet()) {
-                expandedUrl = expandedUrl.replace(substitution.getKey().var(), substitution.getValue());
-            }
+    /**
+     * Get the URL for the upload
+     *
+     * The values of the substitutions are percent-encoded
+     * according to where they appear in the URL.
+     *
+     * @param substitutions The values of the variables in the URL
+     *
+     * @return The expanded URL
+     *
+     * @throws MalformedURLException if the expanded URL is invalid
+     */
+    public URL getUrl(@Nullable final Map<UrlVar, String> substitutions) throws MalformedURLException {
+        if(substitutions == null) {
+            return new URL(url.toString());
         }
-        return new URL(expandedUrl);
+        return new URL(url.expand(variable -> {
+            final UrlVar urlVar = UrlVar.fromCamelName(variable);
+            return urlVar == null ? null : substitutions.get(urlVar);
+        }));
+    }
+
+    /**
+     * Get the URL template, i.e. the URL
+     * before any substitutions are made
+     *
+     * @return The URL template
+     */
+    public String getUrlTemplate() {
+        return url.toString();
+    }
+
+    /**
+     * Get the URL as it was configured, i.e. before
+     * the base URL and credentials were expanded into it
+     *
+     * @return The configured URL
+     */
+    public String getConfiguredUrl() {
+        return configuredUrl;
+    }
+
+    /**
+     * Get the key which identifies the upload configuration
+     *
+     * The key is made from the configured URL, so it does not change
+     * when the base URL or credentials of the server are reconfigured.
+     *
+     * @return The key
+     */
+    public String getKey() {
+        return key(method, configuredUrl);
+    }
+
+    /**
+     * Get the key which identifies an upload configuration
+     *
+     * @param method The method of the upload
+     * @param configuredUrl The URL as it was configured
+     *
+     * @return The key
+     */
+    public static String key(final Method method, final String configuredUrl) {
+        return method.name() + ' ' + configuredUrl;
     }
 
     public Method getMethod() {
@@ -106,4 +218,33 @@ public class UploadInfo {
     public BodyInfo getBodyInfo() {
         return bodyInfo;
     }
+
+    /**
+     * Determines whether the upload should be performed
+     * in the background, i.e. without blocking the user
+     *
+     * @return true if the upload is asynchronous
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Get the configuration of the batch endpoint
+     *
+     * @return The batch configuration, or null if suggestions are only uploaded one at a time
+     */
+    @Nullable
+    public BatchInfo getBatchInfo() {
+        return batchInfo;
+    }
+
+    /**
+     * Get the configuration of the connections to the server
+     *
+     * @return The server connection configuration
+     */
+    public ServerInfo getServerInfo() {
+        return serverInfo;
+    }
 }
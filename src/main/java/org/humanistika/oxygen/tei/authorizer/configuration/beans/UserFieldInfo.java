@@ -19,9 +19,14 @@
  */
 package org.humanistika.oxygen.tei.authorizer.configuration.beans;
 
+import org.humanistika.oxygen.tei.authorizer.configuration.Lazy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.Nullable;
 
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Configuration details for uploading a User Field to a server
@@ -31,13 +36,16 @@ import java.util.regex.Pattern;
  * @serial 20160405
  */
 public class UserFieldInfo {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UserFieldInfo.class);
+
     private final String name;
     @Nullable private final String label;
     private final boolean multiline;
     private final boolean required;
     @Nullable private final String initialValue;
     @Nullable private final String defaultValue;
-    @Nullable private final Pattern validateWith;
+    @Nullable private final String validateWithRegex;
+    private final Lazy<Pattern> validateWith;
 
     public UserFieldInfo(final String name, @Nullable final String label, final boolean multiline, final boolean required, @Nullable final String initialValue, @Nullable final String defaultValue, @Nullable final Pattern validateWith) {
         this.name = name;
@@ -46,7 +54,33 @@ public class UserFieldInfo {
         this.required = required;
         this.initialValue = initialValue;
         this.defaultValue = defaultValue;
-        this.validateWith = validateWith;
+        this.validateWithRegex = validateWith == null ? null : validateWith.pattern();
+        this.validateWith = Lazy.value(validateWith);
+    }
+
+    /**
+     * @param validateWith a regular expression which the value of the field must match,
+     *     it is only compiled when the field is first shown to the user
+     */
+    public UserFieldInfo(final String name, @Nullable final String label, final boolean multiline, final boolean required, @Nullable final String initialValue, @Nullable final String defaultValue, @Nullable final String validateWith) {
+        this.name = name;
+        this.label = label;
+        this.multiline = multiline;
+        this.required = required;
+        this.initialValue = initialValue;
+        this.defaultValue = defaultValue;
+        this.validateWithRegex = validateWith;
+        this.validateWith = validateWith == null ? Lazy.value(null) : Lazy.of(() -> compile(name, validateWith));
+    }
+
+    @Nullable
+    private static Pattern compile(final String name, final String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch(final PatternSyntaxException e) {
+            LOGGER.error("Ignoring invalid validateWith for user field: " + name + ", " + e.getMessage(), e);
+            return null;
+        }
     }
 
     public String getName() {
@@ -76,8 +110,19 @@ public class UserFieldInfo {
         return defaultValue;
     }
 
+    /**
+     * @return The pattern which the value of the field must match, or null if the value is not validated
+     */
     @Nullable
     public Pattern getValidateWith() {
-        return validateWith;
+        return validateWith.get();
+    }
+
+    /**
+     * @return The regular expression which the value of the field must match, without compiling it
+     */
+    @Nullable
+    public String getValidateWithRegex() {
+        return validateWithRegex;
     }
 }
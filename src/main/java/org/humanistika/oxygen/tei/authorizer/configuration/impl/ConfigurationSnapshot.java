@@ -0,0 +1,511 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.impl;
+
+import net.sf.saxon.s9api.SaxonApiException;
+import org.humanistika.ns.tei_authorizer.AuthenticationType;
+import org.humanistika.ns.tei_authorizer.Batch;
+import org.humanistika.ns.tei_authorizer.Body;
+import org.humanistika.ns.tei_authorizer.Server;
+import org.humanistika.ns.tei_authorizer.Upload;
+import org.humanistika.ns.tei_authorizer.UploadBody;
+import org.humanistika.ns.tei_authorizer.UploadEncoding;
+import org.humanistika.ns.tei_authorizer.UploadMethod;
+import org.humanistika.ns.tei_authorizer.UserField;
+import org.humanistika.ns.tei_authorizer.UserFields;
+import org.humanistika.oxygen.tei.authorizer.configuration.CompiledXPaths;
+import org.humanistika.oxygen.tei.authorizer.configuration.ConfigurationInterner;
+import org.humanistika.oxygen.tei.authorizer.configuration.Lazy;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Dependent;
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.ResponseAction;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Selection;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A compact binary snapshot of the expanded auto-completes
+ * of a configuration file
+ *
+ * The snapshot is keyed by a hash of the content and location of the
+ * configuration file, so that a configuration which has not changed can
+ * be loaded without JAXB. XPaths are compiled again when the snapshot is
+ * read, as Saxon executables cannot be serialized.
+ *
+ * File format:
+ * <pre>
+ *   magic    int      "TACS"
+ *   version  int
+ *   hash     int length, bytes
+ *   count    int
+ *   autoComplete*
+ * </pre>
+ *
+ * Strings are written as their UTF-8 length (-1 for null) followed by
+ * their bytes, optional beans are preceded by a boolean which
+ * indicates whether they are present. The upload configuration of an
+ * auto-complete is written as it was configured, so that it is not
+ * expanded by writing the snapshot, and is preceded by its length, so
+ * that it can be skipped and only decoded when it is first needed.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class ConfigurationSnapshot {
+    private final static int MAGIC = 0x54414353;  // "TACS"
+
+    /**
+     * Incremented whenever the format, or the expansion of the configuration, changes
+     */
+    private final static int VERSION = 5;
+
+    private ConfigurationSnapshot() {
+    }
+
+    /**
+     * Compute the key of a configuration file
+     *
+     * @param configFile the path of the configuration file
+     * @param content the content of the configuration file
+     *
+     * @return the SHA-256 hash of the location and content of the configuration file
+     */
+    static byte[] hash(final Path configFile, final byte[] content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(configFile.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(content);
+            return digest.digest();
+        } catch(final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the auto-completes from a snapshot
+     *
+     * @param snapshotFile the snapshot file
+     * @param hash the hash of the current configuration file
+     * @param interner canonicalizes the values which are repeated across the auto-completes
+     * @param expander expands the upload configuration of an auto-complete when it is first needed
+     *
+     * @return the auto-completes, or null if there is no snapshot or it is for a different configuration
+     *
+     * @throws IOException if the snapshot cannot be read
+     */
+    @Nullable
+    static List<AutoComplete> read(final Path snapshotFile, final byte[] hash, final ConfigurationInterner interner, final UnexpandedUpload.Expander expander) throws IOException {
+        try(final DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if(is.readInt() != MAGIC || is.readInt() != VERSION) {
+                return null;
+            }
+            final byte[] snapshotHash = new byte[is.readInt()];
+            is.readFully(snapshotHash);
+            if(!Arrays.equals(hash, snapshotHash)) {
+                return null;
+            }
+
+            final int count = is.readInt();
+            final List<AutoComplete> autoCompletes = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                autoCompletes.add(readAutoComplete(is, interner, expander));
+            }
+            return Collections.unmodifiableList(autoCompletes);
+        } catch(final NoSuchFileException e) {
+            return null;
+        } catch(final SaxonApiException e) {
+            throw new IOException("Unable to compile XPath from snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Atomically write a snapshot of the auto-completes
+     *
+     * @param snapshotFile the snapshot file
+     * @param hash the hash of the configuration file
+     * @param autoCompletes the expanded auto-completes of the configuration file
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(final Path snapshotFile, final byte[] hash, final List<AutoComplete> autoCompletes) throws IOException {
+        final Path tmpFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try(final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(hash.length);
+            os.write(hash);
+            os.writeInt(autoCompletes.size());
+            for(final AutoComplete autoComplete : autoCompletes) {
+                writeAutoComplete(os, autoComplete);
+            }
+        }
+        Files.move(tmpFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeAutoComplete(final DataOutputStream os, final AutoComplete autoComplete) throws IOException {
+        final Map<String, String> namespaceBindings = autoComplete.getNamespaceBindings();
+        os.writeInt(namespaceBindings == null ? -1 : namespaceBindings.size());
+        if(namespaceBindings != null) {
+            for(final Map.Entry<String, String> binding : namespaceBindings.entrySet()) {
+                writeString(os, binding.getKey());
+                writeString(os, binding.getValue());
+            }
+        }
+        writeString(os, autoComplete.getContext());
+        writeString(os, autoComplete.getAttribute());
+
+        final Dependent dependent = autoComplete.getDependent();
+        os.writeBoolean(dependent != null);
+        if(dependent != null) {
+            writeString(os, dependent.getDefault());
+            writeString(os, dependent.getAttribute());
+            writeString(os, dependent.getLabel());
+        }
+
+        final Selection selection = autoComplete.getSelection();
+        os.writeBoolean(selection != null);
+        if(selection != null) {
+            writeString(os, selection.getXPath());
+            writeString(os, selection.getLabel());
+        }
+
+        final RequestInfo requestInfo = autoComplete.getRequestInfo();
+        os.writeBoolean(requestInfo != null);
+        if(requestInfo != null) {
+            writeString(os, requestInfo.getUrl());
+            writeAuthentication(os, requestInfo.getAuthentication());
+        }
+        writeServerInfo(os, autoComplete.getRequestServerInfo());
+
+        final ResponseAction responseAction = autoComplete.getResponseAction();
+        os.writeBoolean(responseAction != null);
+        if(responseAction != null) {
+            writePath(os, responseAction.getTransformation());
+        }
+
+        final Supplier<UploadInfo> uploadInfo = autoComplete.getUploadInfoSupplier();
+        os.writeBoolean(uploadInfo != null);
+        if(uploadInfo != null) {
+            if(!(uploadInfo instanceof UnexpandedUpload)) {
+                throw new IOException("Unable to snapshot upload configuration which was not loaded from the config: " + autoComplete.getUploadKey());
+            }
+            writeString(os, autoComplete.getUploadKey());
+            final ByteArrayOutputStream upload = new ByteArrayOutputStream();
+            try(final DataOutputStream uploadOs = new DataOutputStream(upload)) {
+                writeUnexpandedUpload(uploadOs, (UnexpandedUpload)uploadInfo);
+            }
+            os.writeInt(upload.size());
+            upload.writeTo(os);
+        }
+
+        final CacheInfo cacheInfo = autoComplete.getCacheInfo();
+        os.writeLong(cacheInfo.getTtl());
+        os.writeInt(cacheInfo.getMaxEntries());
+        os.writeInt(cacheInfo.getPrefetch());
+        os.writeLong(cacheInfo.getIndexTtl());
+        os.writeBoolean(cacheInfo.isPrefixFilter());
+
+        os.writeLong(autoComplete.getLatencyBudget());
+        os.writeInt(autoComplete.getPageSize());
+    }
+
+    private static AutoComplete readAutoComplete(final DataInputStream is, final ConfigurationInterner interner, final UnexpandedUpload.Expander expander) throws IOException, SaxonApiException {
+        final int bindingsCount = is.readInt();
+        final Map<String, String> namespaceBindings;
+        if(bindingsCount == -1) {
+            namespaceBindings = null;
+        } else {
+            namespaceBindings = new LinkedHashMap<>();
+            for(int i = 0; i < bindingsCount; i++) {
+                namespaceBindings.put(readString(is), readString(is));
+            }
+        }
+        final Map<String, String> internedNamespaceBindings = interner.namespaceBindings(namespaceBindings);
+        final String context = readString(is);
+        final String attribute = readString(is);
+
+        final Dependent dependent = is.readBoolean() ? new Dependent(readString(is), readString(is), readString(is)) : null;
+        final Selection selection = is.readBoolean() ? new Selection(readString(is), readString(is)) : null;
+        final RequestInfo requestInfo = is.readBoolean() ? new RequestInfo(interner.string(readString(is)), readAuthentication(is, interner)) : null;
+        final ServerInfo requestServerInfo = readServerInfo(is, interner);
+        final ResponseAction responseAction = is.readBoolean() ? new ResponseAction(readPath(is)) : null;
+        final Supplier<UploadInfo> uploadInfo;
+        final String uploadKey;
+        if(is.readBoolean()) {
+            uploadKey = interner.string(readString(is));
+            final byte[] upload = new byte[is.readInt()];
+            is.readFully(upload);
+            uploadInfo = Lazy.of(() -> readUnexpandedUpload(upload, expander).get());
+        } else {
+            uploadKey = null;
+            uploadInfo = null;
+        }
+        final CacheInfo cacheInfo = new CacheInfo(is.readLong(), is.readInt(), is.readInt(), is.readLong(), is.readBoolean());
+        final long latencyBudget = is.readLong();
+        final int pageSize = is.readInt();
+
+        final CompiledXPaths compiledXPaths = CompiledXPaths.compile(
+                internedNamespaceBindings,
+                context,
+                selection == null ? null : selection.getXPath(),
+                dependent == null ? null : dependent.getAttribute()
+        );
+
+        return new AutoComplete(internedNamespaceBindings, context, attribute, dependent, selection, requestInfo, requestServerInfo, responseAction, uploadInfo, uploadKey, cacheInfo, latencyBudget, pageSize, compiledXPaths);
+    }
+
+    private static void writeUnexpandedUpload(final DataOutputStream os, final UnexpandedUpload unexpandedUpload) throws IOException {
+        os.writeInt(unexpandedUpload.getIndex());
+        writeServer(os, unexpandedUpload.getGlobal());
+
+        final Upload upload = unexpandedUpload.getUpload();
+        os.writeUTF(upload.getMethod().name());
+        os.writeBoolean(upload.isAsync());
+        writeString(os, upload.getUrl());
+        writeServer(os, upload.getServer());
+
+        final UserFields userFields = upload.getUserFields();
+        os.writeInt(userFields == null ? -1 : userFields.getUserField().size());
+        if(userFields != null) {
+            for(final UserField userField : userFields.getUserField()) {
+                writeString(os, userField.getName());
+                writeString(os, userField.getLabel());
+                os.writeBoolean(userField.isMultiline());
+                os.writeBoolean(userField.isRequired());
+                writeString(os, userField.getInitialValue());
+                writeString(os, userField.getDefaultValue());
+                writeString(os, userField.getValidateWith());
+            }
+        }
+
+        final Body body = upload.getBody();
+        os.writeBoolean(body != null);
+        if(body != null) {
+            os.writeUTF(body.getType().name());
+            writeString(os, body.getEncoding() == null ? null : body.getEncoding().name());
+            os.writeBoolean(body.isIncludeSelection());
+            os.writeBoolean(body.isIncludeDependent());
+            writeString(os, body.getTransformation());
+            os.writeBoolean(body.getLevel() != null);
+            if(body.getLevel() != null) {
+                os.writeInt(body.getLevel());
+            }
+            os.writeInt(body.getMinSize());
+        }
+
+        final Batch batch = upload.getBatch();
+        os.writeBoolean(batch != null);
+        if(batch != null) {
+            writeString(os, batch.getUrl());
+            os.writeInt(batch.getWindow());
+            os.writeInt(batch.getMaxSize());
+        }
+    }
+
+    private static UnexpandedUpload readUnexpandedUpload(final byte[] upload, final UnexpandedUpload.Expander expander) {
+        try(final DataInputStream is = new DataInputStream(new ByteArrayInputStream(upload))) {
+            return readUnexpandedUpload(is, expander);
+        } catch(final IOException e) {
+            throw new UncheckedIOException("Unable to read upload configuration from snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static UnexpandedUpload readUnexpandedUpload(final DataInputStream is, final UnexpandedUpload.Expander expander) throws IOException {
+        final int index = is.readInt();
+        final Server global = readServer(is);
+
+        final Upload upload = new Upload();
+        upload.setMethod(UploadMethod.valueOf(is.readUTF()));
+        upload.setAsync(is.readBoolean());
+        upload.setUrl(readString(is));
+        upload.setServer(readServer(is));
+
+        final int userFieldsCount = is.readInt();
+        if(userFieldsCount != -1) {
+            final UserFields userFields = new UserFields();
+            for(int i = 0; i < userFieldsCount; i++) {
+                final UserField userField = new UserField();
+                userField.setName(readString(is));
+                userField.setLabel(readString(is));
+                userField.setMultiline(is.readBoolean());
+                userField.setRequired(is.readBoolean());
+                userField.setInitialValue(readString(is));
+                userField.setDefaultValue(readString(is));
+                userField.setValidateWith(readString(is));
+                userFields.getUserField().add(userField);
+            }
+            upload.setUserFields(userFields);
+        }
+
+        if(is.readBoolean()) {
+            final Body body = new Body();
+            body.setType(UploadBody.valueOf(is.readUTF()));
+            final String encoding = readString(is);
+            body.setEncoding(encoding == null ? null : UploadEncoding.valueOf(encoding));
+            body.setIncludeSelection(is.readBoolean());
+            body.setIncludeDependent(is.readBoolean());
+            body.setTransformation(readString(is));
+            body.setLevel(is.readBoolean() ? is.readInt() : null);
+            body.setMinSize(is.readInt());
+            upload.setBody(body);
+        }
+
+        if(is.readBoolean()) {
+            final Batch batch = new Batch();
+            batch.setUrl(readString(is));
+            batch.setWindow(is.readInt());
+            batch.setMaxSize(is.readInt());
+            upload.setBatch(batch);
+        }
+
+        return new UnexpandedUpload(global, upload, index, expander);
+    }
+
+    private static void writeServer(final DataOutputStream os, @Nullable final Server server) throws IOException {
+        os.writeBoolean(server != null);
+        if(server != null) {
+            writeString(os, server.getBaseUrl());
+            final org.humanistika.ns.tei_authorizer.Authentication authentication = server.getAuthentication();
+            os.writeBoolean(authentication != null);
+            if(authentication != null) {
+                writeString(os, authentication.getType() == null ? null : authentication.getType().name());
+                writeString(os, authentication.getUsername());
+                writeString(os, authentication.getPassword());
+            }
+            os.writeInt(server.getMaxConnections());
+            os.writeInt(server.getMaxConnectionsPerHost());
+            os.writeInt(server.getIdleTimeout());
+        }
+    }
+
+    @Nullable
+    private static Server readServer(final DataInputStream is) throws IOException {
+        if(!is.readBoolean()) {
+            return null;
+        }
+        final Server server = new Server();
+        server.setBaseUrl(readString(is));
+        if(is.readBoolean()) {
+            final org.humanistika.ns.tei_authorizer.Authentication authentication = new org.humanistika.ns.tei_authorizer.Authentication();
+            final String type = readString(is);
+            authentication.setType(type == null ? null : AuthenticationType.valueOf(type));
+            authentication.setUsername(readString(is));
+            authentication.setPassword(readString(is));
+            server.setAuthentication(authentication);
+        }
+        server.setMaxConnections(is.readInt());
+        server.setMaxConnectionsPerHost(is.readInt());
+        server.setIdleTimeout(is.readInt());
+        return server;
+    }
+
+    private static void writeServerInfo(final DataOutputStream os, final ServerInfo serverInfo) throws IOException {
+        writeString(os, serverInfo.getBaseUrl());
+        os.writeInt(serverInfo.getMaxConnections());
+        os.writeInt(serverInfo.getMaxConnectionsPerHost());
+        os.writeLong(serverInfo.getIdleTimeout());
+    }
+
+    private static ServerInfo readServerInfo(final DataInputStream is, final ConfigurationInterner interner) throws IOException {
+        return interner.serverInfo(new ServerInfo(interner.string(readString(is)), is.readInt(), is.readInt(), is.readLong()));
+    }
+
+    private static void writeAuthentication(final DataOutputStream os, @Nullable final Authentication authentication) throws IOException {
+        os.writeBoolean(authentication != null);
+        if(authentication != null) {
+            os.writeUTF(authentication.getAuthenticationType().name());
+            writeString(os, authentication.getUsername());
+            writeString(os, authentication.getPassword());
+        }
+    }
+
+    @Nullable
+    private static Authentication readAuthentication(final DataInputStream is, final ConfigurationInterner interner) throws IOException {
+        if(!is.readBoolean()) {
+            return null;
+        }
+        return interner.authentication(new Authentication(Authentication.AuthenticationType.valueOf(is.readUTF()), readString(is), readString(is)));
+    }
+
+    private static void writePath(final DataOutputStream os, @Nullable final Path path) throws IOException {
+        writeString(os, path == null ? null : path.toString());
+    }
+
+    @Nullable
+    private static Path readPath(final DataInputStream is) throws IOException {
+        final String path = readString(is);
+        return path == null ? null : Paths.get(path);
+    }
+
+    /**
+     * Writes a nullable string, unlike {@link DataOutputStream#writeUTF(String)}
+     * the length of the string is not limited to 64KB
+     */
+    private static void writeString(final DataOutputStream os, @Nullable final String str) throws IOException {
+        if(str == null) {
+            os.writeInt(-1);
+        } else {
+            final byte[] data = str.getBytes(StandardCharsets.UTF_8);
+            os.writeInt(data.length);
+            os.write(data);
+        }
+    }
+
+    @Nullable
+    private static String readString(final DataInputStream is) throws IOException {
+        final int length = is.readInt();
+        if(length == -1) {
+            return null;
+        }
+        final byte[] data = new byte[length];
+        is.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
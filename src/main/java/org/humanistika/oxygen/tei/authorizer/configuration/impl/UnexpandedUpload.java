@@ -0,0 +1,95 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.impl;
+
+import org.humanistika.ns.tei_authorizer.Server;
+import org.humanistika.ns.tei_authorizer.Upload;
+import org.humanistika.oxygen.tei.authorizer.configuration.Lazy;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * Supplies the upload configuration of an auto-complete,
+ * which is only expanded the first time that it is needed
+ *
+ * The upload configuration is kept as it was configured, so
+ * that it can be written to a {@link ConfigurationSnapshot}
+ * without being expanded.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class UnexpandedUpload implements Supplier<UploadInfo> {
+
+    /**
+     * Expands the upload configuration of an auto-complete
+     */
+    @FunctionalInterface
+    interface Expander {
+        /**
+         * @param global The global server configuration, or null
+         * @param upload The upload configuration
+         * @param index The index of the auto-complete, starting from 1
+         *
+         * @return The expanded upload configuration
+         */
+        UploadInfo expand(@Nullable Server global, Upload upload, int index);
+    }
+
+    @Nullable private final Server global;
+    private final Upload upload;
+    private final int index;
+    private final Lazy<UploadInfo> uploadInfo;
+
+    UnexpandedUpload(@Nullable final Server global, final Upload upload, final int index, final Expander expander) {
+        this.global = global;
+        this.upload = upload;
+        this.index = index;
+        this.uploadInfo = Lazy.of(() -> expander.expand(global, upload, index));
+    }
+
+    @Override
+    public UploadInfo get() {
+        return uploadInfo.get();
+    }
+
+    /**
+     * @return true if the upload configuration has been expanded
+     */
+    boolean isExpanded() {
+        return uploadInfo.isComputed();
+    }
+
+    @Nullable
+    Server getGlobal() {
+        return global;
+    }
+
+    Upload getUpload() {
+        return upload;
+    }
+
+    int getIndex() {
+        return index;
+    }
+}
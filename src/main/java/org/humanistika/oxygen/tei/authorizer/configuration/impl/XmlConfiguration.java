@@ -19,12 +19,20 @@
  */
 package org.humanistika.oxygen.tei.authorizer.configuration.impl;
 
+import net.sf.saxon.s9api.SaxonApiException;
 import org.humanistika.ns.tei_authorizer.*;
+import org.humanistika.oxygen.tei.authorizer.configuration.CompiledXPaths;
+import org.humanistika.oxygen.tei.authorizer.configuration.ConfigurationInterner;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
 import org.humanistika.oxygen.tei.authorizer.configuration.Configuration;
+import org.humanistika.oxygen.tei.authorizer.configuration.UrlTemplate;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BatchInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.UserFieldInfo;
+import org.humanistika.oxygen.tei.authorizer.remote.impl.JaxbContexts;
 
 import javax.annotation.Nullable;
 
@@ -39,13 +47,21 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo.UrlVar.BASE_URL;
 import static org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo.UrlVar.PASSWORD;
@@ -65,6 +81,14 @@ import static org.humanistika.oxygen.tei.completer.configuration.beans.RequestIn
  */
 public class XmlConfiguration extends org.humanistika.oxygen.tei.completer.configuration.impl.XmlConfiguration<AutoComplete> implements Configuration {
     private final static Logger LOGGER = LoggerFactory.getLogger(XmlConfiguration.class);
+    private final static String SNAPSHOT_FILE_EXTENSION = ".snapshot";
+
+    /**
+     * The number of auto-completes above which the configuration is expanded in parallel
+     */
+    private final static int PARALLEL_EXPANSION_THRESHOLD = 32;
+
+    private final ConfigurationInterner interner = new ConfigurationInterner();
 
     public XmlConfiguration(final Path configFile) {
         super(configFile);
@@ -78,157 +102,316 @@ public class XmlConfiguration extends org.humanistika.oxygen.tei.completer.confi
             return null;
         }
 
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(configFile);
+        } catch(final IOException e) {
+            LOGGER.error("Unable to read config: " + configFile.toAbsolutePath(), e);
+            return null;
+        }
+
+        //the expanded config is kept in a snapshot, so that an unchanged config can be loaded without JAXB
+        final Path snapshotFile = configFile.resolveSibling(configFile.getFileName() + SNAPSHOT_FILE_EXTENSION);
+        final byte[] hash = ConfigurationSnapshot.hash(configFile, content);
+        try {
+            final List<AutoComplete> snapshot = ConfigurationSnapshot.read(snapshotFile, hash, interner, this::expandUpload);
+            if(snapshot != null) {
+                LOGGER.debug("Loaded config from snapshot: {}", snapshotFile.toAbsolutePath());
+                return snapshot;
+            }
+        } catch(final IOException e) {
+            LOGGER.warn("Unable to read config snapshot: " + snapshotFile.toAbsolutePath() + ", loading config: " + configFile.toAbsolutePath(), e);
+        }
+
+        final List<AutoComplete> autoCompletes;
         try {
-            final JAXBContext jaxbContext = JAXBContext.newInstance(Config.class);
+            final JAXBContext jaxbContext = JaxbContexts.getContext(Config.class);
             final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            final Config config = (Config)unmarshaller.unmarshal(configFile.toFile());
-            return expandConfig(config);
+            final Config config = (Config)unmarshaller.unmarshal(new StreamSource(new ByteArrayInputStream(content), configFile.toUri().toString()));
+            autoCompletes = expandConfig(config);
         } catch(final JAXBException e) {
             LOGGER.error("Unable to load config: " + configFile.toAbsolutePath(), e);
             return null;
         }
+
+        try {
+            ConfigurationSnapshot.write(snapshotFile, hash, autoCompletes);
+        } catch(final IOException e) {
+            LOGGER.warn("Unable to write config snapshot: " + snapshotFile.toAbsolutePath(), e);
+        }
+        return autoCompletes;
     }
 
     private List<AutoComplete> expandConfig(final Config config) {
-        final List<AutoComplete> autoCompletes = new ArrayList<>();
-        for(int i = 0; i <  config.getAutoComplete().size(); i++) {
-            final org.humanistika.ns.tei_authorizer.AutoComplete autoComplete  = config.getAutoComplete().get(i);
-            final Map<String, String> namespaceBindings = mergeNamespaceBindings(
-                    config.getNamespaceBindings(), autoComplete.getNamespaceBindings());
-            final Dependent dependent;
-            if(autoComplete.getDependent() == null) {
-                dependent = null;
-            } else {
-                dependent = new Dependent(
-                    autoComplete.getDependent().getDefault(),
-                    autoComplete.getDependent().getValue(),
-                    autoComplete.getDependent().getLabel()
-                );
-            }
+        final int count = config.getAutoComplete().size();
 
-            final Selection selection;
-            if(autoComplete.getSelection() == null) {
-                selection = null;
-            } else {
-                selection = new Selection(
-                    autoComplete.getSelection().getValue(),
-                    autoComplete.getSelection().getLabel()
-                );
-            }
+        //most auto-completes only inherit the global namespace bindings, so they are merged once and shared
+        final Map<String, String> globalNamespaceBindings = mergeNamespaceBindings(config.getNamespaceBindings(), null);
+
+        //expanding large configurations is spread across cores, the order of the auto-completes is preserved
+        IntStream indexes = IntStream.range(0, count);
+        if(count >= PARALLEL_EXPANSION_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
 
-            final Authentication requestAuthentication = resolveAuthentication(config.getServer(), autoComplete.getRequest().getServer());
-            final RequestInfo requestInfo = new RequestInfo(
-                    expandUrl(config.getServer(), autoComplete.getRequest(), i+1, requestAuthentication),
-                    requestAuthentication
+        final List<AutoComplete> autoCompletes = indexes
+                .mapToObj(i -> expandAutoComplete(config, globalNamespaceBindings, i + 1))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return Collections.unmodifiableList(autoCompletes);
+    }
+
+    /**
+     * Expands an auto-complete of the configuration
+     *
+     * The structure of the auto-complete and its XPaths are expanded
+     * eagerly, whereas its upload configuration is only expanded
+     * when it is first needed.
+     *
+     * @param config The configuration
+     * @param globalNamespaceBindings The global namespace bindings of the configuration
+     * @param index The index of the auto-complete, starting from 1
+     *
+     * @return The expanded auto-complete, or null if it is invalid
+     */
+    @Nullable
+    private AutoComplete expandAutoComplete(final Config config, final Map<String, String> globalNamespaceBindings, final int index) {
+        final org.humanistika.ns.tei_authorizer.AutoComplete autoComplete  = config.getAutoComplete().get(index - 1);
+        final Map<String, String> namespaceBindings;
+        if(autoComplete.getNamespaceBindings() == null) {
+            namespaceBindings = globalNamespaceBindings;
+        } else {
+            namespaceBindings = mergeNamespaceBindings(config.getNamespaceBindings(), autoComplete.getNamespaceBindings());
+        }
+        final Dependent dependent;
+        if(autoComplete.getDependent() == null) {
+            dependent = null;
+        } else {
+            dependent = new Dependent(
+                autoComplete.getDependent().getDefault(),
+                autoComplete.getDependent().getValue(),
+                autoComplete.getDependent().getLabel()
             );
+        }
 
-            final ResponseAction responseAction;
-            if(autoComplete.getResponse() == null) {
-                responseAction = null;
-            } else {
-                responseAction = new ResponseAction(configFile.resolveSibling(autoComplete.getResponse().getTransformation()));
-            }
+        final Selection selection;
+        if(autoComplete.getSelection() == null) {
+            selection = null;
+        } else {
+            selection = new Selection(
+                autoComplete.getSelection().getValue(),
+                autoComplete.getSelection().getLabel()
+            );
+        }
+
+        final Authentication requestAuthentication = resolveAuthentication(config.getServer(), autoComplete.getRequest().getServer());
+        final RequestInfo requestInfo = new RequestInfo(
+                expandUrl(config.getServer(), autoComplete.getRequest().getServer(), autoComplete.getRequest().getUrl(), "auto-complete", index, requestAuthentication),
+                requestAuthentication
+        );
 
-            final UploadInfo uploadInfo;
-            if(autoComplete.getUpload() == null) {
-                uploadInfo = null;
-            } else {
-                final Upload upload = autoComplete.getUpload();
-
-                final List<UserFieldInfo> userFieldsInfo;
-                if(upload.getUserFields() == null) {
-                    userFieldsInfo = null;
-                } else {
-                    userFieldsInfo = new ArrayList<>();
-                    for(final UserField userField : upload.getUserFields().getUserField()) {
-                        final Pattern validateWith;
-                        if(userField.getValidateWith() == null) {
-                            validateWith = null;
-                        } else {
-                            validateWith = Pattern.compile(userField.getValidateWith());
-                        }
-                        final UserFieldInfo userFieldInfo = new UserFieldInfo(userField.getName(), userField.getLabel(), userField.isMultiline(), userField.isRequired(), userField.getInitialValue(), userField.getDefaultValue(), validateWith);
-                        userFieldsInfo.add(userFieldInfo);
-                    }
-                }
-
-                final Authentication uploadAuthentication = resolveAuthentication(config.getServer(),upload.getServer());
-
-                final BodyInfo bodyInfo;
-                if(autoComplete.getUpload().getBody() == null) {
-                    bodyInfo = null;
-                } else {
-                    bodyInfo = new BodyInfo(
-                            asBodyInfoBodyType(upload.getBody().getType()),
-                            asBodyInfoEncoding(upload.getBody().getEncoding()),
-                            upload.getBody().isIncludeSelection(),
-                            upload.getBody().isIncludeDependent(),
-                            upload.getBody().getTransformation() == null ? null : configFile.resolveSibling(upload.getBody().getTransformation())
-                    );
-                }
-
-                uploadInfo = new UploadInfo(
-                        asUploadInfoMethod(upload.getMethod()),
-                        expandUrl(config.getServer(), upload, i+1, uploadAuthentication),
-                        userFieldsInfo,
-                        uploadAuthentication,
-                        bodyInfo
-                );
+        //without a page size, the page variables of the URL would be sent to the server unexpanded
+        if(autoComplete.getRequest().getPageSize() <= 0
+                && (requestInfo.getUrl().contains(AutoComplete.UrlVar.OFFSET.var()) || requestInfo.getUrl().contains(AutoComplete.UrlVar.LIMIT.var()))) {
+            LOGGER.error("Ignoring auto-complete: " + index + " in config: " + configFile.toAbsolutePath() + ", its request URL uses " + AutoComplete.UrlVar.OFFSET.var() + " or " + AutoComplete.UrlVar.LIMIT.var() + " but it has no pageSize");
+            return null;
+        }
+
+        final ResponseAction responseAction;
+        if(autoComplete.getResponse() == null) {
+            responseAction = null;
+        } else {
+            responseAction = new ResponseAction(configFile.resolveSibling(autoComplete.getResponse().getTransformation()));
+        }
+
+        //the upload configuration is only expanded when it is first needed
+        final Upload upload = autoComplete.getUpload();
+
+        //an invalid compression level would otherwise only be reported when a suggestion is uploaded
+        if(upload != null && upload.getBody() != null && upload.getBody().getLevel() != null) {
+            final BodyInfo.Encoding encoding = asBodyInfoEncoding(upload.getBody().getEncoding());
+            if(!encoding.isValidLevel(upload.getBody().getLevel())) {
+                LOGGER.error("Ignoring auto-complete: " + index + " in config: " + configFile.toAbsolutePath() + ", the compression level " + upload.getBody().getLevel() + " of its upload must be from " + encoding.getMinLevel() + " to " + encoding.getMaxLevel() + " for " + encoding);
+                return null;
             }
+        }
+        final Supplier<UploadInfo> uploadInfo = upload == null ? null : new UnexpandedUpload(config.getServer(), upload, index, this::expandUpload);
+        final String uploadKey = upload == null ? null : interner.string(UploadInfo.key(asUploadInfoMethod(upload.getMethod()), upload.getUrl()));
 
-            autoCompletes.add(new AutoComplete(
+        final CacheInfo cacheInfo;
+        if(autoComplete.getCache() == null) {
+            cacheInfo = CacheInfo.DEFAULT;
+        } else {
+            cacheInfo = new CacheInfo(
+                    TimeUnit.SECONDS.toMillis(autoComplete.getCache().getTtl()),
+                    autoComplete.getCache().getMaxEntries(),
+                    autoComplete.getCache().getPrefetch(),
+                    TimeUnit.SECONDS.toMillis(autoComplete.getCache().getIndexTtl()),
+                    autoComplete.getCache().isPrefixFilter()
+            );
+        }
+
+        //compile the XPaths now, so that malformed expressions are reported when the configuration is loaded
+        final CompiledXPaths compiledXPaths;
+        try {
+            compiledXPaths = CompiledXPaths.compile(
                     namespaceBindings,
                     autoComplete.getContext(),
-                    autoComplete.getAttribute(),
-                    dependent,
-                    selection,
-                    requestInfo,
-                    responseAction,
-                    uploadInfo
-            ));
+                    selection == null ? null : selection.getXPath(),
+                    dependent == null ? null : dependent.getAttribute()
+            );
+        } catch(final SaxonApiException e) {
+            LOGGER.error("Ignoring auto-complete: " + index + " in config: " + configFile.toAbsolutePath() + ", invalid XPath: " + e.getMessage(), e);
+            return null;
         }
 
-        return autoCompletes;
+        return new AutoComplete(
+                namespaceBindings,
+                autoComplete.getContext(),
+                autoComplete.getAttribute(),
+                dependent,
+                selection,
+                requestInfo,
+                resolveServerInfo(config.getServer(), autoComplete.getRequest().getServer()),
+                responseAction,
+                uploadInfo,
+                uploadKey,
+                cacheInfo,
+                autoComplete.getRequest().getBudget(),
+                autoComplete.getRequest().getPageSize(),
+                compiledXPaths
+        );
     }
 
-    private String expandUrl(final Server global, final Request specific, final int index, final Authentication authentication) {
-        final String baseUrl;
-        if(specific.getServer() != null) {
-            baseUrl = specific.getServer().getBaseUrl();
-        } else if(global != null) {
-            baseUrl = global.getBaseUrl();
+    /**
+     * Expands the upload configuration of an auto-complete
+     *
+     * @param global The global server configuration, or null
+     * @param upload The upload configuration
+     * @param index The index of the auto-complete, starting from 1
+     *
+     * @return The expanded upload configuration
+     */
+    UploadInfo expandUpload(@Nullable final Server global, final Upload upload, final int index) {
+        final List<UserFieldInfo> userFieldsInfo;
+        if(upload.getUserFields() == null) {
+            userFieldsInfo = null;
         } else {
-            LOGGER.warn("No base URL specified for auto-complete: {}", index);
-            baseUrl = "";
+            userFieldsInfo = new ArrayList<>();
+            for(final UserField userField : upload.getUserFields().getUserField()) {
+                final UserFieldInfo userFieldInfo = new UserFieldInfo(userField.getName(), userField.getLabel(), userField.isMultiline(), userField.isRequired(), userField.getInitialValue(), userField.getDefaultValue(), userField.getValidateWith());
+                userFieldsInfo.add(userFieldInfo);
+            }
         }
 
-        String url = specific.getUrl();
-        url = url.replace(BASE_URL.var(), baseUrl);
-        if(authentication != null) {
-            url = url.replace(USERNAME.var(), authentication.getUsername());
-            url = url.replace(PASSWORD.var(), authentication.getPassword());
+        final Authentication uploadAuthentication = resolveAuthentication(global,upload.getServer());
+
+        final BodyInfo bodyInfo;
+        if(upload.getBody() == null) {
+            bodyInfo = null;
+        } else {
+            bodyInfo = new BodyInfo(
+                    asBodyInfoBodyType(upload.getBody().getType()),
+                    asBodyInfoEncoding(upload.getBody().getEncoding()),
+                    upload.getBody().isIncludeSelection(),
+                    upload.getBody().isIncludeDependent(),
+                    upload.getBody().getTransformation() == null ? null : configFile.resolveSibling(upload.getBody().getTransformation()),
+                    upload.getBody().getLevel(),
+                    upload.getBody().getMinSize()
+            );
         }
-        return url;
+
+        final BatchInfo batchInfo;
+        if(upload.getBatch() == null) {
+            batchInfo = null;
+        } else {
+            batchInfo = new BatchInfo(
+                    expandUrl(global, upload.getServer(), upload.getBatch().getUrl(), "auto-complete upload batch", index, uploadAuthentication),
+                    upload.getBatch().getWindow(),
+                    upload.getBatch().getMaxSize(),
+                    interner.string(upload.getBatch().getUrl())
+            );
+        }
+
+        return new UploadInfo(
+                asUploadInfoMethod(upload.getMethod()),
+                expandUrlTemplate(global, upload.getServer(), upload.getUrl(), "auto-complete upload", index, uploadAuthentication),
+                userFieldsInfo,
+                uploadAuthentication,
+                bodyInfo,
+                upload.isAsync(),
+                batchInfo,
+                resolveServerInfo(global, upload.getServer()),
+                interner.string(upload.getUrl())
+        );
     }
 
-    private String expandUrl(final Server global, final Upload specific, final int index, final Authentication authentication) {
+    /**
+     * Expands the configuration variables in a URL,
+     * i.e. the base URL, username and password
+     *
+     * Any other variables are left in place to be expanded
+     * later when a request is made.
+     *
+     * @param global The global server configuration, or null
+     * @param specific The server configuration specific to the URL, or null
+     * @param url The URL template
+     * @param description A description of the URL for logging
+     * @param index The index of the auto-complete
+     * @param authentication The authentication for the server, or null
+     *
+     * @return The URL template with the configuration variables expanded
+     */
+    private String expandUrl(@Nullable final Server global, @Nullable final Server specific, final String url, final String description, final int index, @Nullable final Authentication authentication) {
+        return interner.string(expandUrlTemplate(global, specific, url, description, index, authentication).toString());
+    }
+
+    /**
+     * Expands the configuration variables in a URL,
+     * i.e. the base URL, username and password
+     *
+     * Unlike {@link #expandUrl(Server, Server, String, String, int, Authentication)}
+     * the template is not converted back to a string, so a value of a configuration
+     * variable which looks like a variable, e.g. a password containing "$suggestion",
+     * is never expanded later.
+     *
+     * @param global The global server configuration, or null
+     * @param specific The server configuration specific to the URL, or null
+     * @param url The URL template
+     * @param description A description of the URL for logging
+     * @param index The index of the auto-complete
+     * @param authentication The authentication for the server, or null
+     *
+     * @return The compiled URL template with the configuration variables bound
+     */
+    private UrlTemplate expandUrlTemplate(@Nullable final Server global, @Nullable final Server specific, final String url, final String description, final int index, @Nullable final Authentication authentication) {
         final String baseUrl;
-        if(specific.getServer() != null) {
-            baseUrl = specific.getServer().getBaseUrl();
+        if(specific != null) {
+            baseUrl = specific.getBaseUrl();
         } else if(global != null) {
             baseUrl = global.getBaseUrl();
         } else {
-            LOGGER.warn("No base URL specified for auto-complete upload: {}", index);
+            LOGGER.warn("No base URL specified for {}: {}", description, index);
             baseUrl = "";
         }
 
-        String url = specific.getUrl();
-        url = url.replace(BASE_URL.var(), baseUrl);
+        UrlTemplate template = UrlTemplate.compile(url).bind(BASE_URL.camelName(), baseUrl, false);
         if(authentication != null) {
-            url = url.replace(USERNAME.var(), authentication.getUsername());
-            url = url.replace(PASSWORD.var(), authentication.getPassword());
+            template = template
+                    .bind(USERNAME.camelName(), authentication.getUsername(), true)
+                    .bind(PASSWORD.camelName(), authentication.getPassword(), true);
+        }
+        return template;
+    }
+
+    @Nullable
+    private ServerInfo resolveServerInfo(@Nullable final Server global, @Nullable final Server specific) {
+        final Server server = specific != null ? specific : global;
+        if(server == null) {
+            return null;
         }
-        return url;
+        return interner.serverInfo(new ServerInfo(interner.string(server.getBaseUrl()), server.getMaxConnections(), server.getMaxConnectionsPerHost(), TimeUnit.SECONDS.toMillis(server.getIdleTimeout())));
     }
 
     @Nullable
@@ -265,7 +448,7 @@ public class XmlConfiguration extends org.humanistika.oxygen.tei.completer.confi
                     throw new IllegalStateException("Unknown authentication type: " + configAuth.getType());
             }
 
-            return new Authentication(authenticationType, configAuth.getUsername(), configAuth.getPassword());
+            return interner.authentication(new Authentication(authenticationType, configAuth.getUsername(), configAuth.getPassword()));
         } else {
             return null;
         }
@@ -279,7 +462,7 @@ public class XmlConfiguration extends org.humanistika.oxygen.tei.completer.confi
         if(specific != null) {
             addBindings(namespaceBindings, specific.getBinding());
         }
-        return namespaceBindings;
+        return interner.namespaceBindings(namespaceBindings);
     }
 
     private void addBindings(final Map<String, String> namespaceBindings, final List<NamespaceBindings.Binding> bindings) {
@@ -320,6 +503,10 @@ public class XmlConfiguration extends org.humanistika.oxygen.tei.completer.confi
         switch(uploadEncoding) {
             case GZIP:
                 return BodyInfo.Encoding.GZIP;
+            case DEFLATE:
+                return BodyInfo.Encoding.DEFLATE;
+            case ZSTD:
+                return BodyInfo.Encoding.ZSTD;
             default:
                 throw new IllegalArgumentException("Unsupported type for UploadEncoding: " + uploadEncoding.name());
         }
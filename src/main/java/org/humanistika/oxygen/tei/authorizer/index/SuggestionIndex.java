@@ -0,0 +1,569 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.index;
+
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * A read-only, memory-mapped index of the suggestions
+ * retrieved from a server for a single request URL
+ *
+ * The index maps the selected and dependent values of a request to the
+ * suggestions that the server returned. Both the keys and the distinct
+ * suggestions are held in sorted, front-coded string stores: every
+ * {@link #BLOCK_SIZE} entries the full string is stored, and each
+ * following entry only stores the suffix which differs from its
+ * predecessor. An offset table of the blocks allows a key to be found
+ * by a binary search of the blocks, followed by a scan of a single block.
+ *
+ * File layout (big-endian):
+ *  header: magic, version, value count, value block count, key count, key block count, max string length
+ *  offset table: the file offset of each value block, then of each key block
+ *  values: varint shared prefix length, varint suffix length, suffix, varint description length + 1 (0 for null), description
+ *  keys: varint shared prefix length, varint suffix length, suffix, timestamp, varint suggestion count, varint value id...
+ *
+ * Opening an index only maps the file, and lookups allocate
+ * nothing beyond the returned suggestions.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionIndex implements Closeable {
+    final static int MAGIC = 0x54415349;  // "TASI"
+    final static int VERSION = 1;
+    final static int BLOCK_SIZE = 16;
+    private final static int HEADER_SIZE = 7 * 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int valueBlockCount;
+    private final int keyCount;
+    private final int keyBlockCount;
+    private final int maxLength;
+    private final ThreadLocal<Scratch> scratch;
+
+    private SuggestionIndex(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a suggestion index, or an unsupported version");
+        }
+        this.valueBlockCount = buffer.getInt(12);
+        this.keyCount = buffer.getInt(16);
+        this.keyBlockCount = buffer.getInt(20);
+        this.maxLength = buffer.getInt(24);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(buffer.duplicate(), maxLength));
+    }
+
+    /**
+     * Open an index by mapping its file into memory
+     *
+     * @param file the index file
+     *
+     * @return the index
+     *
+     * @throws IOException if the file cannot be mapped, or is not an index
+     */
+    public static SuggestionIndex open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SuggestionIndex(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of keys in the index
+     */
+    public int size() {
+        return keyCount;
+    }
+
+    /**
+     * Lookup the suggestions for a request
+     *
+     * @param selectedValue the selected value of the request
+     * @param dependentValue the dependent value of the request
+     * @param notBefore the earliest time (in milliseconds since the epoch) that the suggestions may have been retrieved
+     *
+     * @return the suggestions, or null if the index has no suggestions retrieved since notBefore
+     */
+    @Nullable
+    public List<CIValue> lookup(@Nullable final String selectedValue, @Nullable final String dependentValue, final long notBefore) {
+        final Scratch s = scratch.get();
+        final int queryLength = s.encodeKey(selectedValue, dependentValue);
+        final ByteBuffer buf = s.buffer;
+
+        // binary search for the last block whose first key is not greater than the query
+        int low = 0;
+        int high = keyBlockCount - 1;
+        int block = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            buf.position((int) buffer.getLong(keyBlockOffset(mid)));
+            readVarint(buf);  // shared prefix, always 0 for the first key of a block
+            final int length = readVarint(buf);
+            buf.get(s.current, 0, length);
+            if (compare(s.current, length, s.query, queryLength) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block == -1) {
+            return null;
+        }
+
+        // scan the block
+        buf.position((int) buffer.getLong(keyBlockOffset(block)));
+        final int entries = Math.min(BLOCK_SIZE, keyCount - block * BLOCK_SIZE);
+        for (int i = 0; i < entries; i++) {
+            final int shared = readVarint(buf);
+            final int suffix = readVarint(buf);
+            buf.get(s.current, shared, suffix);
+            final int cmp = compare(s.current, shared + suffix, s.query, queryLength);
+            final long timestamp = buf.getLong();
+            final int count = readVarint(buf);
+            if (cmp == 0) {
+                if (timestamp < notBefore) {
+                    return null;
+                }
+                final CIValue[] suggestions = new CIValue[count];
+                for (int j = 0; j < count; j++) {
+                    final int id = readVarint(buf);
+                    final int keyPosition = buf.position();
+                    suggestions[j] = readValue(s, id);
+                    buf.position(keyPosition);
+                }
+                return Arrays.asList(suggestions);
+            } else if (cmp > 0) {
+                return null;
+            }
+            for (int j = 0; j < count; j++) {
+                readVarint(buf);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visit every entry in the index
+     *
+     * @param visitor the visitor
+     */
+    public void forEach(final EntryVisitor visitor) {
+        final Scratch s = scratch.get();
+        final ByteBuffer buf = s.buffer;
+        if (keyCount == 0) {
+            return;
+        }
+        buf.position((int) buffer.getLong(keyBlockOffset(0)));
+        for (int i = 0; i < keyCount; i++) {
+            final int shared = readVarint(buf);
+            final int suffix = readVarint(buf);
+            buf.get(s.current, shared, suffix);
+            final String key = new String(s.current, 0, shared + suffix, StandardCharsets.UTF_8);
+            final long timestamp = buf.getLong();
+            final int count = readVarint(buf);
+            final List<CIValue> suggestions = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                final int id = readVarint(buf);
+                final int keyPosition = buf.position();
+                suggestions.add(readValue(s, id));
+                buf.position(keyPosition);
+            }
+            final int separator = key.indexOf(KEY_SEPARATOR);
+            visitor.visit(decodeKeyPart(key.substring(0, separator)), decodeKeyPart(key.substring(separator + 1)), timestamp, suggestions);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int keyBlockOffset(final int block) {
+        return HEADER_SIZE + (valueBlockCount + block) * 8;
+    }
+
+    private CIValue readValue(final Scratch s, final int id) {
+        final ByteBuffer buf = s.buffer;
+        final int block = id / BLOCK_SIZE;
+        buf.position((int) buffer.getLong(HEADER_SIZE + block * 8));
+        int length = 0;
+        for (int i = block * BLOCK_SIZE; ; i++) {
+            final int shared = readVarint(buf);
+            final int suffix = readVarint(buf);
+            buf.get(s.value, shared, suffix);
+            length = shared + suffix;
+            final int descriptionLength = readVarint(buf) - 1;
+            if (i == id) {
+                final String description;
+                if (descriptionLength < 0) {
+                    description = null;
+                } else {
+                    buf.get(s.description, 0, descriptionLength);
+                    description = new String(s.description, 0, descriptionLength, StandardCharsets.UTF_8);
+                }
+                return new CIValue(new String(s.value, 0, length, StandardCharsets.UTF_8), description);
+            }
+            if (descriptionLength > 0) {
+                buf.position(buf.position() + descriptionLength);
+            }
+        }
+    }
+
+    private static int compare(final byte[] a, final int aLength, final byte[] b, final int bLength) {
+        final int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static int readVarint(final ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Visits the entries of an index
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(@Nullable String selectedValue, @Nullable String dependentValue, long timestamp, List<CIValue> suggestions);
+    }
+
+    /**
+     * An entry to be written to an index
+     */
+    public static class Entry {
+        @Nullable private final String selectedValue;
+        @Nullable private final String dependentValue;
+        private final long timestamp;
+        private final List<CIValue> suggestions;
+
+        /**
+         * @param selectedValue the selected value of the request
+         * @param dependentValue the dependent value of the request
+         * @param timestamp the time (in milliseconds since the epoch) that the suggestions were retrieved
+         * @param suggestions the suggestions returned by the server
+         */
+        public Entry(@Nullable final String selectedValue, @Nullable final String dependentValue, final long timestamp, final List<CIValue> suggestions) {
+            this.selectedValue = selectedValue;
+            this.dependentValue = dependentValue;
+            this.timestamp = timestamp;
+            this.suggestions = suggestions;
+        }
+
+        @Nullable
+        public String getSelectedValue() {
+            return selectedValue;
+        }
+
+        @Nullable
+        public String getDependentValue() {
+            return dependentValue;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public List<CIValue> getSuggestions() {
+            return suggestions;
+        }
+    }
+
+    /**
+     * Write an index
+     *
+     * @param file the file to write the index to
+     * @param entries the entries of the index
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public static void write(final Path file, final Collection<Entry> entries) throws IOException {
+        // assign an id to each distinct suggestion, in sorted order so that they front-code well
+        final TreeMap<ValueKey, Integer> valueIds = new TreeMap<>();
+        for (final Entry entry : entries) {
+            for (final CIValue suggestion : entry.suggestions) {
+                valueIds.put(new ValueKey(suggestion.getValue(), suggestion.getAnnotation()), 0);
+            }
+        }
+        int maxLength = 0;
+        int nextId = 0;
+        for (final Map.Entry<ValueKey, Integer> valueId : valueIds.entrySet()) {
+            valueId.setValue(nextId++);
+            maxLength = Math.max(maxLength, Math.max(valueId.getKey().value.length, valueId.getKey().description == null ? 0 : valueId.getKey().description.length));
+        }
+
+        final List<byte[]> keys = new ArrayList<>(entries.size());
+        final Map<byte[], Entry> keyEntries = new TreeMap<>(SuggestionIndex::compareKeys);
+        for (final Entry entry : entries) {
+            final byte[] key = encodeKey(entry.selectedValue, entry.dependentValue).getBytes(StandardCharsets.UTF_8);
+            keyEntries.put(key, entry);
+            maxLength = Math.max(maxLength, key.length);
+        }
+        keys.addAll(keyEntries.keySet());
+
+        final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        final List<Integer> valueBlocks = new ArrayList<>();
+        byte[] previous = null;
+        int i = 0;
+        for (final ValueKey valueKey : valueIds.keySet()) {
+            if (i++ % BLOCK_SIZE == 0) {
+                valueBlocks.add(values.size());
+                previous = null;
+            }
+            writeFrontCoded(values, previous, valueKey.value);
+            if (valueKey.description == null) {
+                writeVarint(values, 0);
+            } else {
+                writeVarint(values, valueKey.description.length + 1);
+                values.write(valueKey.description);
+            }
+            previous = valueKey.value;
+        }
+
+        final ByteArrayOutputStream keyData = new ByteArrayOutputStream();
+        final List<Integer> keyBlocks = new ArrayList<>();
+        previous = null;
+        i = 0;
+        final ByteBuffer timestamp = ByteBuffer.allocate(8);
+        for (final byte[] key : keys) {
+            if (i++ % BLOCK_SIZE == 0) {
+                keyBlocks.add(keyData.size());
+                previous = null;
+            }
+            writeFrontCoded(keyData, previous, key);
+            final Entry entry = keyEntries.get(key);
+            timestamp.putLong(0, entry.timestamp);
+            keyData.write(timestamp.array());
+            writeVarint(keyData, entry.suggestions.size());
+            for (final CIValue suggestion : entry.suggestions) {
+                writeVarint(keyData, valueIds.get(new ValueKey(suggestion.getValue(), suggestion.getAnnotation())));
+            }
+            previous = key;
+        }
+
+        final long valuesOffset = HEADER_SIZE + (valueBlocks.size() + keyBlocks.size()) * 8L;
+        final long keysOffset = valuesOffset + values.size();
+        final ByteBuffer header = ByteBuffer.allocate((int) valuesOffset);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(valueIds.size()).putInt(valueBlocks.size())
+                .putInt(keys.size()).putInt(keyBlocks.size())
+                .putInt(maxLength);
+        for (final int valueBlock : valueBlocks) {
+            header.putLong(valuesOffset + valueBlock);
+        }
+        for (final int keyBlock : keyBlocks) {
+            header.putLong(keysOffset + keyBlock);
+        }
+
+        try (final OutputStream os = Files.newOutputStream(file)) {
+            os.write(header.array());
+            values.writeTo(os);
+            keyData.writeTo(os);
+        }
+    }
+
+    private static void writeFrontCoded(final ByteArrayOutputStream os, @Nullable final byte[] previous, final byte[] current) {
+        int shared = 0;
+        if (previous != null) {
+            final int max = Math.min(previous.length, current.length);
+            while (shared < max && previous[shared] == current[shared]) {
+                shared++;
+            }
+        }
+        writeVarint(os, shared);
+        writeVarint(os, current.length - shared);
+        os.write(current, shared, current.length - shared);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream os, int value) {
+        while ((value & ~0x7F) != 0) {
+            os.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        os.write(value);
+    }
+
+    private static int compareKeys(final byte[] a, final byte[] b) {
+        return compare(a, a.length, b, b.length);
+    }
+
+    // keys are encoded as: selected value, separator, dependent value; each part is prefixed with a marker which distinguishes null from empty
+    private final static char KEY_SEPARATOR = '\u0000';
+    private final static char NULL_MARKER = '\u0001';
+    private final static char VALUE_MARKER = '\u0002';
+
+    static String encodeKey(@Nullable final String selectedValue, @Nullable final String dependentValue) {
+        return encodeKeyPart(selectedValue) + KEY_SEPARATOR + encodeKeyPart(dependentValue);
+    }
+
+    private static String encodeKeyPart(@Nullable final String part) {
+        return part == null ? String.valueOf(NULL_MARKER) : VALUE_MARKER + part;
+    }
+
+    @Nullable
+    private static String decodeKeyPart(final String part) {
+        return part.charAt(0) == NULL_MARKER ? null : part.substring(1);
+    }
+
+    /**
+     * A distinct suggestion, ordered by the UTF-8 bytes of its value and description
+     */
+    private static class ValueKey implements Comparable<ValueKey> {
+        private final static Comparator<byte[]> NULLS_FIRST = Comparator.nullsFirst(SuggestionIndex::compareKeys);
+
+        private final byte[] value;
+        @Nullable private final byte[] description;
+
+        private ValueKey(final String value, @Nullable final String description) {
+            this.value = value.getBytes(StandardCharsets.UTF_8);
+            this.description = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int compareTo(final ValueKey other) {
+            final int cmp = compareKeys(value, other.value);
+            return cmp != 0 ? cmp : NULLS_FIRST.compare(description, other.description);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof ValueKey && compareTo((ValueKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(value), Arrays.hashCode(description));
+        }
+    }
+
+    /**
+     * Per-thread buffers, so that lookups do not allocate
+     */
+    private static class Scratch {
+        private final ByteBuffer buffer;
+        private final byte[] current;
+        private final byte[] value;
+        private final byte[] description;
+        private byte[] query;
+
+        private Scratch(final ByteBuffer buffer, final int maxLength) {
+            this.buffer = buffer;
+            this.current = new byte[maxLength];
+            this.value = new byte[maxLength];
+            this.description = new byte[maxLength];
+            this.query = new byte[Math.max(64, maxLength)];
+        }
+
+        /**
+         * Encode a key as UTF-8 into the query buffer
+         *
+         * @return the length of the encoded key
+         */
+        private int encodeKey(@Nullable final String selectedValue, @Nullable final String dependentValue) {
+            int length = encodeKeyPart(selectedValue, 0);
+            length = put(KEY_SEPARATOR, length);
+            return encodeKeyPart(dependentValue, length);
+        }
+
+        private int encodeKeyPart(@Nullable final String part, int offset) {
+            if (part == null) {
+                return put(NULL_MARKER, offset);
+            }
+            offset = put(VALUE_MARKER, offset);
+            for (int i = 0; i < part.length(); i++) {
+                final int codePoint = part.codePointAt(i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                } else if (Character.isSurrogate((char) codePoint)) {
+                    // unpaired surrogates are replaced, as they are by String#getBytes
+                    offset = put('?', offset);
+                    continue;
+                }
+                offset = put(codePoint, offset);
+            }
+            return offset;
+        }
+
+        private int put(final int codePoint, final int offset) {
+            if (query.length < offset + 4) {
+                query = Arrays.copyOf(query, query.length * 2);
+            }
+            if (codePoint < 0x80) {
+                query[offset] = (byte) codePoint;
+                return offset + 1;
+            } else if (codePoint < 0x800) {
+                query[offset] = (byte) (0xC0 | (codePoint >> 6));
+                query[offset + 1] = (byte) (0x80 | (codePoint & 0x3F));
+                return offset + 2;
+            } else if (codePoint < 0x10000) {
+                query[offset] = (byte) (0xE0 | (codePoint >> 12));
+                query[offset + 1] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                query[offset + 2] = (byte) (0x80 | (codePoint & 0x3F));
+                return offset + 3;
+            } else {
+                query[offset] = (byte) (0xF0 | (codePoint >> 18));
+                query[offset + 1] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                query[offset + 2] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                query[offset + 3] = (byte) (0x80 | (codePoint & 0x3F));
+                return offset + 4;
+            }
+        }
+    }
+}
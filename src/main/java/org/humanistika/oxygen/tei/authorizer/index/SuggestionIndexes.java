@@ -0,0 +1,328 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.index;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * The persistent {@link SuggestionIndex}es of the
+ * suggestions retrieved from the server, one for
+ * each auto-complete request URL
+ *
+ * Suggestions retrieved from the server are first held in memory,
+ * and shortly afterwards are merged into a new generation of the
+ * index file for the request URL in the background. The index file
+ * is replaced atomically, and is then mapped into memory.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionIndexes implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SuggestionIndexes.class);
+    private final static String INDEX_FILE_EXTENSION = ".idx";
+    private final static long FLUSH_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    private final Path directory;
+    private final LongSupplier clock;
+    private final long flushDelay;
+    private final ConcurrentMap<String, UrlIndex> indexes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * @param directory the directory to store the index files in
+     */
+    public SuggestionIndexes(final Path directory) {
+        this(directory, System::currentTimeMillis, FLUSH_DELAY);
+    }
+
+    SuggestionIndexes(final Path directory, final LongSupplier clock, final long flushDelay) {
+        this.directory = directory;
+        this.clock = clock;
+        this.flushDelay = flushDelay;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "tei-authorizer-index");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Lookup the suggestions which were retrieved from the server for a request
+     *
+     * @param autoComplete the auto-complete of the request
+     * @param selectedValue the selected value of the request
+     * @param dependentValue the dependent value of the request
+     * @param maxAge the maximum age in milliseconds of the suggestions
+     *
+     * @return the suggestions, or null if there are no suggestions younger than maxAge
+     */
+    @Nullable
+    public List<CIValue> lookup(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final long maxAge) {
+        final long now = clock.getAsLong();
+        final long notBefore = maxAge > now ? Long.MIN_VALUE : now - maxAge;
+        final UrlIndex urlIndex = getUrlIndex(autoComplete);
+
+        if(!urlIndex.updates.isEmpty()) {
+            final SuggestionIndex.Entry update = urlIndex.updates.get(SuggestionIndex.encodeKey(selectedValue, dependentValue));
+            if(update != null) {
+                return update.getTimestamp() >= notBefore ? update.getSuggestions() : null;
+            }
+        }
+
+        final SuggestionIndex index = urlIndex.getIndex();
+        return index == null ? null : index.lookup(selectedValue, dependentValue, notBefore);
+    }
+
+    /**
+     * Record the suggestions which were retrieved from the server for a request
+     *
+     * @param autoComplete the auto-complete of the request
+     * @param selectedValue the selected value of the request
+     * @param dependentValue the dependent value of the request
+     * @param suggestions the suggestions returned by the server
+     */
+    public void update(final AutoComplete autoComplete, @Nullable final String selectedValue, @Nullable final String dependentValue, final List<CIValue> suggestions) {
+        final UrlIndex urlIndex = getUrlIndex(autoComplete);
+        final List<CIValue> copy = new ArrayList<>(suggestions.size());
+        for(final CIValue suggestion : suggestions) {
+            copy.add(new CIValue(suggestion.getValue(), suggestion.getAnnotation()));
+        }
+        urlIndex.updates.put(SuggestionIndex.encodeKey(selectedValue, dependentValue), new SuggestionIndex.Entry(selectedValue, dependentValue, clock.getAsLong(), copy));
+
+        if(urlIndex.flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(() -> {
+                urlIndex.flushScheduled.set(false);
+                flush(urlIndex);
+            }, flushDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Merge all recorded suggestions into the index files
+     */
+    public void flush() {
+        for(final UrlIndex urlIndex : indexes.values()) {
+            flush(urlIndex);
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+        for(final UrlIndex urlIndex : indexes.values()) {
+            urlIndex.close();
+        }
+    }
+
+    private UrlIndex getUrlIndex(final AutoComplete autoComplete) {
+        return indexes.computeIfAbsent(autoComplete.getRequestInfo().getUrl(), url -> new UrlIndex(fileName(url)));
+    }
+
+    private void flush(final UrlIndex urlIndex) {
+        synchronized(urlIndex) {
+            if(urlIndex.updates.isEmpty()) {
+                return;
+            }
+
+            final Map<String, SuggestionIndex.Entry> updates = new HashMap<>(urlIndex.updates);
+            final Map<String, SuggestionIndex.Entry> entries = new LinkedHashMap<>();
+            final SuggestionIndex previous = urlIndex.getIndex();
+            if(previous != null) {
+                previous.forEach((selectedValue, dependentValue, timestamp, suggestions) ->
+                        entries.put(SuggestionIndex.encodeKey(selectedValue, dependentValue), new SuggestionIndex.Entry(selectedValue, dependentValue, timestamp, suggestions)));
+            }
+            entries.putAll(updates);
+
+            final long generation = urlIndex.generation + 1;
+            final Path file = directory.resolve(urlIndex.fileName + "-" + generation + INDEX_FILE_EXTENSION);
+            final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(directory);
+                SuggestionIndex.write(tmpFile, entries.values());
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                urlIndex.index = SuggestionIndex.open(file);
+                urlIndex.generation = generation;
+            } catch(final IOException e) {
+                LOGGER.error("Unable to write suggestion index: " + file.toAbsolutePath() + ". " + e.getMessage(), e);
+                return;
+            }
+
+            for(final Map.Entry<String, SuggestionIndex.Entry> update : updates.entrySet()) {
+                urlIndex.updates.remove(update.getKey(), update.getValue());
+            }
+
+            if(previous != null) {
+                urlIndex.close(previous);
+            }
+            urlIndex.deletePreviousGenerations();
+        }
+    }
+
+    /**
+     * @return the base name of the index files for a request URL
+     */
+    private static String fileName(final String url) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for(final byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch(final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The index of a single request URL
+     */
+    private class UrlIndex {
+        private final String fileName;
+        private final ConcurrentMap<String, SuggestionIndex.Entry> updates = new ConcurrentHashMap<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private volatile boolean opened = false;
+        @Nullable private volatile SuggestionIndex index = null;
+        private long generation = 0;
+
+        private UrlIndex(final String fileName) {
+            this.fileName = fileName;
+        }
+
+        /**
+         * Get the index, mapping the latest generation
+         * of the index file when first called
+         *
+         * @return the index, or null if there is no index file
+         */
+        @Nullable
+        private SuggestionIndex getIndex() {
+            if(!opened) {
+                synchronized(this) {
+                    if(!opened) {
+                        final Path latest = findGenerations(Long.MAX_VALUE).stream()
+                                .max((a, b) -> Long.compare(generation(a), generation(b)))
+                                .orElse(null);
+                        if(latest != null) {
+                            try {
+                                this.index = SuggestionIndex.open(latest);
+                                this.generation = generation(latest);
+                            } catch(final IOException e) {
+                                LOGGER.error("Unable to open suggestion index: " + latest.toAbsolutePath() + ". " + e.getMessage(), e);
+                            }
+                        }
+                        this.opened = true;
+                        deletePreviousGenerations();
+                    }
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Delete the index files which have been superseded
+         *
+         * NOTE: on some platforms a file cannot be deleted whilst it is still mapped,
+         * such files will be deleted the next time that the index is opened
+         */
+        private void deletePreviousGenerations() {
+            for(final Path previous : findGenerations(generation)) {
+                try {
+                    Files.deleteIfExists(previous);
+                } catch(final IOException e) {
+                    LOGGER.debug("Unable to delete previous suggestion index: " + previous.toAbsolutePath() + ". " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * @return the index files which precede a generation
+         */
+        private List<Path> findGenerations(final long before) {
+            final List<Path> generations = new ArrayList<>();
+            if(Files.isDirectory(directory)) {
+                try(final DirectoryStream<Path> files = Files.newDirectoryStream(directory, fileName + "-*" + INDEX_FILE_EXTENSION)) {
+                    for(final Path file : files) {
+                        final long generation = generation(file);
+                        if(generation > 0 && generation < before) {
+                            generations.add(file);
+                        }
+                    }
+                } catch(final IOException e) {
+                    LOGGER.error("Unable to list suggestion indexes: " + directory.toAbsolutePath() + ". " + e.getMessage(), e);
+                }
+            }
+            return generations;
+        }
+
+        private long generation(final Path file) {
+            final String name = file.getFileName().toString();
+            try {
+                return Long.parseLong(name.substring(fileName.length() + 1, name.length() - INDEX_FILE_EXTENSION.length()));
+            } catch(final NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private void close() {
+            final SuggestionIndex index = this.index;
+            if(index != null) {
+                close(index);
+            }
+        }
+
+        private void close(final SuggestionIndex index) {
+            try {
+                index.close();
+            } catch(final IOException e) {
+                LOGGER.warn("Unable to close suggestion index. " + e.getMessage(), e);
+            }
+        }
+    }
+}
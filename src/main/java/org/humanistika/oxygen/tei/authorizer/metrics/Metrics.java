@@ -0,0 +1,128 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the counters and timers
+ * recorded by the TEI-Authorizer
+ *
+ * The registry is exposed over JMX as
+ * {@value #OBJECT_NAME}.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class Metrics implements MetricsMXBean {
+    private final static Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    public final static String OBJECT_NAME = "org.humanistika.oxygen.tei.authorizer:type=Metrics";
+
+    private final static Metrics instance = new Metrics();
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get (or create) a counter
+     *
+     * @param name the name of the counter
+     *
+     * @return the counter
+     */
+    public LongAdder counter(final String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Get (or create) a timer
+     *
+     * @param name the name of the timer
+     *
+     * @return the timer
+     */
+    public Timer timer(final String name) {
+        return timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        final Map<String, Long> values = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, TimerSnapshot> getTimers() {
+        final Map<String, TimerSnapshot> snapshots = new TreeMap<>();
+        for (final Map.Entry<String, Timer> timer : timers.entrySet()) {
+            snapshots.put(timer.getKey(), timer.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public void reset() {
+        for (final LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (final Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Register the metrics with the platform MBean server,
+     * if they are not already registered
+     */
+    public void registerMBean() {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mBeanServer.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (final InstanceAlreadyExistsException e) {
+            LOGGER.debug("Metrics are already registered as: {}", OBJECT_NAME);
+        } catch (final JMException e) {
+            LOGGER.warn("Unable to register metrics with JMX: " + e.getMessage(), e);
+        }
+    }
+}
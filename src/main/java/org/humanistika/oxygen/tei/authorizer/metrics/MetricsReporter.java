@@ -0,0 +1,127 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a snapshot of the {@link Metrics}
+ * to a file, so that they can be collected from editors
+ * who do not have JMX access
+ *
+ * Each snapshot replaces the previous one, the file is
+ * in the format of a Java properties file.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class MetricsReporter implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private final Metrics metrics;
+    private final Path snapshotFile;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param metrics the metrics to report
+     * @param snapshotFile the file to write snapshots to
+     * @param period the interval between snapshots
+     * @param unit the unit of the period
+     */
+    public MetricsReporter(final Metrics metrics, final Path snapshotFile, final long period, final TimeUnit unit) {
+        this.metrics = metrics;
+        this.snapshotFile = snapshotFile;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "tei-authorizer-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::report, period, period, unit);
+    }
+
+    private void report() {
+        try {
+            writeSnapshot();
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to write metrics snapshot: " + snapshotFile.toAbsolutePath() + ". " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write a snapshot of the metrics to the snapshot file
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot() throws IOException {
+        final Path tmpFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (final Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            writer.write("# TEI-Authorizer metrics, durations are in milliseconds\n");
+            writer.write("timestamp=" + Instant.now() + "\n");
+            for (final Map.Entry<String, Long> counter : metrics.getCounters().entrySet()) {
+                writer.write("counter." + escape(counter.getKey()) + "=" + counter.getValue() + "\n");
+            }
+            for (final Map.Entry<String, TimerSnapshot> timer : metrics.getTimers().entrySet()) {
+                final String prefix = "timer." + escape(timer.getKey()) + ".";
+                final TimerSnapshot snapshot = timer.getValue();
+                writer.write(prefix + "count=" + snapshot.getCount() + "\n");
+                writer.write(prefix + "mean=" + snapshot.getMean() + "\n");
+                writer.write(prefix + "p50=" + snapshot.getP50() + "\n");
+                writer.write(prefix + "p95=" + snapshot.getP95() + "\n");
+                writer.write(prefix + "p99=" + snapshot.getP99() + "\n");
+                writer.write(prefix + "max=" + snapshot.getMax() + "\n");
+            }
+        }
+
+        try {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String escape(final String key) {
+        return key.replace("\\", "\\\\").replace(" ", "\\ ").replace(":", "\\:").replace("=", "\\=");
+    }
+
+    /**
+     * Stops reporting, after writing a final snapshot
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        report();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.queue;
+
+import org.humanistika.oxygen.tei.authorizer.SuggestedAutocomplete;
+import org.humanistika.oxygen.tei.authorizer.remote.Client;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * A suggestion which is waiting in the
+ * {@link UploadQueue} to be uploaded to the server
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class QueuedUpload extends Client.SuggestionUpload {
+    private final long id;
+    private final long enqueued;
+    private final String uploadKey;
+
+    QueuedUpload(final long id, final long enqueued, final String uploadKey, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+        super(suggestion, description, selectionValue, dependentValue, userValues);
+        this.id = id;
+        this.enqueued = enqueued;
+        this.uploadKey = uploadKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return The time (in milliseconds since the epoch) at which the upload was queued
+     */
+    public long getEnqueued() {
+        return enqueued;
+    }
+
+    /**
+     * @return The key of the upload configuration, see {@link UploadQueue#uploadKey(org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo)}
+     */
+    public String getUploadKey() {
+        return uploadKey;
+    }
+}
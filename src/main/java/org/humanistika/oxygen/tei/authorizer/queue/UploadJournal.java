@@ -0,0 +1,410 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.queue;
+
+import org.humanistika.oxygen.tei.authorizer.SuggestedAutocomplete;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of queued uploads
+ *
+ * Each record in the journal is framed as:
+ * {@code [int length][int crc32][byte type][payload]}, where the
+ * type is either {@link #ENQUEUE} followed by the upload, or
+ * {@link #ACK} followed by the id of an upload which is no longer pending.
+ *
+ * Enqueued uploads are forced to disk before {@link #append} returns.
+ * Acknowledgements are only forced in batches by {@link #sync()}, if
+ * an acknowledgement is lost in a crash the upload is simply replayed
+ * again, i.e. delivery is at-least-once.
+ *
+ * A torn record at the end of the journal, from a crash
+ * during a write, is discarded when the journal is opened. Once
+ * enough uploads have been acknowledged, the journal is compacted by
+ * rewriting just the pending uploads to a new journal.
+ *
+ * The journal may only be opened by one process at a time, which holds
+ * a lock on a file alongside the journal, as the journal file itself
+ * is replaced by compaction.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class UploadJournal implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UploadJournal.class);
+
+    private final static byte ENQUEUE = 1;
+    private final static byte ACK = 2;
+    private final static int RECORD_HEADER_LENGTH = 4 + 4;
+    private final static String LOCK_FILE_SUFFIX = ".lock";
+
+    /**
+     * Minimum number of acknowledged uploads before the journal is compacted
+     */
+    private final static int COMPACTION_THRESHOLD = 64;
+
+    private final Path journalFile;
+    private final FileChannel lockChannel;
+    private final Map<Long, QueuedUpload> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long nextId = 1;
+    private int acknowledged = 0;
+    private boolean dirty = false;
+
+    /**
+     * @param journalFile The journal file
+     *
+     * @throws IOException if the journal cannot be opened, or is already open in this or another process
+     */
+    UploadJournal(final Path journalFile) throws IOException {
+        this.journalFile = journalFile;
+        Files.createDirectories(journalFile.getParent());
+        this.lockChannel = lock(journalFile.resolveSibling(journalFile.getFileName() + LOCK_FILE_SUFFIX));
+        try {
+            this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } catch(final IOException e) {
+            if(channel != null) {
+                channel.close();
+            }
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Locks the journal, so that only a single process
+     * appends to and replays the journal
+     *
+     * @param lockFile The file to lock
+     *
+     * @return The channel which holds the lock until it is closed
+     *
+     * @throws IOException if the lock cannot be acquired
+     */
+    private static FileChannel lock(final Path lockFile) throws IOException {
+        final FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = lockChannel.tryLock();
+        } catch(final OverlappingFileLockException e) {
+            //already locked by this process
+        } finally {
+            if(lock == null) {
+                lockChannel.close();
+            }
+        }
+
+        if(lock == null) {
+            throw new IOException("Upload journal is already in use: " + lockFile.toAbsolutePath());
+        }
+        return lockChannel;
+    }
+
+    /**
+     * Append a new upload to the journal
+     *
+     * The upload is durable once this method returns.
+     *
+     * @return The queued upload
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized QueuedUpload append(final String uploadKey, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) throws IOException {
+        final QueuedUpload queuedUpload = new QueuedUpload(nextId++, System.currentTimeMillis(), uploadKey, suggestion, description, selectionValue, dependentValue, userValues);
+        write(channel, encodeEnqueue(queuedUpload));
+        channel.force(false);
+        dirty = false;
+        pending.put(queuedUpload.getId(), queuedUpload);
+        return queuedUpload;
+    }
+
+    /**
+     * Record that an upload is no longer pending
+     *
+     * The acknowledgement is not durable until {@link #sync()} is called.
+     *
+     * @param id The id of the queued upload
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void acknowledge(final long id) throws IOException {
+        if(pending.remove(id) == null) {
+            return;
+        }
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(9);
+        try(final DataOutputStream os = new DataOutputStream(record)) {
+            os.writeByte(ACK);
+            os.writeLong(id);
+        }
+        write(channel, record.toByteArray());
+        dirty = true;
+        acknowledged++;
+
+        if(acknowledged >= COMPACTION_THRESHOLD && acknowledged > pending.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Force any outstanding acknowledgements to disk
+     *
+     * @throws IOException if the journal cannot be forced
+     */
+    synchronized void sync() throws IOException {
+        if(dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * @return The pending uploads in the order that they were queued
+     */
+    synchronized List<QueuedUpload> pending() {
+        return Collections.unmodifiableList(new ArrayList<>(pending.values()));
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+            channel.close();
+        } finally {
+            //releases the lock
+            lockChannel.close();
+        }
+    }
+
+    private static void write(final FileChannel channel, final byte[] record) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH + record.length);
+        buffer.putInt(record.length);
+        buffer.putInt((int)crc.getValue());
+        buffer.put(record);
+        buffer.flip();
+
+        channel.position(channel.size());
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Replays the journal to rebuild the pending uploads,
+     * discarding any torn or corrupt records at the end of the journal
+     */
+    private void recover() throws IOException {
+        long validLength = 0;
+        channel.position(0);
+        final InputStream channelInputStream = Channels.newInputStream(channel);
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(channelInputStream));
+        while(true) {
+            final byte[] record;
+            try {
+                final int length = is.readInt();
+                final int expectedCrc = is.readInt();
+                if(length <= 0 || validLength + RECORD_HEADER_LENGTH + length > channel.size()) {
+                    break;
+                }
+                record = new byte[length];
+                is.readFully(record);
+
+                final CRC32 crc = new CRC32();
+                crc.update(record);
+                if((int)crc.getValue() != expectedCrc) {
+                    break;
+                }
+            } catch(final EOFException e) {
+                break;
+            }
+
+            apply(record);
+            validLength += RECORD_HEADER_LENGTH + record.length;
+        }
+
+        if(validLength < channel.size()) {
+            LOGGER.warn("Discarding {} bytes of incomplete records from upload journal: {}", channel.size() - validLength, journalFile);
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+
+        LOGGER.debug("Recovered {} pending uploads from journal: {}", pending.size(), journalFile);
+    }
+
+    private void apply(final byte[] record) throws IOException {
+        try(final DataInputStream is = new DataInputStream(new ByteArrayInputStream(record))) {
+            final byte type = is.readByte();
+            switch(type) {
+                case ENQUEUE:
+                    final QueuedUpload queuedUpload = decodeEnqueue(is);
+                    pending.put(queuedUpload.getId(), queuedUpload);
+                    nextId = Math.max(nextId, queuedUpload.getId() + 1);
+                    break;
+
+                case ACK:
+                    final long id = is.readLong();
+                    pending.remove(id);
+                    nextId = Math.max(nextId, id + 1);
+                    acknowledged++;
+                    break;
+
+                default:
+                    throw new IOException("Unknown record type in upload journal: " + type);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal so that it only contains the pending uploads
+     */
+    private void compact() throws IOException {
+        final Path compactedFile = journalFile.resolveSibling(journalFile.getFileName() + ".compact");
+        channel.force(false);
+        channel.close();
+
+        try {
+            try (final FileChannel compacted = FileChannel.open(compactedFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (final QueuedUpload queuedUpload : pending.values()) {
+                    write(compacted, encodeEnqueue(queuedUpload));
+                }
+                compacted.force(true);
+            }
+            Files.move(compactedFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // NOTE: if compaction failed, we continue to append to the uncompacted journal
+            this.channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        this.acknowledged = 0;
+        this.dirty = false;
+
+        LOGGER.debug("Compacted upload journal: {}, {} uploads pending", journalFile, pending.size());
+    }
+
+    private static byte[] encodeEnqueue(final QueuedUpload queuedUpload) throws IOException {
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try(final DataOutputStream os = new DataOutputStream(record)) {
+            os.writeByte(ENQUEUE);
+            os.writeLong(queuedUpload.getId());
+            os.writeLong(queuedUpload.getEnqueued());
+            writeString(os, queuedUpload.getUploadKey());
+            writeString(os, queuedUpload.getSuggestion());
+            writeString(os, queuedUpload.getDescription());
+            writeString(os, queuedUpload.getSelectionValue());
+            writeString(os, queuedUpload.getDependentValue());
+
+            final List<SuggestedAutocomplete.UserValue> userValues = queuedUpload.getUserValues();
+            if(userValues == null) {
+                os.writeInt(-1);
+            } else {
+                os.writeInt(userValues.size());
+                for(final SuggestedAutocomplete.UserValue userValue : userValues) {
+                    writeString(os, userValue.getName());
+                    writeString(os, userValue.getValue());
+                }
+            }
+        }
+        return record.toByteArray();
+    }
+
+    private static QueuedUpload decodeEnqueue(final DataInputStream is) throws IOException {
+        final long id = is.readLong();
+        final long enqueued = is.readLong();
+        final String uploadKey = readString(is);
+        final String suggestion = readString(is);
+        final String description = readString(is);
+        final String selectionValue = readString(is);
+        final String dependentValue = readString(is);
+
+        final int userValuesCount = is.readInt();
+        final List<SuggestedAutocomplete.UserValue> userValues;
+        if(userValuesCount == -1) {
+            userValues = null;
+        } else {
+            userValues = new ArrayList<>(userValuesCount);
+            for(int i = 0; i < userValuesCount; i++) {
+                userValues.add(new SuggestedAutocomplete.UserValue(readString(is), readString(is)));
+            }
+        }
+
+        return new QueuedUpload(id, enqueued, uploadKey, suggestion, description, selectionValue, dependentValue, userValues);
+    }
+
+    /**
+     * Writes a nullable string, unlike {@link DataOutputStream#writeUTF(String)}
+     * the length of the string is not limited to 64KB
+     */
+    private static void writeString(final DataOutputStream os, @Nullable final String str) throws IOException {
+        if(str == null) {
+            os.writeInt(-1);
+        } else {
+            final byte[] data = str.getBytes(StandardCharsets.UTF_8);
+            os.writeInt(data.length);
+            os.write(data);
+        }
+    }
+
+    @Nullable
+    private static String readString(final DataInputStream is) throws IOException {
+        final int length = is.readInt();
+        if(length == -1) {
+            return null;
+        }
+        final byte[] data = new byte[length];
+        is.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.queue;
+
+import org.humanistika.oxygen.tei.authorizer.SuggestedAutocomplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.authorizer.remote.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable queue of suggestions which could not be uploaded
+ * to the server, e.g. because the server was unreachable
+ *
+ * Queued uploads are persisted in an {@link UploadJournal}, and
+ * are replayed in the order that they were queued by a background
+ * worker. Whilst the server remains unreachable, or whilst it is
+ * unknown whether the server accepted an upload, the worker backs
+ * off exponentially between attempts.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class UploadQueue implements Closeable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UploadQueue.class);
+
+    private final static long INITIAL_RETRY_DELAY = TimeUnit.SECONDS.toMillis(2);
+    private final static long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+    private final static long SYNC_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Performs the upload of queued suggestions
+     */
+    @FunctionalInterface
+    public interface Uploader {
+        /**
+         * @param queuedUploads the uploads to perform, which all share the same upload key
+         *
+         * @return the responses from the server in the same order as the uploads, or null if
+         *     there is no longer any configuration for the uploads, in which case they remain queued
+         */
+        @Nullable List<Client.SuggestionResponse> upload(List<QueuedUpload> queuedUploads);
+    }
+
+    /**
+     * Notified when the server rejects a queued upload, or
+     * when the upload cannot be confirmed, in which case
+     * the upload remains queued, and the listener is only
+     * notified the first time that it cannot be confirmed
+     */
+    @FunctionalInterface
+    public interface RejectionListener {
+        void rejected(QueuedUpload queuedUpload, Client.SuggestionResponse suggestionResponse);
+    }
+
+    private final UploadJournal journal;
+    private final Uploader uploader;
+    private final RejectionListener rejectionListener;
+    private final long initialRetryDelay;
+    private final long maxRetryDelay;
+    private final ScheduledExecutorService worker;
+
+    /**
+     * Ids of the uploads which could not be confirmed, only accessed by the worker
+     */
+    private final Set<Long> unconfirmed = new HashSet<>();
+    private long retryDelay;
+    @Nullable private ScheduledFuture<?> scheduledReplay;
+
+    public UploadQueue(final Path journalFile, final Uploader uploader, final RejectionListener rejectionListener) throws IOException {
+        this(journalFile, uploader, rejectionListener, INITIAL_RETRY_DELAY, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Used for injecting shorter retry delays in unit tests
+     */
+    UploadQueue(final Path journalFile, final Uploader uploader, final RejectionListener rejectionListener, final long initialRetryDelay, final long maxRetryDelay) throws IOException {
+        this.journal = new UploadJournal(journalFile);
+        this.uploader = uploader;
+        this.rejectionListener = rejectionListener;
+        this.initialRetryDelay = initialRetryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.retryDelay = initialRetryDelay;
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "tei-authorizer-upload-queue");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        worker.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+
+        if(journal.size() > 0) {
+            LOGGER.info("{} queued uploads are waiting to be sent to the server", journal.size());
+            scheduleReplay(0);
+        }
+    }
+
+    /**
+     * Get the key which identifies the configuration of an upload
+     * across restarts and reloads of the configuration
+     *
+     * @param uploadInfo The upload configuration
+     *
+     * @return The key, see {@link UploadInfo#getKey()}
+     */
+    public static String uploadKey(final UploadInfo uploadInfo) {
+        return uploadInfo.getKey();
+    }
+
+    /**
+     * Queue a suggestion for uploading to the server
+     *
+     * The suggestion is persisted before this method returns.
+     *
+     * @throws IOException if the suggestion cannot be persisted
+     */
+    public QueuedUpload enqueue(final UploadInfo uploadInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) throws IOException {
+        final QueuedUpload queuedUpload = journal.append(uploadKey(uploadInfo), suggestion, description, selectionValue, dependentValue, userValues);
+        LOGGER.info("Queued suggestion '{}' for upload when the server is reachable", suggestion);
+        synchronized(this) {
+            if(scheduledReplay == null) {
+                scheduleReplay(retryDelay);
+            }
+        }
+        return queuedUpload;
+    }
+
+    /**
+     * Attempt to upload the queued uploads now, rather than waiting
+     * for the next scheduled attempt, e.g. because the configuration
+     * of uploads which were kept in the queue may have changed
+     */
+    public synchronized void retry() {
+        if(journal.size() == 0) {
+            return;
+        }
+        if(scheduledReplay != null && !scheduledReplay.cancel(false)) {
+            //the replay is already in progress
+            return;
+        }
+        retryDelay = initialRetryDelay;
+        scheduleReplay(0);
+    }
+
+    /**
+     * @return The number of uploads waiting to be sent
+     */
+    public int size() {
+        return journal.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        worker.shutdownNow();
+        journal.close();
+    }
+
+    private synchronized void scheduleReplay(final long delay) {
+        scheduledReplay = worker.schedule(this::replay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Attempts to upload each of the queued uploads in order,
+     * stopping after the first run of uploads which fails due to a
+     * transient problem, in which case a further attempt is scheduled.
+     * Uploads for which there is no longer any configuration are kept
+     * in the queue, and are attempted again by the next replay.
+     *
+     * Consecutive uploads which share the same upload configuration
+     * are handed to the uploader together, so that they may be
+     * coalesced into a single request.
+     */
+    private void replay() {
+        synchronized(this) {
+            scheduledReplay = null;
+        }
+
+        final List<QueuedUpload> pending = journal.pending();
+        int start = 0;
+        while(start < pending.size()) {
+            final String uploadKey = pending.get(start).getUploadKey();
+            int end = start + 1;
+            while(end < pending.size() && pending.get(end).getUploadKey().equals(uploadKey)) {
+                end++;
+            }
+
+            if(!replayRun(pending.subList(start, end))) {
+                backoff();
+                return;
+            }
+            start = end;
+        }
+
+        synchronized(this) {
+            retryDelay = initialRetryDelay;
+        }
+    }
+
+    /**
+     * Uploads a run of queued uploads which share the same upload key
+     *
+     * If the uploader fails unexpectedly, the uploads of the run are
+     * attempted one at a time, so that only an upload which can never
+     * be performed is rejected, rather than it blocking the queue.
+     *
+     * An upload which is retryable, or which cannot be confirmed,
+     * remains queued and is attempted again after backing off.
+     *
+     * @return false if any of the uploads should be retried later
+     */
+    private boolean replayRun(final List<QueuedUpload> queuedUploads) {
+        List<Client.SuggestionResponse> suggestionResponses;
+        try {
+            suggestionResponses = uploader.upload(queuedUploads);
+        } catch(final RuntimeException e) {
+            if(queuedUploads.size() > 1) {
+                LOGGER.warn("Unable to replay " + queuedUploads.size() + " queued uploads together, replaying them one at a time: " + e.getMessage(), e);
+                boolean complete = true;
+                for(final QueuedUpload queuedUpload : queuedUploads) {
+                    complete &= replayRun(Collections.singletonList(queuedUpload));
+                }
+                return complete;
+            }
+            LOGGER.error("Unable to replay queued upload of suggestion '" + queuedUploads.get(0).getSuggestion() + "': " + e.getMessage(), e);
+            suggestionResponses = Collections.singletonList(new Client.SuggestionResponse(false, e.getMessage()));
+        }
+
+        if(suggestionResponses == null) {
+            LOGGER.warn("Keeping {} queued uploads as there is no longer any configuration for: {}", queuedUploads.size(), queuedUploads.get(0).getUploadKey());
+            return true;
+        }
+
+        boolean complete = true;
+        for(int i = 0; i < queuedUploads.size(); i++) {
+            final QueuedUpload queuedUpload = queuedUploads.get(i);
+            final Client.SuggestionResponse suggestionResponse = suggestionResponses.get(i);
+
+            if(suggestionResponse.isSuccess()) {
+                LOGGER.info("Uploaded queued suggestion '{}'", queuedUpload.getSuggestion());
+            } else if(suggestionResponse.isRetryable()) {
+                complete = false;
+                continue;
+            } else if(suggestionResponse.isUnconfirmed()) {
+                //the server may not have accepted it, so it is kept and attempted again after backing off
+                complete = false;
+                if(unconfirmed.add(queuedUpload.getId())) {
+                    LOGGER.error("Unable to confirm upload of queued suggestion '{}': {}", queuedUpload.getSuggestion(), suggestionResponse.getMessage());
+                    rejectionListener.rejected(queuedUpload, suggestionResponse);
+                } else {
+                    LOGGER.debug("Still unable to confirm upload of queued suggestion '{}': {}", queuedUpload.getSuggestion(), suggestionResponse.getMessage());
+                }
+                continue;
+            } else {
+                LOGGER.error("Server rejected queued suggestion '{}': {}", queuedUpload.getSuggestion(), suggestionResponse.getMessage());
+                rejectionListener.rejected(queuedUpload, suggestionResponse);
+            }
+            unconfirmed.remove(queuedUpload.getId());
+
+            try {
+                journal.acknowledge(queuedUpload.getId());
+            } catch(final IOException e) {
+                LOGGER.error("Unable to acknowledge queued upload in journal: " + e.getMessage(), e);
+            }
+        }
+        return complete;
+    }
+
+    private synchronized void backoff() {
+        LOGGER.debug("Retrying {} queued uploads in {}ms", journal.size(), retryDelay);
+        scheduleReplay(retryDelay);
+        retryDelay = Math.min(retryDelay * 2, maxRetryDelay);
+    }
+
+    private void sync() {
+        try {
+            journal.sync();
+        } catch(final IOException e) {
+            LOGGER.error("Unable to sync upload journal: " + e.getMessage(), e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
 import javax.annotation.Nullable;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * TEI Authorizer Client interface extends the TEI Completer Client interface
@@ -39,10 +40,22 @@ public interface Client extends org.humanistika.oxygen.tei.completer.remote.Clie
     class SuggestionResponse {
         private final boolean success;
         @Nullable private final String message;
+        private final boolean retryable;
+        private final boolean unconfirmed;
 
         public SuggestionResponse(boolean success, @Nullable String message) {
+            this(success, message, false);
+        }
+
+        public SuggestionResponse(boolean success, @Nullable String message, boolean retryable) {
+            this(success, message, retryable, false);
+        }
+
+        public SuggestionResponse(boolean success, @Nullable String message, boolean retryable, boolean unconfirmed) {
             this.success = success;
             this.message = message;
+            this.retryable = retryable;
+            this.unconfirmed = unconfirmed;
         }
 
         public boolean isSuccess() {
@@ -52,6 +65,71 @@ public interface Client extends org.humanistika.oxygen.tei.completer.remote.Clie
         @Nullable public String getMessage() {
             return message;
         }
+
+        /**
+         * Indicates whether a failed upload may succeed
+         * if it is retried later, e.g. because the server
+         * could not be reached
+         *
+         * @return true if the upload failed due to a transient problem
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * Indicates that a failed upload was sent, but the
+         * response of the server could not be understood, so
+         * it is unknown whether the server accepted it
+         *
+         * @return true if the outcome of the upload is unknown
+         */
+        public boolean isUnconfirmed() {
+            return unconfirmed;
+        }
+    }
+
+    /**
+     * A suggestion to be uploaded to the server
+     */
+    class SuggestionUpload {
+        private final String suggestion;
+        @Nullable private final String description;
+        @Nullable private final String selectionValue;
+        @Nullable private final String dependentValue;
+        @Nullable private final List<SuggestedAutocomplete.UserValue> userValues;
+
+        public SuggestionUpload(final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+            this.suggestion = suggestion;
+            this.description = description;
+            this.selectionValue = selectionValue;
+            this.dependentValue = dependentValue;
+            this.userValues = userValues;
+        }
+
+        public String getSuggestion() {
+            return suggestion;
+        }
+
+        @Nullable
+        public String getDescription() {
+            return description;
+        }
+
+        @Nullable
+        public String getSelectionValue() {
+            return selectionValue;
+        }
+
+        @Nullable
+        public String getDependentValue() {
+            return dependentValue;
+        }
+
+        @Nullable
+        public List<SuggestedAutocomplete.UserValue> getUserValues() {
+            return userValues;
+        }
     }
 
     /**
@@ -67,5 +145,38 @@ public interface Client extends org.humanistika.oxygen.tei.completer.remote.Clie
      * @return A response to the suggestion from the server
      */
     SuggestionResponse uploadSuggestion(final UploadInfo uploadInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues);
-}
 
+    /**
+     * Upload an autocomplete suggestion to the server
+     * in the background
+     *
+     * The calling thread never waits on the network,
+     * the upload is performed by a background executor.
+     *
+     * @param uploadInfo The base details for the upload
+     * @param suggestion The suggestion
+     * @param description The description of the suggestion or null
+     * @param selectionValue The value of the selection or null
+     * @param dependentValue The value of the dependent or null
+     * @param userValues The user specified values or null
+     *
+     * @return A future which is completed with the response to the suggestion from the server
+     */
+    CompletableFuture<SuggestionResponse> uploadSuggestionAsync(final UploadInfo uploadInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues);
+
+    /**
+     * Upload several autocomplete suggestions to the server
+     *
+     * If the upload has a batch endpoint configured, the suggestions
+     * are sent together in as few requests as possible, otherwise
+     * they are uploaded one at a time. Once the server is found to be
+     * unreachable no further requests are attempted, and the remaining
+     * suggestions receive the same retryable response.
+     *
+     * @param uploadInfo The base details for the upload
+     * @param suggestionUploads The suggestions
+     *
+     * @return A response for each suggestion, in the same order as the suggestions
+     */
+    List<SuggestionResponse> uploadSuggestions(final UploadInfo uploadInfo, final List<? extends SuggestionUpload> suggestionUploads);
+}
@@ -0,0 +1,182 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codecs for compressing the body of a request
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+final class BodyCodecs {
+    private final static Logger LOGGER = LoggerFactory.getLogger(BodyCodecs.class);
+
+    /**
+     * A codec for compressing the body of a request
+     */
+    interface BodyCodec {
+        /**
+         * @return The value for the Content-Encoding header
+         */
+        String getContentEncoding();
+
+        /**
+         * Wrap a stream so that anything written to it is encoded
+         *
+         * @param os The stream to write the encoded body to
+         * @param level The compression level, or null for the default level
+         *
+         * @return The stream to write the body to
+         */
+        OutputStream encode(OutputStream os, @Nullable Integer level) throws IOException;
+    }
+
+    static final BodyCodec GZIP = new BodyCodec() {
+        @Override
+        public String getContentEncoding() {
+            return "gzip";
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream os, @Nullable final Integer level) throws IOException {
+            return new GZIPOutputStream(os) {
+                {
+                    def.setLevel(level == null ? Deflater.DEFAULT_COMPRESSION : level);
+                }
+            };
+        }
+    };
+
+    static final BodyCodec DEFLATE = new BodyCodec() {
+        @Override
+        public String getContentEncoding() {
+            return "deflate";
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream os, @Nullable final Integer level) {
+            final Deflater deflater = new Deflater(level == null ? Deflater.DEFAULT_COMPRESSION : level);
+            return new DeflaterOutputStream(os, deflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    /**
+     * Zstandard codec, or null if zstd-jni is not on the classpath
+     */
+    @Nullable static final BodyCodec ZSTD = zstd();
+
+    /**
+     * GZip codec used in place of Zstandard when it is not available
+     *
+     * The configured level is a Zstandard level (1-22) which is not
+     * a valid GZip level, so the default GZip level is used instead.
+     */
+    private static final BodyCodec ZSTD_FALLBACK = new BodyCodec() {
+        @Override
+        public String getContentEncoding() {
+            return GZIP.getContentEncoding();
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream os, @Nullable final Integer level) throws IOException {
+            return GZIP.encode(os, null);
+        }
+    };
+
+    private BodyCodecs() {
+    }
+
+    /**
+     * Get the codec for an encoding
+     *
+     * @param encoding The encoding
+     *
+     * @return The codec, or null if the body should not be encoded
+     */
+    @Nullable
+    static BodyCodec get(final BodyInfo.Encoding encoding) {
+        switch (encoding) {
+            case GZIP:
+                return GZIP;
+
+            case DEFLATE:
+                return DEFLATE;
+
+            case ZSTD:
+                return ZSTD != null ? ZSTD : ZSTD_FALLBACK;
+
+            case NONE:
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static BodyCodec zstd() {
+        final Constructor<?> constructor;
+        try {
+            constructor = Class.forName("com.github.luben.zstd.ZstdOutputStream").getConstructor(OutputStream.class, int.class);
+        } catch (final ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            LOGGER.info("Zstandard is not available, ZSTD encoded uploads will use GZip instead");
+            return null;
+        }
+
+        return new BodyCodec() {
+            @Override
+            public String getContentEncoding() {
+                return "zstd";
+            }
+
+            @Override
+            public OutputStream encode(final OutputStream os, @Nullable final Integer level) throws IOException {
+                try {
+                    return (OutputStream) constructor.newInstance(os, level == null ? 3 : level);
+                } catch (final InvocationTargetException e) {
+                    throw new IOException(e.getCause().getMessage(), e.getCause());
+                } catch (final InstantiationException | IllegalAccessException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+        };
+    }
+}
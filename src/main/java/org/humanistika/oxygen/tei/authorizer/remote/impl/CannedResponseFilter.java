@@ -0,0 +1,57 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Answers a request with a canned response instead of
+ * sending it to the server, if the request has one
+ *
+ * This allows a response to be read through the providers of
+ * a client, without a server, so that they can be initialized
+ * before the first real request.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class CannedResponseFilter implements ClientRequestFilter {
+
+    /**
+     * Request property holding the body of the canned response,
+     * which is of the first media type accepted by the request
+     */
+    static final String PROPERTY = CannedResponseFilter.class.getName();
+
+    @Override
+    public void filter(final ClientRequestContext requestContext) {
+        final Object entity = requestContext.getProperty(PROPERTY);
+        if (!(entity instanceof String)) {
+            return;
+        }
+
+        final MediaType mediaType = requestContext.getAcceptableMediaTypes().isEmpty() ? MediaType.APPLICATION_XML_TYPE : requestContext.getAcceptableMediaTypes().get(0);
+        requestContext.abortWith(Response.ok(entity, mediaType).build());
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses the body of an upload request using the
+ * codec and level from the {@link BodyInfo} of the request
+ *
+ * The Content-Encoding header of the request is set before the
+ * request is sent, whilst writing the body the header is hidden from
+ * Jersey's own content encoders so that the body is only encoded once.
+ * This interceptor must therefore be registered with a higher priority
+ * than {@link javax.ws.rs.Priorities#ENTITY_CODER}.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class CompressionInterceptor implements WriterInterceptor {
+
+    /**
+     * Request property holding the {@link BodyInfo} of the request
+     */
+    static final String BODY_INFO_PROPERTY = CompressionInterceptor.class.getName() + ".bodyInfo";
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final Object bodyInfo = context.getProperty(BODY_INFO_PROPERTY);
+        final Object contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        final BodyCodecs.BodyCodec codec = bodyInfo instanceof BodyInfo ? BodyCodecs.get(((BodyInfo) bodyInfo).getEncoding()) : null;
+        if (codec == null || !codec.getContentEncoding().equals(contentEncoding)) {
+            context.proceed();
+            return;
+        }
+
+        context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        final EncodingOutputStream os = new EncodingOutputStream(context, codec, ((BodyInfo) bodyInfo).getLevel());
+        context.setOutputStream(os);
+        context.proceed();
+        os.finish();
+    }
+
+    /**
+     * Restores the Content-Encoding header and starts
+     * encoding when the body is first written
+     */
+    private static class EncodingOutputStream extends OutputStream {
+        private final WriterInterceptorContext context;
+        private final OutputStream out;
+        private final BodyCodecs.BodyCodec codec;
+        @Nullable private final Integer level;
+
+        @Nullable private OutputStream encoded;
+        private boolean finished;
+
+        private EncodingOutputStream(final WriterInterceptorContext context, final BodyCodecs.BodyCodec codec, @Nullable final Integer level) {
+            this.context = context;
+            this.out = context.getOutputStream();
+            this.codec = codec;
+            this.level = level;
+        }
+
+        private OutputStream encoded() throws IOException {
+            if (encoded == null) {
+                // NOTE: nothing has been written to the underlying stream yet, so the headers have not been committed
+                context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+                encoded = codec.encode(new UnclosableOutputStream(out), level);
+            }
+            return encoded;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            encoded().write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            encoded().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (encoded != null) {
+                encoded.flush();
+            }
+        }
+
+        /**
+         * Write any pending encoded data to the
+         * underlying stream, without closing it
+         */
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            encoded().close();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Allows a codec to write its trailer on close, without
+     * closing the underlying stream
+     */
+    private static class UnclosableOutputStream extends FilterOutputStream {
+        private UnclosableOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
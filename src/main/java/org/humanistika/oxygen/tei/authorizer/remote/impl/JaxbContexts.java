@@ -0,0 +1,86 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide cache of JAXB Contexts
+ *
+ * Creating a JAXBContext is expensive as it involves
+ * reflecting over the bound classes, whereas a JAXBContext
+ * is thread-safe and so may be shared.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public final class JaxbContexts {
+    private final static ConcurrentMap<Class<?>, JAXBContext> XML_CONTEXTS = new ConcurrentHashMap<>();
+    private final static ConcurrentMap<Class<?>, JAXBContext> MOXY_CONTEXTS = new ConcurrentHashMap<>();
+
+    private JaxbContexts() {
+    }
+
+    /**
+     * Get a JAXBContext from the default JAXB provider
+     *
+     * @param clazz The class to bind
+     *
+     * @return The JAXBContext for the class
+     *
+     * @throws JAXBException if the context cannot be created
+     */
+    public static JAXBContext getContext(final Class<?> clazz) throws JAXBException {
+        JAXBContext context = XML_CONTEXTS.get(clazz);
+        if(context == null) {
+            context = JAXBContext.newInstance(clazz);
+            final JAXBContext existing = XML_CONTEXTS.putIfAbsent(clazz, context);
+            if(existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Get a JAXBContext from the EclipseLink MOXy JAXB provider
+     *
+     * @param clazz The class to bind
+     *
+     * @return The MOXy JAXBContext for the class
+     *
+     * @throws JAXBException if the context cannot be created
+     */
+    public static JAXBContext getMoxyContext(final Class<?> clazz) throws JAXBException {
+        JAXBContext context = MOXY_CONTEXTS.get(clazz);
+        if(context == null) {
+            context = org.eclipse.persistence.jaxb.JAXBContextFactory.createContext(new Class[]{clazz}, null);
+            final JAXBContext existing = MOXY_CONTEXTS.putIfAbsent(clazz, context);
+            if(existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+}
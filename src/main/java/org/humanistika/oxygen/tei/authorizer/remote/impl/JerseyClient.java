@@ -19,12 +19,21 @@
  */
 package org.humanistika.oxygen.tei.authorizer.remote.impl;
 
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.Xslt30Transformer;
+import net.sf.saxon.s9api.XsltExecutable;
 import org.eclipse.persistence.jaxb.MarshallerProperties;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.humanistika.ns.tei_authorizer.Suggestion;
+import org.humanistika.ns.tei_authorizer.SuggestionResult;
+import org.humanistika.ns.tei_authorizer.SuggestionResults;
+import org.humanistika.ns.tei_authorizer.Suggestions;
 import org.humanistika.ns.tei_authorizer.UserValue;
 import org.humanistika.ns.tei_authorizer.UserValues;
 import org.humanistika.oxygen.tei.authorizer.SuggestedAutocomplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BatchInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
 import org.humanistika.oxygen.tei.authorizer.remote.Client;
@@ -35,24 +44,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ro.sync.net.protocol.http.HttpExceptionWithDetails;
 
+import javax.ws.rs.Priorities;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.*;
-import javax.xml.bind.JAXBContext;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.bind.util.JAXBSource;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.net.SocketException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.net.UnknownHostException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Server client implemented using Jersey
@@ -64,32 +84,97 @@ import java.util.Map;
 public class JerseyClient extends org.humanistika.oxygen.tei.completer.remote.impl.JerseyClient implements Client {
     private final static Logger LOGGER = LoggerFactory.getLogger(JerseyClient.class);
 
+    /**
+     * Executor shared by all clients for performing uploads in the background
+     */
+    private final static ExecutorService UPLOAD_EXECUTOR = Executors.newCachedThreadPool(new UploadThreadFactory());
+
+    /**
+     * Estimated number of bytes that the markup of each field adds to the body of an upload
+     */
+    private final static int ESTIMATED_FIELD_OVERHEAD = 32;
+
+    /**
+     * Target of the requests which are answered by the {@link CannedResponseFilter}, it is never contacted
+     */
+    private final static String CANNED_RESPONSE_URI = "http://localhost/";
+
+    /**
+     * Maximum number of idle marshallers retained by each pool
+     */
+    private final static int MAX_IDLE_MARSHALLERS = 4;
+
+    private final MarshallerPool xmlMarshallers = new MarshallerPool(() -> JaxbContexts.getContext(Suggestions.class).createMarshaller(), MAX_IDLE_MARSHALLERS);
+    private final MarshallerPool jsonMarshallers = new MarshallerPool(this::newJsonMarshaller, MAX_IDLE_MARSHALLERS);
+    private final UploadBatcher uploadBatcher = new UploadBatcher(this::uploadSuggestions, UPLOAD_EXECUTOR);
+
     public JerseyClient(final ClientFactory.AuthenticationType authenticationType) {
         super(authenticationType);
+        client.register(CompressionInterceptor.class, Priorities.ENTITY_CODER - 100);
+        client.register(MetricsInterceptor.class, Priorities.ENTITY_CODER - 200);
+        client.register(CannedResponseFilter.class);
+    }
+
+    /**
+     * Initializes the Jersey runtime of this client, the JAXB contexts used
+     * for marshalling uploads, and the providers which read the results of
+     * batch uploads, so that they are not initialized by its first request
+     *
+     * The providers are initialized by reading a canned XML and JSON response
+     * through this client, no request is sent to a server.
+     *
+     * @throws JAXBException if the JAXB contexts cannot be created
+     */
+    public void preInitialize() throws JAXBException {
+        if(client instanceof org.glassfish.jersey.client.JerseyClient) {
+            ((org.glassfish.jersey.client.JerseyClient)client).preInitialize();
+        }
+        JaxbContexts.getContext(Suggestions.class);
+        JaxbContexts.getMoxyContext(Suggestions.class);
+
+        try {
+            readCannedResponse(MediaType.APPLICATION_XML_TYPE, "<suggestionResults xmlns=\"http://humanistika.org/ns/tei-authorizer\"/>");
+            readCannedResponse(MediaType.APPLICATION_JSON_TYPE, "{}");
+        } catch(final ProcessingException e) {
+            throw new JAXBException("Unable to read the results of a batch upload: " + e.getMessage(), e);
+        }
+    }
+
+    private void readCannedResponse(final MediaType mediaType, final String entity) {
+        final Response response = client
+                .target(CANNED_RESPONSE_URI)
+                .request(mediaType)
+                .property(CannedResponseFilter.PROPERTY, entity)
+                .get();
+        try {
+            response.readEntity(SuggestionResults.class);
+        } finally {
+            response.close();
+        }
     }
 
     /**
-     * Used for injecting a test client
-     * in unit tests
+     * Used for injecting a pooled client from the
+     * factory, or a test client in unit tests
      */
     JerseyClient(final ClientFactory.AuthenticationType authenticationType, final javax.ws.rs.client.Client client) {
         super(authenticationType, client);
+        client.register(CompressionInterceptor.class, Priorities.ENTITY_CODER - 100);
+        client.register(MetricsInterceptor.class, Priorities.ENTITY_CODER - 200);
+        client.register(CannedResponseFilter.class);
     }
 
     @Override
     public SuggestionResponse uploadSuggestion(final UploadInfo uploadInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+        final UploadMetrics uploadMetrics = new UploadMetrics(uploadInfo.getConfiguredUrl());
         try {
+            final long urlStart = System.nanoTime();
             final URL url = getUrl(uploadInfo, suggestion, description, selectionValue, dependentValue);
+            uploadMetrics.urlBuilt(urlStart);
 
-            Invocation.Builder requestBuilder = client
+            Invocation.Builder requestBuilder = authenticate(client
                     .target(url.toURI())
-                    .request();
-
-            if (uploadInfo.getAuthentication() != null) {
-                requestBuilder = requestBuilder
-                        .property(HttpAuthenticationFeature.HTTP_AUTHENTICATION_USERNAME, uploadInfo.getAuthentication().getUsername())
-                        .property(HttpAuthenticationFeature.HTTP_AUTHENTICATION_PASSWORD, uploadInfo.getAuthentication().getPassword());
-            }
+                    .request(), uploadInfo);
 
             //prepare the body for the request
             final BodyInfo bodyInfo = uploadInfo.getBodyInfo();
@@ -97,49 +182,21 @@ public class JerseyClient extends org.humanistika.oxygen.tei.completer.remote.im
             if (bodyInfo == null) {
                 entity = null;
             } else {
+                final String contentEncoding = getContentEncoding(bodyInfo, estimateSize(suggestion, description, selectionValue, dependentValue, userValues));
                 switch (bodyInfo.getBodyType()) {
                     case XML:
-                        final Suggestion xml = getSuggestion(suggestion, description, bodyInfo.isIncludeSelection() ? selectionValue : null, bodyInfo.isIncludeDependent() ? dependentValue : null, userValues);
-                        final Path xmlTransformation = bodyInfo.getTransformation();
-                        final Variant xmlVariant = new Variant(MediaType.APPLICATION_XML_TYPE, (String) null, bodyInfo.getEncoding() == BodyInfo.Encoding.GZIP ? "gzip" : null);
-                        if (xmlTransformation == null) {
-                            entity = Entity.entity(xml, xmlVariant);
-                        } else {
-                            LOGGER.debug("Transforming XML upload to: {} using: {}", url, xmlTransformation);
-                            entity = Entity.entity(transformXmlUpload(xml, xmlTransformation), xmlVariant);
-                        }
-                        break;
-
                     case JSON:
-                        final Suggestion json = getSuggestion(suggestion, description, bodyInfo.isIncludeSelection() ? selectionValue : null, bodyInfo.isIncludeDependent() ? dependentValue : null, userValues);
-                        final Path jsonTransformation = bodyInfo.getTransformation();
-                        final Variant jsonVariant = new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, bodyInfo.getEncoding() == BodyInfo.Encoding.GZIP ? "gzip" : null);
-                        if (jsonTransformation == null) {
-                            entity = Entity.entity(json, jsonVariant);
-                        } else {
-                            LOGGER.debug("Transforming JSON upload to: {} using: {}", url, jsonTransformation);
-                            entity = Entity.entity(transformJsonUpload(json, jsonTransformation), jsonVariant);
+                        final Suggestion body = getSuggestion(suggestion, description, bodyInfo.isIncludeSelection() ? selectionValue : null, bodyInfo.isIncludeDependent() ? dependentValue : null, userValues);
+                        entity = getEntity(body, bodyInfo, contentEncoding, url, uploadMetrics);
+                        if (bodyInfo.getTransformation() != null) {
+                            requestBuilder = requestBuilder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
                         }
                         break;
 
                     case FORM:
                         final MultivaluedMap<String, String> formData = new MultivaluedHashMap<>();
-                        formData.putSingle("suggestion", suggestion);
-                        if (description != null) {
-                            formData.putSingle("description", description);
-                        }
-                        if (bodyInfo.isIncludeSelection() && selectionValue != null) {
-                            formData.putSingle("selectionValue", selectionValue);
-                        }
-                        if (bodyInfo.isIncludeDependent() && dependentValue != null) {
-                            formData.putSingle("dependentValue", dependentValue);
-                        }
-                        if (userValues != null) {
-                            for (final SuggestedAutocomplete.UserValue userValue : userValues) {
-                                formData.putSingle(userValue.getName(), userValue.getValue());
-                            }
-                        }
-                        final Variant formVariant = new Variant(MediaType.APPLICATION_FORM_URLENCODED_TYPE, (String) null, bodyInfo.getEncoding() == BodyInfo.Encoding.GZIP ? "gzip" : null);
+                        addFormData(formData, "", bodyInfo, suggestion, description, selectionValue, dependentValue, userValues);
+                        final Variant formVariant = new Variant(MediaType.APPLICATION_FORM_URLENCODED_TYPE, (String) null, contentEncoding);
                         entity = Entity.entity(new Form(formData), formVariant);
                         break;
 
@@ -148,39 +205,379 @@ public class JerseyClient extends org.humanistika.oxygen.tei.completer.remote.im
                 }
             }
 
-            final Response response;
-            switch (uploadInfo.getMethod()) {
-                case PUT:
-                    response = requestBuilder.put(entity);
-                    break;
-
-                case POST:
-                default:
-                    response = requestBuilder.post(entity);
-                    break;
+            if (bodyInfo != null) {
+                requestBuilder = requestBuilder.property(CompressionInterceptor.BODY_INFO_PROPERTY, bodyInfo);
             }
+            requestBuilder = requestBuilder.property(UploadMetrics.PROPERTY, uploadMetrics);
 
-            final Response.StatusType statusInfo = response.getStatusInfo();
-            if (statusInfo.getFamily() == Response.Status.Family.SUCCESSFUL) {
-                return new SuggestionResponse(true, null);
-            } else {
-                LOGGER.error("Unable to upload suggestion to server: {}", statusInfo.getReasonPhrase());
-                return new SuggestionResponse(false, statusInfo.getReasonPhrase());
+            final long sendStart = System.nanoTime();
+            final Response response = send(requestBuilder, uploadInfo.getMethod(), entity);
+            try {
+                uploadMetrics.sent(sendStart, response);
+
+                final Response.StatusType statusInfo = response.getStatusInfo();
+                if (statusInfo.getFamily() == Response.Status.Family.SUCCESSFUL) {
+                    return new SuggestionResponse(true, null);
+                } else {
+                    LOGGER.error("Unable to upload suggestion to server: {}", statusInfo.getReasonPhrase());
+                    return new SuggestionResponse(false, statusInfo.getReasonPhrase(), isTransientStatus(statusInfo.getStatusCode()));
+                }
+            } finally {
+                //releases the pooled connection
+                response.close();
             }
         } catch (final ProcessingException e) {
+            uploadMetrics.failed();
             LOGGER.error(e.getMessage(), e);
 //            if(e.getCause() instanceof HttpExceptionWithDetails) {
 //                final HttpExceptionWithDetails httpEx = ((HttpExceptionWithDetails)e.getCause());
 //                return new SuggestionResponse(false, "HTTP " + httpEx.getReasonCode() + " " + httpEx.getReason());
 //            } else {
-                return new SuggestionResponse(false, e.getMessage());
+                return new SuggestionResponse(false, e.getMessage(), isConnectionFailure(e));
 //            }
         } catch (final URISyntaxException | IOException | TransformationException e) {
+            uploadMetrics.failed();
             LOGGER.error(e.getMessage(), e);
             return new SuggestionResponse(false, e.getMessage());
         }
     }
 
+    @Override
+    public List<SuggestionResponse> uploadSuggestions(final UploadInfo uploadInfo, final List<? extends SuggestionUpload> suggestionUploads) {
+        final BatchInfo batchInfo = uploadInfo.getBatchInfo();
+        final int batchSize = batchInfo == null ? 1 : Math.max(1, batchInfo.getMaxSize());
+
+        final List<SuggestionResponse> suggestionResponses = new ArrayList<>(suggestionUploads.size());
+        for (int start = 0; start < suggestionUploads.size(); start += batchSize) {
+            final List<? extends SuggestionUpload> batch = suggestionUploads.subList(start, Math.min(start + batchSize, suggestionUploads.size()));
+
+            final List<SuggestionResponse> batchResponses;
+            if (batchInfo == null) {
+                final SuggestionUpload suggestionUpload = batch.get(0);
+                batchResponses = Collections.singletonList(uploadSuggestion(uploadInfo, suggestionUpload.getSuggestion(), suggestionUpload.getDescription(), suggestionUpload.getSelectionValue(), suggestionUpload.getDependentValue(), suggestionUpload.getUserValues()));
+            } else {
+                batchResponses = uploadBatch(uploadInfo, batchInfo, batch);
+            }
+            suggestionResponses.addAll(batchResponses);
+
+            //if the server is unreachable, there is no point in attempting the remaining suggestions
+            if (isUnreachable(batchResponses)) {
+                final SuggestionResponse unreachable = batchResponses.get(0);
+                while (suggestionResponses.size() < suggestionUploads.size()) {
+                    suggestionResponses.add(unreachable);
+                }
+                break;
+            }
+        }
+        return suggestionResponses;
+    }
+
+    /**
+     * Upload a batch of suggestions to the batch endpoint of the server
+     *
+     * @param uploadInfo The base details for the upload
+     * @param batchInfo The details of the batch endpoint
+     * @param batch The suggestions to upload
+     *
+     * @return A response for each suggestion in the batch
+     */
+    private List<SuggestionResponse> uploadBatch(final UploadInfo uploadInfo, final BatchInfo batchInfo, final List<? extends SuggestionUpload> batch) {
+        final UploadMetrics uploadMetrics = new UploadMetrics(batchInfo.getConfiguredUrl());
+        try {
+            final long urlStart = System.nanoTime();
+            final URL url = batchInfo.getUrl();
+            uploadMetrics.urlBuilt(urlStart);
+
+            Invocation.Builder requestBuilder = authenticate(client
+                    .target(url.toURI())
+                    .request(MediaType.APPLICATION_XML_TYPE, MediaType.APPLICATION_JSON_TYPE), uploadInfo);
+
+            //prepare the body for the request, a batch always has a body, so defaults to XML
+            final BodyInfo bodyInfo = uploadInfo.getBodyInfo() != null ? uploadInfo.getBodyInfo() : new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+            int estimatedSize = 0;
+            for (final SuggestionUpload suggestionUpload : batch) {
+                estimatedSize += estimateSize(suggestionUpload.getSuggestion(), suggestionUpload.getDescription(), suggestionUpload.getSelectionValue(), suggestionUpload.getDependentValue(), suggestionUpload.getUserValues());
+            }
+            final String contentEncoding = getContentEncoding(bodyInfo, estimatedSize);
+            final Entity<?> entity;
+            switch (bodyInfo.getBodyType()) {
+                case XML:
+                case JSON:
+                    final Suggestions body = new Suggestions();
+                    for (final SuggestionUpload suggestionUpload : batch) {
+                        body.getSuggestion().add(getSuggestion(suggestionUpload.getSuggestion(), suggestionUpload.getDescription(), bodyInfo.isIncludeSelection() ? suggestionUpload.getSelectionValue() : null, bodyInfo.isIncludeDependent() ? suggestionUpload.getDependentValue() : null, suggestionUpload.getUserValues()));
+                    }
+                    entity = getEntity(body, bodyInfo, contentEncoding, url, uploadMetrics);
+                    if (bodyInfo.getTransformation() != null) {
+                        requestBuilder = requestBuilder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+                    }
+                    break;
+
+                case FORM:
+                    final MultivaluedMap<String, String> formData = new MultivaluedHashMap<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        final SuggestionUpload suggestionUpload = batch.get(i);
+                        addFormData(formData, "[" + i + "]", bodyInfo, suggestionUpload.getSuggestion(), suggestionUpload.getDescription(), suggestionUpload.getSelectionValue(), suggestionUpload.getDependentValue(), suggestionUpload.getUserValues());
+                    }
+                    final Variant formVariant = new Variant(MediaType.APPLICATION_FORM_URLENCODED_TYPE, (String) null, contentEncoding);
+                    entity = Entity.entity(new Form(formData), formVariant);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown Body Type: " + bodyInfo.getBodyType());
+            }
+
+            requestBuilder = requestBuilder
+                    .property(CompressionInterceptor.BODY_INFO_PROPERTY, bodyInfo)
+                    .property(UploadMetrics.PROPERTY, uploadMetrics);
+
+            final long sendStart = System.nanoTime();
+            final Response response = send(requestBuilder, uploadInfo.getMethod(), entity);
+            try {
+                uploadMetrics.sent(sendStart, response);
+                return getBatchResponses(response, batch.size());
+            } finally {
+                //releases the pooled connection
+                response.close();
+            }
+
+        } catch (final ProcessingException e) {
+            uploadMetrics.failed();
+            LOGGER.error(e.getMessage(), e);
+            return Collections.nCopies(batch.size(), new SuggestionResponse(false, e.getMessage(), isConnectionFailure(e)));
+        } catch (final URISyntaxException | IOException | TransformationException e) {
+            uploadMetrics.failed();
+            LOGGER.error(e.getMessage(), e);
+            return Collections.nCopies(batch.size(), new SuggestionResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Maps the response of the server to a batch upload
+     * onto a response for each suggestion in the batch
+     *
+     * If the server returns results which cannot be read, or which do
+     * not correspond to the suggestions, each suggestion receives an
+     * unconfirmed failure, as it is unknown which were accepted.
+     *
+     * @param response The response from the server
+     * @param batchSize The number of suggestions in the batch
+     *
+     * @return A response for each suggestion in the batch
+     */
+    private List<SuggestionResponse> getBatchResponses(final Response response, final int batchSize) {
+        final Response.StatusType statusInfo = response.getStatusInfo();
+        if (statusInfo.getFamily() != Response.Status.Family.SUCCESSFUL) {
+            LOGGER.error("Unable to upload batch of {} suggestions to server: {}", batchSize, statusInfo.getReasonPhrase());
+            return Collections.nCopies(batchSize, new SuggestionResponse(false, statusInfo.getReasonPhrase(), isTransientStatus(statusInfo.getStatusCode())));
+        }
+
+        final MediaType mediaType = response.getMediaType();
+        if (response.hasEntity() && mediaType != null && (mediaType.isCompatible(MediaType.APPLICATION_XML_TYPE) || mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE))) {
+            final List<SuggestionResult> results;
+            try {
+                results = response.readEntity(SuggestionResults.class).getSuggestionResult();
+            } catch (final ProcessingException e) {
+                LOGGER.error("Unable to read results of batch upload of " + batchSize + " suggestions: " + e.getMessage(), e);
+                return Collections.nCopies(batchSize, new SuggestionResponse(false, "Unable to read the results of the upload from the server: " + e.getMessage(), false, true));
+            }
+
+            if (results.size() != batchSize) {
+                LOGGER.error("Server returned {} results for a batch of {} suggestions", results.size(), batchSize);
+                return Collections.nCopies(batchSize, new SuggestionResponse(false, "The server returned " + results.size() + " results for a batch of " + batchSize + " suggestions", false, true));
+            }
+
+            final List<SuggestionResponse> suggestionResponses = new ArrayList<>(batchSize);
+            for (final SuggestionResult result : results) {
+                suggestionResponses.add(new SuggestionResponse(result.isSuccess(), result.getMessage(), !result.isSuccess() && result.isRetryable()));
+            }
+            return suggestionResponses;
+        }
+
+        return Collections.nCopies(batchSize, new SuggestionResponse(true, null));
+    }
+
+    /**
+     * Determines if the responses to a batch indicate
+     * that the server could not be reached
+     */
+    private static boolean isUnreachable(final List<SuggestionResponse> suggestionResponses) {
+        for (final SuggestionResponse suggestionResponse : suggestionResponses) {
+            if (suggestionResponse.isSuccess() || !suggestionResponse.isRetryable()) {
+                return false;
+            }
+        }
+        return !suggestionResponses.isEmpty();
+    }
+
+    private Invocation.Builder authenticate(final Invocation.Builder requestBuilder, final UploadInfo uploadInfo) {
+        if (uploadInfo.getAuthentication() == null) {
+            return requestBuilder;
+        }
+
+        return requestBuilder
+                .property(HttpAuthenticationFeature.HTTP_AUTHENTICATION_USERNAME, uploadInfo.getAuthentication().getUsername())
+                .property(HttpAuthenticationFeature.HTTP_AUTHENTICATION_PASSWORD, uploadInfo.getAuthentication().getPassword());
+    }
+
+    private static Response send(final Invocation.Builder requestBuilder, final UploadInfo.Method method, @Nullable final Entity<?> entity) {
+        switch (method) {
+            case PUT:
+                return requestBuilder.put(entity);
+
+            case POST:
+            default:
+                return requestBuilder.post(entity);
+        }
+    }
+
+    /**
+     * Get the entity for an XML or JSON body
+     *
+     * @param body The JAXB object for the body
+     * @param bodyInfo The configuration of the body
+     * @param contentEncoding The content encoding of the body, or null if the body is not encoded
+     * @param url The URL that the body will be sent to
+     * @param uploadMetrics The metrics of the upload
+     *
+     * @return The entity
+     */
+    private Entity<?> getEntity(final Object body, final BodyInfo bodyInfo, @Nullable final String contentEncoding, final URL url, final UploadMetrics uploadMetrics) throws IOException, TransformationException {
+        final Path transformation = bodyInfo.getTransformation();
+        if (bodyInfo.getBodyType() == BodyInfo.BodyType.JSON) {
+            final Variant jsonVariant = new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, contentEncoding);
+            if (transformation == null) {
+                return Entity.entity(body, jsonVariant);
+            }
+            LOGGER.debug("Transforming JSON upload to: {} using: {}", url, transformation);
+            return Entity.entity(transformJsonUpload(body, transformation, uploadMetrics), jsonVariant);
+        } else {
+            final Variant xmlVariant = new Variant(MediaType.APPLICATION_XML_TYPE, (String) null, contentEncoding);
+            if (transformation == null) {
+                return Entity.entity(body, xmlVariant);
+            }
+            LOGGER.debug("Transforming XML upload to: {} using: {}", url, transformation);
+            return Entity.entity(transformXmlUpload(body, transformation, uploadMetrics), xmlVariant);
+        }
+    }
+
+    /**
+     * Determines the Content-Encoding for the body of a request
+     *
+     * The body is only encoded when it is expected to be at least
+     * {@link BodyInfo#getMinSize()} bytes, as the overhead of
+     * compression outweighs the benefit for small bodies
+     *
+     * @param bodyInfo The configuration of the body
+     * @param estimatedSize The estimated size of the body in bytes
+     *
+     * @return The content encoding, or null if the body should not be encoded
+     */
+    private static @Nullable String getContentEncoding(final BodyInfo bodyInfo, final int estimatedSize) {
+        final BodyCodecs.BodyCodec codec = BodyCodecs.get(bodyInfo.getEncoding());
+        if (codec == null || estimatedSize < bodyInfo.getMinSize()) {
+            return null;
+        }
+        return codec.getContentEncoding();
+    }
+
+    /**
+     * Estimates the size of the body for a suggestion
+     *
+     * The estimate is made from the values before the body is
+     * serialized, so that the Content-Encoding can be decided
+     * before the body is streamed to the server
+     *
+     * @return The estimated size of the body in bytes
+     */
+    private static int estimateSize(final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+        int size = ESTIMATED_FIELD_OVERHEAD + suggestion.length();
+        if (description != null) {
+            size += ESTIMATED_FIELD_OVERHEAD + description.length();
+        }
+        if (selectionValue != null) {
+            size += ESTIMATED_FIELD_OVERHEAD + selectionValue.length();
+        }
+        if (dependentValue != null) {
+            size += ESTIMATED_FIELD_OVERHEAD + dependentValue.length();
+        }
+        if (userValues != null) {
+            for (final SuggestedAutocomplete.UserValue userValue : userValues) {
+                size += ESTIMATED_FIELD_OVERHEAD + userValue.getName().length() + (userValue.getValue() == null ? 0 : userValue.getValue().length());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Adds the fields of a suggestion to form data
+     *
+     * @param formData The form data to add the fields to
+     * @param suffix A suffix to append to the name of each field
+     */
+    private static void addFormData(final MultivaluedMap<String, String> formData, final String suffix, final BodyInfo bodyInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+        formData.putSingle("suggestion" + suffix, suggestion);
+        if (description != null) {
+            formData.putSingle("description" + suffix, description);
+        }
+        if (bodyInfo.isIncludeSelection() && selectionValue != null) {
+            formData.putSingle("selectionValue" + suffix, selectionValue);
+        }
+        if (bodyInfo.isIncludeDependent() && dependentValue != null) {
+            formData.putSingle("dependentValue" + suffix, dependentValue);
+        }
+        if (userValues != null) {
+            for (final SuggestedAutocomplete.UserValue userValue : userValues) {
+                formData.putSingle(userValue.getName() + suffix, userValue.getValue());
+            }
+        }
+    }
+
+    /**
+     * Determines if a request failed because the server could
+     * not be reached, or the connection to it failed
+     *
+     * Any other failure whilst processing the request, for example
+     * when transforming or compressing the body, will fail again
+     * if the request is retried, so is not considered transient.
+     *
+     * @param e The exception raised by the request
+     *
+     * @return true if the request may succeed if it is retried later
+     */
+    private static boolean isConnectionFailure(final ProcessingException e) {
+        for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if(cause instanceof SocketException
+                    || cause instanceof UnknownHostException
+                    || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a HTTP status code indicates that
+     * the server is only temporarily unable to handle a request
+     *
+     * @param statusCode The HTTP status code
+     *
+     * @return true if the request may succeed if it is retried later
+     */
+    private static boolean isTransientStatus(final int statusCode) {
+        return statusCode == Response.Status.BAD_GATEWAY.getStatusCode()
+                || statusCode == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()
+                || statusCode == Response.Status.GATEWAY_TIMEOUT.getStatusCode();
+    }
+
+    @Override
+    public CompletableFuture<SuggestionResponse> uploadSuggestionAsync(final UploadInfo uploadInfo, final String suggestion, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
+        if (uploadInfo.getBatchInfo() != null) {
+            return uploadBatcher.submit(uploadInfo, new SuggestionUpload(suggestion, description, selectionValue, dependentValue, userValues));
+        }
+        return CompletableFuture.supplyAsync(() -> uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, userValues), UPLOAD_EXECUTOR);
+    }
+
     private Suggestion getSuggestion(final String value, @Nullable final String description, @Nullable final String selectionValue, @Nullable final String dependentValue, @Nullable final List<SuggestedAutocomplete.UserValue> userValues) {
         final Suggestion suggestion = new Suggestion();
         suggestion.setValue(value);
@@ -241,46 +638,112 @@ public class JerseyClient extends org.humanistika.oxygen.tei.completer.remote.im
         return uploadInfo.getUrl(substitutions);
     }
 
-    private String transformXmlUpload(final Suggestion suggestion, final Path transformation) throws IOException, TransformationException {
-        try(final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+    /**
+     * Transforms the XML of a suggestion, or batch of suggestions
+     *
+     * The suggestion is marshalled as SAX events directly into the
+     * transformation, whose output is written directly to the body
+     * of the request, so that no intermediate copies are held in memory.
+     *
+     * @param suggestion The suggestion (or suggestions) to transform
+     * @param transformation The XSLT to transform the suggestion with
+     * @param uploadMetrics The metrics of the upload, marshalling is recorded as part of the transformation
+     *
+     * @return The streaming transformation of the suggestion
+     */
+    private StreamingOutput transformXmlUpload(final Object suggestion, final Path transformation, final UploadMetrics uploadMetrics) throws IOException, TransformationException {
+        // NOTE: compile (or get the compiled) stylesheet eagerly, so that errors are reported before the request is sent
+        final XsltExecutable executable = StylesheetCache.getInstance().get(transformation);
+
+        return os -> {
+            final long transformStart = System.nanoTime();
             try {
-                final JAXBContext context = JAXBContext.newInstance(Suggestion.class);
-                final Marshaller marshaller = context.createMarshaller();
-                marshaller.marshal(suggestion, os);
-
-                try(final ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray())) {
-                    os.reset();
-                    xmlTransformer.transform(is, transformation, os);
-                    return new String(os.toByteArray(), StandardCharsets.UTF_8);
+                final Marshaller marshaller = xmlMarshallers.borrow();
+                try {
+                    final Xslt30Transformer transformer = executable.load30();
+                    transformer.transform(new JAXBSource(marshaller, suggestion), transformer.newSerializer(os));
+                } finally {
+                    xmlMarshallers.release(marshaller);
+                    uploadMetrics.transformed(transformStart);
                 }
-
-            } catch (final JAXBException e) {
-                throw new TransformationException(e);
+            } catch (final JAXBException | SaxonApiException e) {
+                throw new IOException("Unable to transform XML upload using: " + transformation + ". " + e.getMessage(), e);
             }
-        }
+        };
     }
 
-    private String transformJsonUpload(final Suggestion suggestion, final Path transformation) throws IOException, TransformationException {
-        try(final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+    /**
+     * Transforms the JSON of a suggestion, or batch of suggestions
+     *
+     * The JSON transformation requires the complete JSON
+     * object, so the suggestion is first marshalled into a buffer,
+     * the output of the transformation is then written directly to
+     * the body of the request.
+     *
+     * @param suggestion The suggestion (or suggestions) to transform
+     * @param transformation The JavaScript to transform the suggestion with
+     * @param uploadMetrics The metrics of the upload
+     *
+     * @return The streaming transformation of the suggestion
+     */
+    private StreamingOutput transformJsonUpload(final Object suggestion, final Path transformation, final UploadMetrics uploadMetrics) {
+        return os -> {
+            final BufferOutputStream buffer = new BufferOutputStream();
             try {
-                final JAXBContext context = org.eclipse.persistence.jaxb.JAXBContextFactory.createContext(new Class[]{Suggestion.class}, null);
-                final Marshaller marshaller = context.createMarshaller();
-                marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, org.eclipse.persistence.oxm.MediaType.APPLICATION_JSON);
-                marshaller.setProperty(MarshallerProperties.JSON_ATTRIBUTE_PREFIX, null);
-                marshaller.setProperty(MarshallerProperties.JSON_WRAPPER_AS_ARRAY_NAME, false);
-                marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
-                marshaller.setProperty(MarshallerProperties.NAMESPACE_PREFIX_MAPPER, namespacePrefixMapper);
-                marshaller.setProperty(MarshallerProperties.JSON_NAMESPACE_SEPARATOR, ':');
-                marshaller.marshal(suggestion, os);
-
-                try(final ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray())) {
-                    os.reset();
-                    jsonTransformer.transform(is, transformation, os);
-                    return new String(os.toByteArray(), StandardCharsets.UTF_8);
+                final long marshalStart = System.nanoTime();
+                final Marshaller marshaller = jsonMarshallers.borrow();
+                try {
+                    marshaller.marshal(suggestion, buffer);
+                } finally {
+                    jsonMarshallers.release(marshaller);
+                    uploadMetrics.marshalled(marshalStart);
+                }
+
+                final long transformStart = System.nanoTime();
+                try {
+                    jsonTransformer.transform(buffer.toInputStream(), transformation, os);
+                } finally {
+                    uploadMetrics.transformed(transformStart);
                 }
-            } catch (final JAXBException e) {
-                throw new TransformationException(e);
+            } catch (final JAXBException | TransformationException e) {
+                throw new IOException("Unable to transform JSON upload using: " + transformation + ". " + e.getMessage(), e);
             }
+        };
+    }
+
+    private Marshaller newJsonMarshaller() throws JAXBException {
+        final Marshaller marshaller = JaxbContexts.getMoxyContext(Suggestions.class).createMarshaller();
+        marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, org.eclipse.persistence.oxm.MediaType.APPLICATION_JSON);
+        marshaller.setProperty(MarshallerProperties.JSON_ATTRIBUTE_PREFIX, null);
+        marshaller.setProperty(MarshallerProperties.JSON_WRAPPER_AS_ARRAY_NAME, false);
+        marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+        marshaller.setProperty(MarshallerProperties.NAMESPACE_PREFIX_MAPPER, namespacePrefixMapper);
+        marshaller.setProperty(MarshallerProperties.JSON_NAMESPACE_SEPARATOR, ':');
+        return marshaller;
+    }
+
+    /**
+     * A ByteArrayOutputStream whose content
+     * can be read back without being copied
+     */
+    private static class BufferOutputStream extends ByteArrayOutputStream {
+        private InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * Creates daemon threads for background uploads, so that
+     * a pending upload never prevents Oxygen from exiting
+     */
+    private static class UploadThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "tei-authorizer-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
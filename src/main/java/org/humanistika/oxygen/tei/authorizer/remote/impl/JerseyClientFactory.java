@@ -19,19 +19,45 @@
  */
 package org.humanistika.oxygen.tei.authorizer.remote.impl;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.apache.connector.ApacheHttpClientBuilderConfigurator;
+import org.glassfish.jersey.client.ClientConfig;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
 import org.humanistika.oxygen.tei.completer.remote.ClientFactory;
 
+import javax.annotation.Nullable;
+import javax.ws.rs.client.ClientBuilder;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Factory for creating instances of Client
  *
+ * Clients are shared, one for each server and type of authentication,
+ * each client keeps a pool of persistent connections to its server.
+ *
  * @author Adam Retter, Evolved Binary Ltd
  * @version 1.0
  * @serial 20160126
  */
 public class JerseyClientFactory implements ClientFactory {
 
+    /**
+     * Time in milliseconds to wait for a pooled connection, after which the request
+     * fails, so that a request made on the UI thread cannot block indefinitely
+     */
+    final static int CONNECTION_REQUEST_TIMEOUT = (int)TimeUnit.SECONDS.toMillis(10);
+
     private final static JerseyClientFactory instance = new JerseyClientFactory();
 
+    private final ConcurrentMap<ClientKey, JerseyClient> clients = new ConcurrentHashMap<>();
+
     private JerseyClientFactory() {
     }
 
@@ -40,13 +66,103 @@ public class JerseyClientFactory implements ClientFactory {
     }
 
     /**
-     * Creates a default Client implementation
+     * Gets the shared default Client implementation
      *
      * @param authenticationType The type of authentication to use
      * @return The Client implementation
      */
     @Override
     public JerseyClient createClient(final AuthenticationType authenticationType) {
-        return new JerseyClient(authenticationType);
+        return getSharedClient(ServerInfo.DEFAULT, authenticationType);
+    }
+
+    /**
+     * Gets the shared Client implementation for a server
+     *
+     * @param serverInfo The configuration of the server
+     * @param authenticationType The type of authentication to use, or null for no authentication
+     * @return The Client implementation
+     */
+    public JerseyClient getClient(final ServerInfo serverInfo, @Nullable final Authentication.AuthenticationType authenticationType) {
+        return getSharedClient(serverInfo, asClientAuthenticationType(authenticationType));
+    }
+
+    private JerseyClient getSharedClient(final ServerInfo serverInfo, final AuthenticationType authenticationType) {
+        return clients.computeIfAbsent(new ClientKey(serverInfo, authenticationType), key -> new JerseyClient(authenticationType, newPooledClient(serverInfo)));
+    }
+
+    /**
+     * Creates a client which pools persistent connections
+     *
+     * @param serverInfo The configuration of the connections
+     *
+     * @return The client
+     */
+    private static javax.ws.rs.client.Client newPooledClient(final ServerInfo serverInfo) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(serverInfo.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(serverInfo.getMaxConnectionsPerHost());
+
+        final ClientConfig clientConfig = new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom()
+                        .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+                        .build())
+                .register((ApacheHttpClientBuilderConfigurator) httpClientBuilder -> httpClientBuilder
+                        .evictExpiredConnections()
+                        .evictIdleConnections(serverInfo.getIdleTimeout(), TimeUnit.MILLISECONDS));
+
+        return ClientBuilder.newClient(clientConfig);
+    }
+
+    private static AuthenticationType asClientAuthenticationType(@Nullable final Authentication.AuthenticationType authenticationType) {
+        if(authenticationType == null) {
+            return AuthenticationType.NONE;
+        }
+
+        switch(authenticationType) {
+            case PREEMPTIVE_BASIC:
+                return AuthenticationType.PREEMPTIVE_BASIC;
+
+            case NON_PREEMPTIVE_BASIC:
+                return AuthenticationType.NON_PREEMPTIVE_BASIC;
+
+            case DIGEST:
+                return AuthenticationType.DIGEST;
+
+            case NON_PREEMPTIVE_BASIC_DIGEST:
+                return AuthenticationType.NON_PREEMPTIVE_BASIC_DIGEST;
+
+            default:
+                throw new IllegalArgumentException("Unknown authentication type: " + authenticationType);
+        }
+    }
+
+    private static class ClientKey {
+        private final ServerInfo serverInfo;
+        private final AuthenticationType authenticationType;
+
+        private ClientKey(final ServerInfo serverInfo, final AuthenticationType authenticationType) {
+            this.serverInfo = serverInfo;
+            this.authenticationType = authenticationType;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ClientKey that = (ClientKey) o;
+            return serverInfo.equals(that.serverInfo) && authenticationType == that.authenticationType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverInfo, authenticationType);
+        }
     }
 }
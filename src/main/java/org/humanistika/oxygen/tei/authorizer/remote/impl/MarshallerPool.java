@@ -0,0 +1,81 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of configured JAXB Marshallers
+ *
+ * A Marshaller is not thread-safe, but it is relatively
+ * expensive to create and configure. The pool hands out
+ * an idle Marshaller if there is one, or otherwise creates
+ * a new Marshaller. At most {@code maxIdle} Marshallers
+ * are retained once they have been released.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class MarshallerPool {
+
+    @FunctionalInterface
+    interface MarshallerFactory {
+        Marshaller newMarshaller() throws JAXBException;
+    }
+
+    private final MarshallerFactory marshallerFactory;
+    private final BlockingQueue<Marshaller> idle;
+
+    MarshallerPool(final MarshallerFactory marshallerFactory, final int maxIdle) {
+        this.marshallerFactory = marshallerFactory;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Borrow a Marshaller from the pool
+     *
+     * The caller has exclusive use of the Marshaller until it
+     * is returned by calling {@link #release(Marshaller)}.
+     *
+     * @return A Marshaller
+     *
+     * @throws JAXBException if a new Marshaller cannot be created
+     */
+    Marshaller borrow() throws JAXBException {
+        final Marshaller marshaller = idle.poll();
+        if(marshaller != null) {
+            return marshaller;
+        }
+        return marshallerFactory.newMarshaller();
+    }
+
+    /**
+     * Return a Marshaller to the pool
+     *
+     * @param marshaller A Marshaller previously obtained from {@link #borrow()}
+     */
+    void release(final Marshaller marshaller) {
+        idle.offer(marshaller);
+    }
+}
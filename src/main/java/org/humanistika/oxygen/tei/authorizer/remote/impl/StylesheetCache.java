@@ -0,0 +1,109 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.humanistika.oxygen.tei.completer.response.TransformationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide cache of compiled XSLT stylesheets
+ *
+ * Stylesheets are keyed by their path, and are
+ * recompiled only when the last modified time of
+ * the stylesheet file changes, so that edits to a
+ * stylesheet are picked up without restarting Oxygen.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class StylesheetCache {
+    private final static Logger LOGGER = LoggerFactory.getLogger(StylesheetCache.class);
+
+    private final static StylesheetCache instance = new StylesheetCache();
+
+    private final Processor processor = new Processor(false);
+    private final ConcurrentMap<Path, CompiledStylesheet> stylesheets = new ConcurrentHashMap<>();
+
+    private StylesheetCache() {
+    }
+
+    public static StylesheetCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get a compiled stylesheet
+     *
+     * @param stylesheet The path to the XSLT stylesheet
+     *
+     * @return The compiled stylesheet
+     *
+     * @throws IOException if the stylesheet file cannot be accessed
+     * @throws TransformationException if the stylesheet cannot be compiled
+     */
+    public XsltExecutable get(final Path stylesheet) throws IOException, TransformationException {
+        final Path key = stylesheet.toAbsolutePath().normalize();
+        final FileTime lastModified = Files.getLastModifiedTime(key);
+
+        final CompiledStylesheet cached = stylesheets.get(key);
+        if(cached != null && cached.lastModified.equals(lastModified)) {
+            return cached.executable;
+        }
+
+        LOGGER.debug("Compiling stylesheet: {}", key);
+        try {
+            final XsltExecutable executable = processor.newXsltCompiler().compile(new StreamSource(key.toFile()));
+            stylesheets.put(key, new CompiledStylesheet(lastModified, executable));
+            return executable;
+        } catch(final SaxonApiException e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    /**
+     * Removes all compiled stylesheets from the cache
+     */
+    public void clear() {
+        stylesheets.clear();
+    }
+
+    private static class CompiledStylesheet {
+        private final FileTime lastModified;
+        private final XsltExecutable executable;
+
+        private CompiledStylesheet(final FileTime lastModified, final XsltExecutable executable) {
+            this.lastModified = lastModified;
+            this.executable = executable;
+        }
+    }
+}
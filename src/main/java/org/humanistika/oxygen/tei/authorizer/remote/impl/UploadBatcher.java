@@ -0,0 +1,172 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BatchInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.authorizer.remote.Client.SuggestionResponse;
+import org.humanistika.oxygen.tei.authorizer.remote.Client.SuggestionUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces suggestions which are uploaded in the background
+ * within a short window of each other into a single batch request
+ *
+ * A batch is sent once its window has elapsed, or as soon
+ * as it reaches the maximum size of a batch, whichever is first.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class UploadBatcher {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UploadBatcher.class);
+
+    /**
+     * Timer shared by all batchers for closing batches once their window has elapsed
+     */
+    private final static ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "tei-authorizer-upload-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Performs the upload of a batch of suggestions
+     */
+    @FunctionalInterface
+    interface BatchUploader {
+        List<SuggestionResponse> upload(UploadInfo uploadInfo, List<? extends SuggestionUpload> suggestionUploads);
+    }
+
+    private final BatchUploader uploader;
+    private final Executor executor;
+
+    // NOTE: guarded by this
+    private final Map<UploadInfo, Batch> openBatches = new HashMap<>();
+
+    /**
+     * @param uploader Performs the upload of each batch
+     * @param executor Executes the upload of each batch
+     */
+    UploadBatcher(final BatchUploader uploader, final Executor executor) {
+        this.uploader = uploader;
+        this.executor = executor;
+    }
+
+    /**
+     * Add a suggestion to the open batch for an upload configuration
+     *
+     * @param uploadInfo The upload configuration, which must have a batch configuration
+     * @param suggestionUpload The suggestion
+     *
+     * @return A future which is completed with the response to the suggestion from the server
+     */
+    CompletableFuture<SuggestionResponse> submit(final UploadInfo uploadInfo, final SuggestionUpload suggestionUpload) {
+        final BatchInfo batchInfo = uploadInfo.getBatchInfo();
+        final CompletableFuture<SuggestionResponse> future = new CompletableFuture<>();
+
+        final Batch full;
+        synchronized(this) {
+            Batch batch = openBatches.get(uploadInfo);
+            if(batch == null) {
+                batch = new Batch(uploadInfo);
+                openBatches.put(uploadInfo, batch);
+                final Batch windowed = batch;
+                TIMER.schedule(() -> close(windowed), batchInfo.getWindow(), TimeUnit.MILLISECONDS);
+            }
+
+            batch.add(suggestionUpload, future);
+
+            if(batch.size() >= batchInfo.getMaxSize()) {
+                openBatches.remove(uploadInfo);
+                full = batch;
+            } else {
+                full = null;
+            }
+        }
+
+        if(full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    /**
+     * Closes a batch once its window has elapsed
+     */
+    private void close(final Batch batch) {
+        synchronized(this) {
+            if(openBatches.get(batch.uploadInfo) != batch) {
+                // already sent as it became full
+                return;
+            }
+            openBatches.remove(batch.uploadInfo);
+        }
+        send(batch);
+    }
+
+    private void send(final Batch batch) {
+        LOGGER.debug("Uploading batch of {} suggestions", batch.size());
+        executor.execute(() -> {
+            try {
+                final List<SuggestionResponse> suggestionResponses = uploader.upload(batch.uploadInfo, batch.suggestionUploads);
+                for(int i = 0; i < batch.futures.size(); i++) {
+                    batch.futures.get(i).complete(suggestionResponses.get(i));
+                }
+            } catch(final RuntimeException e) {
+                LOGGER.error("Unable to upload batch of suggestions: " + e.getMessage(), e);
+                for(final CompletableFuture<SuggestionResponse> future : batch.futures) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private static class Batch {
+        private final UploadInfo uploadInfo;
+        private final List<SuggestionUpload> suggestionUploads = new ArrayList<>();
+        private final List<CompletableFuture<SuggestionResponse>> futures = new ArrayList<>();
+
+        private Batch(final UploadInfo uploadInfo) {
+            this.uploadInfo = uploadInfo;
+        }
+
+        private void add(final SuggestionUpload suggestionUpload, final CompletableFuture<SuggestionResponse> future) {
+            suggestionUploads.add(suggestionUpload);
+            futures.add(future);
+        }
+
+        private int size() {
+            return suggestionUploads.size();
+        }
+    }
+}
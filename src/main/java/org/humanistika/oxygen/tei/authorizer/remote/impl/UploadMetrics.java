@@ -0,0 +1,139 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import org.humanistika.oxygen.tei.authorizer.metrics.Metrics;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Records the phases of a single upload request
+ * into the {@link Metrics}
+ *
+ * The phases are:
+ *  url - building the URL of the request
+ *  marshal - serializing the body of the request
+ *  transform - transforming the body of the request
+ *  network - sending the request and receiving the response
+ *
+ * As the body is streamed to the server, the time
+ * taken to write an untransformed body (including any
+ * compression) is recorded as marshal, and the time
+ * taken to write a transformed body is recorded as
+ * marshal and transform.
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+class UploadMetrics {
+
+    /**
+     * Request property holding the {@link UploadMetrics} of the request
+     */
+    static final String PROPERTY = UploadMetrics.class.getName();
+
+    static final String PHASE_URL = "upload.phase.url";
+    static final String PHASE_MARSHAL = "upload.phase.marshal";
+    static final String PHASE_TRANSFORM = "upload.phase.transform";
+    static final String PHASE_NETWORK = "upload.phase.network";
+    static final String REQUEST_BYTES = "upload.requestBytes";
+    static final String RESPONSE_BYTES = "upload.responseBytes";
+
+    private final Metrics metrics = Metrics.getInstance();
+    private final String url;
+
+    // NOTE: the body is written on the thread which sends the request, so these do not need to be synchronized
+    private long marshalNanos = 0;
+    private long transformNanos = 0;
+    private long writeNanos = 0;
+    private long requestBytes = 0;
+    private boolean transformed = false;
+
+    /**
+     * @param url the URL that the upload is sent to as it was configured, i.e. before
+     *     the base URL and credentials are expanded into it, success and failure are counted per URL
+     */
+    UploadMetrics(final String url) {
+        this.url = url;
+    }
+
+    static String successCounter(final String url) {
+        return "upload.success[" + url + "]";
+    }
+
+    static String failureCounter(final String url) {
+        return "upload.failure[" + url + "]";
+    }
+
+    void urlBuilt(final long startNanos) {
+        metrics.timer(PHASE_URL).recordSince(startNanos);
+    }
+
+    void marshalled(final long startNanos) {
+        marshalNanos += System.nanoTime() - startNanos;
+    }
+
+    void transformed(final long startNanos) {
+        transformNanos += System.nanoTime() - startNanos;
+        transformed = true;
+    }
+
+    void written(final long nanos, final long bytes) {
+        writeNanos += nanos;
+        requestBytes += bytes;
+    }
+
+    /**
+     * Record the outcome of sending the request
+     *
+     * @param sendStartNanos the time that sending the request started
+     * @param response the response from the server
+     */
+    void sent(final long sendStartNanos, final Response response) {
+        final long sendNanos = System.nanoTime() - sendStartNanos;
+        if (transformed) {
+            metrics.timer(PHASE_MARSHAL).record(marshalNanos);
+            metrics.timer(PHASE_TRANSFORM).record(transformNanos);
+        } else if (writeNanos > 0) {
+            metrics.timer(PHASE_MARSHAL).record(writeNanos);
+        }
+        metrics.timer(PHASE_NETWORK).record(Math.max(0, sendNanos - writeNanos));
+
+        metrics.counter(REQUEST_BYTES).add(requestBytes);
+        if (response.getLength() > 0) {
+            metrics.counter(RESPONSE_BYTES).add(response.getLength());
+        }
+
+        if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+            metrics.counter(successCounter(url)).increment();
+        } else {
+            metrics.counter(failureCounter(url)).increment();
+        }
+    }
+
+    /**
+     * Record that the request could not be sent
+     */
+    void failed() {
+        metrics.counter(REQUEST_BYTES).add(requestBytes);
+        metrics.counter(failureCounter(url)).increment();
+    }
+}
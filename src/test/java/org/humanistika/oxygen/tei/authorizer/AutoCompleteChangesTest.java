@@ -0,0 +1,87 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class AutoCompleteChangesTest {
+
+    @Test
+    public void unchanged() {
+        final AutoComplete lemma = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma?s=$selection", CacheInfo.DEFAULT);
+        final AutoComplete ana = autoComplete("//tei:w", "ana", "http://localhost/ana?s=$selection", CacheInfo.DEFAULT);
+        final AutoComplete name = autoComplete("//tei:name", "ref", "http://localhost/name?s=$selection", CacheInfo.DEFAULT);
+
+        // reordered, with a changed url, a changed cache and a new auto-complete
+        final AutoComplete reloadedName = autoComplete("//tei:name", "ref", "http://localhost/name?s=$selection", CacheInfo.DEFAULT);
+        final AutoComplete reloadedLemma = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma?s=$selection", CacheInfo.DEFAULT);
+        final AutoComplete reloadedAna = autoComplete("//tei:w", "ana", "http://localhost/ana/v2?s=$selection", CacheInfo.DEFAULT);
+        final AutoComplete added = autoComplete("//tei:pc", "ana", "http://localhost/ana?s=$selection", CacheInfo.DEFAULT);
+
+        final Map<AutoComplete, AutoComplete> unchanged = AutoCompleteChanges.unchanged(
+                Arrays.asList(lemma, ana, name),
+                Arrays.asList(reloadedName, added, reloadedAna, reloadedLemma));
+
+        assertEquals(2, unchanged.size());
+        assertSame(reloadedLemma, unchanged.get(lemma));
+        assertSame(reloadedName, unchanged.get(name));
+        assertFalse(unchanged.containsKey(ana));
+    }
+
+    @Test
+    public void changedCache() {
+        final AutoComplete lemma = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma", CacheInfo.DEFAULT);
+        final AutoComplete reloaded = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma", new CacheInfo(CacheInfo.DEFAULT_TTL * 2, CacheInfo.DEFAULT_MAX_ENTRIES));
+
+        assertTrue(AutoCompleteChanges.unchanged(Collections.singletonList(lemma), Collections.singletonList(reloaded)).isEmpty());
+    }
+
+    @Test
+    public void duplicatesMatchedOnce() {
+        final AutoComplete first = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma", CacheInfo.DEFAULT);
+        final AutoComplete second = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma", CacheInfo.DEFAULT);
+        final AutoComplete reloaded = autoComplete("//tei:w", "lemmaRef", "http://localhost/lemma", CacheInfo.DEFAULT);
+
+        final Map<AutoComplete, AutoComplete> unchanged = AutoCompleteChanges.unchanged(Arrays.asList(first, second), Collections.singletonList(reloaded));
+        assertEquals(1, unchanged.size());
+        assertSame(reloaded, unchanged.get(first));
+    }
+
+    private static AutoComplete autoComplete(final String context, final String attribute, final String url, final CacheInfo cacheInfo) {
+        return new AutoComplete(Collections.singletonMap("tei", "http://www.tei-c.org/ns/1.0"), context, attribute, null, null, new RequestInfo(url, null), null, null, cacheInfo);
+    }
+}
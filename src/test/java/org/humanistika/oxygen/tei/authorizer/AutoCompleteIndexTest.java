@@ -0,0 +1,109 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.junit.jupiter.api.Test;
+import ro.sync.contentcompletion.xml.ContextElement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class AutoCompleteIndexTest {
+    private final static String TEI_NS = "http://www.tei-c.org/ns/1.0";
+    private final static Map<String, String> TEI_BINDINGS = Collections.singletonMap("tei", TEI_NS);
+
+    @Test
+    public void candidatesByAttribute() {
+        final AutoComplete lemmaW = autoComplete("//tei:w", "lemmaRef");
+        final AutoComplete lemmaName = autoComplete("//tei:name", "lemmaRef");
+        final AutoComplete ana = autoComplete("//tei:w", "ana");
+        final AutoCompleteIndex index = AutoCompleteIndex.build(Arrays.asList(lemmaW, ana, lemmaName));
+
+        final List<AutoCompleteIndex.Candidate> candidates = index.getCandidates("lemmaRef");
+        assertEquals(2, candidates.size());
+        assertSame(lemmaW, candidates.get(0).autoComplete);
+        assertSame(lemmaName, candidates.get(1).autoComplete);
+        assertEquals("for $n in . return exists((//tei:w)[. is $n])", candidates.get(0).contextXPath);
+
+        assertSame(ana, index.getCandidates("ana").get(0).autoComplete);
+        assertTrue(index.getCandidates("type").isEmpty());
+        assertTrue(index.getCandidates(null).isEmpty());
+    }
+
+    @Test
+    public void candidatesMatchTheQualifiedAttributeName() {
+        // the index is the only way that an auto-complete is matched, so there is no fallback for other names
+        final AutoComplete id = autoComplete("//tei:w", "xml:id");
+        final AutoCompleteIndex index = AutoCompleteIndex.build(Collections.singletonList(id));
+
+        assertSame(id, index.getCandidates("xml:id").get(0).autoComplete);
+        assertTrue(index.getCandidates("id").isEmpty());
+        assertTrue(index.getCandidates("XML:ID").isEmpty());
+        assertTrue(AutoCompleteIndex.build(null).getCandidates("xml:id").isEmpty());
+    }
+
+    @Test
+    public void mayMatchByElementName() {
+        final AutoCompleteIndex.Candidate simple = new AutoCompleteIndex.Candidate(autoComplete("/tei:TEI//tei:w", "lemmaRef"));
+        assertTrue(simple.mayMatch(element("w", TEI_NS)));
+        assertTrue(simple.mayMatch(element("tei:w", TEI_NS)));
+        assertFalse(simple.mayMatch(element("name", TEI_NS)));
+        assertFalse(simple.mayMatch(element("w", "")));
+        assertTrue(simple.mayMatch(element(null, null)));
+
+        // complex contexts are always evaluated
+        final AutoCompleteIndex.Candidate complex = new AutoCompleteIndex.Candidate(autoComplete("//tei:w[@type = 'noun']", "lemmaRef"));
+        assertTrue(complex.mayMatch(element("name", TEI_NS)));
+        final AutoCompleteIndex.Candidate union = new AutoCompleteIndex.Candidate(autoComplete("//tei:w | //tei:name", "lemmaRef"));
+        assertTrue(union.mayMatch(element("name", TEI_NS)));
+    }
+
+    private static ContextElement element(final String qname, final String namespace) {
+        return new ContextElement() {
+            @Override
+            public String getQName() {
+                return qname;
+            }
+
+            @Override
+            public String getNamespace() {
+                return namespace;
+            }
+        };
+    }
+
+    private static AutoComplete autoComplete(final String context, final String attribute) {
+        return new AutoComplete(TEI_BINDINGS, context, attribute, null, null, null, null, null, CacheInfo.DEFAULT);
+    }
+}
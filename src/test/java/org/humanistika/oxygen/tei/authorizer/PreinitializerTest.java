@@ -0,0 +1,63 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class PreinitializerTest {
+
+    @Test
+    public void runsStepsInOrderInTheBackground() throws InterruptedException, ExecutionException, TimeoutException {
+        final List<String> run = Collections.synchronizedList(new ArrayList<>());
+        final Thread caller = Thread.currentThread();
+
+        new Preinitializer()
+                .step("first", () -> {
+                    run.add("first");
+                    if (Thread.currentThread() != caller && Thread.currentThread().isDaemon() && Thread.currentThread().getPriority() == Thread.MIN_PRIORITY) {
+                        run.add("background");
+                    }
+                })
+                .step("failing", () -> {
+                    throw new IllegalStateException("unavailable");
+                })
+                .step("last", () -> run.add("last"))
+                .start()
+                .get(10, TimeUnit.SECONDS);
+
+        // a failed step does not prevent the remaining steps
+        assertEquals(Arrays.asList("first", "background", "last"), run);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentRequestsShareResult() throws Exception {
+        final LongAdder coalesced = new LongAdder();
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>(coalesced);
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<String> leader = executor.submit(() -> singleFlight.get("key", () -> {
+                requests.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            final Future<String> follower = executor.submit(() -> singleFlight.get("key", () -> "other"));
+            final CompletableFuture<String> asyncFollower = singleFlight.submit("key", () -> "other", executor);
+            final String different = singleFlight.get("different", () -> "different");
+
+            // wait until the synchronous follower has joined
+            while (coalesced.sum() < 2) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+            assertEquals("result", asyncFollower.get(5, TimeUnit.SECONDS));
+            assertEquals("different", different);
+            assertEquals(1, requests.get());
+            assertEquals(2, coalesced.sum());
+            assertEquals(0, singleFlight.size());
+
+            // completed requests are not cached
+            assertEquals("again", singleFlight.get("key", () -> "again"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureIsShared() {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>(new LongAdder());
+        final CompletableFuture<String> failed = singleFlight.submit("key", () -> {
+            throw new IllegalStateException("unreachable");
+        }, Runnable::run);
+
+        final ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class, () -> singleFlight.get("key", () -> {
+            throw new IllegalStateException("unreachable");
+        }));
+        assertEquals(0, singleFlight.size());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
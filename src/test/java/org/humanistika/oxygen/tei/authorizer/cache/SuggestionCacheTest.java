@@ -0,0 +1,178 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.junit.jupiter.api.Test;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(new CacheInfo(TimeUnit.MINUTES.toMillis(1), 2));
+
+        cache.put(autoComplete, "a", null, suggestions("a"));
+        cache.put(autoComplete, "b", null, suggestions("b"));
+        assertNotNull(cache.get(autoComplete, "a", null));   // "b" is now the least recently used
+        cache.put(autoComplete, "c", null, suggestions("c"));
+
+        assertEquals("a", cache.get(autoComplete, "a", null).get(0).getValue());
+        assertNull(cache.get(autoComplete, "b", null));
+        assertEquals("c", cache.get(autoComplete, "c", null).get(0).getValue());
+    }
+
+    @Test
+    public void keyedBySelectedAndDependent() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(CacheInfo.DEFAULT);
+        final AutoComplete other = autoComplete(CacheInfo.DEFAULT);
+
+        cache.put(autoComplete, "sel", "dep", suggestions("x"));
+
+        assertNotNull(cache.get(autoComplete, "sel", "dep"));
+        assertNull(cache.get(autoComplete, "sel", null));
+        assertNull(cache.get(autoComplete, null, "dep"));
+        assertNull(cache.get(other, "sel", "dep"));
+    }
+
+    @Test
+    public void transfer() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete previous = autoComplete(CacheInfo.DEFAULT);
+        final AutoComplete reloaded = autoComplete(CacheInfo.DEFAULT);
+
+        cache.put(previous, "sel", "dep", suggestions("x"));
+        cache.transfer(previous, reloaded);
+
+        assertNull(cache.get(previous, "sel", "dep"));
+        assertEquals("x", cache.get(reloaded, "sel", "dep").get(0).getValue());
+    }
+
+    @Test
+    public void expiresAfterTtl() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(new CacheInfo(1000, 10));
+
+        cache.put(autoComplete, "a", null, suggestions("a"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertNotNull(cache.get(autoComplete, "a", null));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertNull(cache.get(autoComplete, "a", null));
+    }
+
+    @Test
+    public void disabled() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(new CacheInfo(1000, 0));
+
+        cache.put(autoComplete, "a", null, suggestions("a"));
+        assertNull(cache.get(autoComplete, "a", null));
+    }
+
+    @Test
+    public void pendingUntilConfirmed() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(CacheInfo.DEFAULT);
+
+        cache.put(autoComplete, "sel", null, suggestions("a"));
+        cache.putPending(autoComplete, "sel", null, "new", "some description");
+
+        List<CIValue> cached = cache.get(autoComplete, "sel", null);
+        assertEquals(2, cached.size());
+        assertEquals("new", cached.get(1).getValue());
+        assertTrue(cached.get(1).getAnnotation().startsWith("some description"));
+
+        //the server does not yet return the suggestion, so it remains pending
+        cached = cache.put(autoComplete, "sel", null, suggestions("a"));
+        assertEquals(2, cached.size());
+
+        //the server returns the suggestion, so it is no longer pending
+        cached = cache.put(autoComplete, "sel", null, Arrays.asList(new CIValue("a"), new CIValue("new", "some description")));
+        assertEquals(2, cached.size());
+        assertEquals("some description", cached.get(1).getAnnotation());
+        cached = cache.put(autoComplete, "sel", null, suggestions("a"));
+        assertEquals(1, cached.size());
+    }
+
+    @Test
+    public void pendingExpiresAndCanBeRemoved() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(new CacheInfo(SuggestionCache.PENDING_TTL * 2, 10));
+
+        cache.put(autoComplete, null, null, suggestions("a"));
+        cache.putPending(autoComplete, null, null, "rejected", null);
+        cache.putPending(autoComplete, null, null, "unconfirmed", null);
+        assertEquals(3, cache.get(autoComplete, null, null).size());
+
+        cache.removePending(autoComplete, null, null, "rejected");
+        assertEquals(2, cache.get(autoComplete, null, null).size());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(SuggestionCache.PENDING_TTL));
+        assertEquals(1, cache.get(autoComplete, null, null).size());
+    }
+
+    @Test
+    public void matchingPrefix() {
+        final SuggestionCache cache = new SuggestionCache(now::get);
+        final AutoComplete autoComplete = autoComplete(CacheInfo.DEFAULT);
+
+        assertNull(cache.getMatching(autoComplete, "sel", null, "ho"));
+
+        cache.put(autoComplete, "sel", null, Arrays.asList(new CIValue("house"), new CIValue("tree", "Home tree"), new CIValue("garden")));
+        cache.putPending(autoComplete, "sel", null, "hotel", null);
+        cache.putPending(autoComplete, "sel", null, "inn", null);
+
+        final List<CIValue> matching = cache.getMatching(autoComplete, "sel", null, "Ho");
+        assertEquals(3, matching.size());
+        assertEquals("house", matching.get(0).getValue());
+        assertEquals("tree", matching.get(1).getValue());
+        assertEquals("hotel", matching.get(2).getValue());
+    }
+
+    private static AutoComplete autoComplete(final CacheInfo cacheInfo) {
+        return new AutoComplete(Collections.emptyMap(), "//tei:w", "lemmaRef", null, null, null, null, null, cacheInfo);
+    }
+
+    private static List<CIValue> suggestions(final String value) {
+        return Collections.singletonList(new CIValue(value));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Dependent;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Selection;
+import org.junit.jupiter.api.Test;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionPrefetcherTest {
+
+    private static final String TEI_NS = "http://www.tei-c.org/ns/1.0";
+
+    private static final String DOCUMENT =
+            "<TEI xmlns='" + TEI_NS + "'><text><body><p>" +
+                "<w type='noun'>house</w>" +
+                "<w>dog</w>" +
+                "<w type='noun'>house</w>" +
+                "<w type='verb'>run</w>" +
+                "<w type='adj'>red</w>" +
+            "</p></body></text></TEI>";
+
+    @Test
+    public void prefetchesDistinctValues() {
+        final SuggestionCache cache = new SuggestionCache();
+        final AutoComplete autoComplete = autoComplete(3);
+        final List<String> fetched = new ArrayList<>();
+
+        try (final SuggestionPrefetcher prefetcher = new SuggestionPrefetcher(cache, () -> Collections.singletonList(autoComplete), (ac, selectedValue, dependentValue) -> {
+            fetched.add(selectedValue + "|" + dependentValue);
+            return Collections.singletonList(new CIValue(selectedValue + "-lemma"));
+        })) {
+            prefetcher.prefetch(document(), Collections.singletonList(autoComplete));
+        }
+
+        //duplicates are only fetched once, missing dependents use the default, and the prefetch limit is applied
+        assertEquals(3, fetched.size());
+        assertEquals("house|noun", fetched.get(0));
+        assertEquals("dog|unknown", fetched.get(1));
+        assertEquals("run|verb", fetched.get(2));
+
+        assertNotNull(cache.get(autoComplete, "house", "noun"));
+        assertEquals("dog-lemma", cache.get(autoComplete, "dog", "unknown").get(0).getValue());
+    }
+
+    @Test
+    public void skipsCachedValues() {
+        final SuggestionCache cache = new SuggestionCache();
+        final AutoComplete autoComplete = autoComplete(10);
+        cache.put(autoComplete, "house", "noun", Collections.singletonList(new CIValue("house-lemma")));
+        final List<String> fetched = new ArrayList<>();
+
+        try (final SuggestionPrefetcher prefetcher = new SuggestionPrefetcher(cache, () -> Collections.singletonList(autoComplete), (ac, selectedValue, dependentValue) -> {
+            fetched.add(selectedValue);
+            return Collections.emptyList();
+        })) {
+            prefetcher.prefetch(document(), Collections.singletonList(autoComplete));
+        }
+
+        assertEquals(3, fetched.size());
+        assertEquals("dog", fetched.get(0));
+    }
+
+    private static AutoComplete autoComplete(final int prefetch) {
+        return new AutoComplete(Collections.singletonMap("tei", TEI_NS), "//tei:w", "lemmaRef", new Dependent("unknown", "type", "Type"), new Selection("text()", "Word"), null, null, null, new CacheInfo(CacheInfo.DEFAULT_TTL, CacheInfo.DEFAULT_MAX_ENTRIES, prefetch));
+    }
+
+    private static Source document() {
+        return new StreamSource(new StringReader(DOCUMENT), "urn:test");
+    }
+}
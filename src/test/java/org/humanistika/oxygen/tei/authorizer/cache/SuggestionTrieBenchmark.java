@@ -0,0 +1,98 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares filtering by {@link SuggestionTrie} against
+ * linear filtering of the list of suggestions
+ *
+ * Run with: mvn test -Dtest=SuggestionTrieBenchmark -Dbenchmark=true
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SuggestionTrieBenchmark {
+    private final static int[] SIZES = { 1_000, 10_000, 100_000, 500_000 };
+    private final static int QUERIES = 500;
+    private final static int ROUNDS = 3;
+
+    @Test
+    public void trieVersusLinear() {
+        for (final int size : SIZES) {
+            final Random random = new Random(size);
+            final List<CIValue> suggestions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                suggestions.add(new CIValue(lemma(random), "Description of " + lemma(random)));
+            }
+            final String[] prefixes = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                final String lemma = lemma(random);
+                prefixes[i] = lemma.substring(0, 2 + random.nextInt(lemma.length() - 2));
+            }
+
+            final long buildStart = System.nanoTime();
+            final SuggestionTrie trie = SuggestionTrie.build(suggestions);
+            final long build = System.nanoTime() - buildStart;
+
+            long trieBest = Long.MAX_VALUE;
+            long linearBest = Long.MAX_VALUE;
+            long checksum = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (final String prefix : prefixes) {
+                    checksum += trie.filter(prefix).size();
+                }
+                trieBest = Math.min(trieBest, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (final String prefix : prefixes) {
+                    checksum -= SuggestionTrie.filter(suggestions, prefix).size();
+                }
+                linearBest = Math.min(linearBest, System.nanoTime() - start);
+            }
+
+            if (checksum != 0) {
+                throw new IllegalStateException("Trie and linear filtering disagree");
+            }
+            System.out.println(String.format("%,d suggestions: build %,d ms, trie %,.1f us/query, linear %,.1f us/query",
+                    size, TimeUnit.NANOSECONDS.toMillis(build),
+                    trieBest / 1000.0 / QUERIES, linearBest / 1000.0 / QUERIES));
+        }
+    }
+
+    private static String lemma(final Random random) {
+        final char[] chars = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.cache;
+
+import org.junit.jupiter.api.Test;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionTrieTest {
+
+    @Test
+    public void matchesValueOrDescription() {
+        final CIValue house = new CIValue("house", "A building");
+        final CIValue horse = new CIValue("Horse", null);
+        final CIValue home = new CIValue("home", "house, dwelling");
+        final CIValue building = new CIValue("building", "Building");
+        final SuggestionTrie trie = SuggestionTrie.build(Arrays.asList(house, horse, home, building));
+
+        assertEquals(Arrays.asList(house, horse, home, building), trie.filter(""));
+        assertEquals(Arrays.asList(house, horse, home), trie.filter("h"));
+        assertEquals(Collections.singletonList(horse), trie.filter("HOR"));
+        assertEquals(Arrays.asList(house, home), trie.filter("hous"));
+        assertEquals(Collections.singletonList(building), trie.filter("build"));
+        assertEquals(Collections.singletonList(house), trie.filter("a b"));
+        assertEquals(Collections.emptyList(), trie.filter("houses"));
+        assertEquals(Collections.emptyList(), trie.filter("x"));
+    }
+
+    @Test
+    public void longPrefixes() {
+        final char[] chars = new char[SuggestionTrie.MAX_KEY_LENGTH * 2];
+        Arrays.fill(chars, 'a');
+        final String longValue = new String(chars);
+        final CIValue a = new CIValue(longValue, null);
+        final CIValue b = new CIValue(longValue.substring(0, SuggestionTrie.MAX_KEY_LENGTH) + "b", null);
+        final SuggestionTrie trie = SuggestionTrie.build(Arrays.asList(a, b));
+
+        assertEquals(Arrays.asList(a, b), trie.filter(longValue.substring(0, SuggestionTrie.MAX_KEY_LENGTH)));
+        assertEquals(Collections.singletonList(a), trie.filter(longValue.substring(0, SuggestionTrie.MAX_KEY_LENGTH + 1)));
+        assertEquals(Collections.singletonList(b), trie.filter(b.getValue()));
+    }
+
+    @Test
+    public void sameAsLinearFilter() {
+        final Random random = new Random(42);
+        final List<CIValue> suggestions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            suggestions.add(new CIValue(randomString(random), random.nextBoolean() ? randomString(random) : null));
+        }
+        final SuggestionTrie trie = SuggestionTrie.build(suggestions);
+
+        for (int i = 0; i < 500; i++) {
+            final String prefix = randomString(random).substring(0, random.nextInt(4));
+            final List<CIValue> expected = SuggestionTrie.filter(suggestions, prefix);
+            final List<CIValue> actual = trie.filter(prefix);
+            assertEquals(expected.size(), actual.size(), prefix);
+            for (int j = 0; j < expected.size(); j++) {
+                assertSame(expected.get(j), actual.get(j));
+            }
+        }
+    }
+
+    static String randomString(final Random random) {
+        final char[] chars = new char[3 + random.nextInt(10)];
+        for (int i = 0; i < chars.length; i++) {
+            final char c = (char) ('a' + random.nextInt(4));
+            chars[i] = random.nextInt(5) == 0 ? Character.toUpperCase(c) : c;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmItem;
+import net.sf.saxon.s9api.XdmNode;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class CompiledXPathsTest {
+
+    private static final Map<String, String> TEI = Collections.singletonMap("t", "http://www.tei-c.org/ns/1.0");
+
+    @Test
+    public void evaluate() throws SaxonApiException {
+        final XdmNode doc = CompiledXPaths.PROCESSOR.newDocumentBuilder().build(new StreamSource(new StringReader(
+                "<TEI xmlns='http://www.tei-c.org/ns/1.0'><w lemma='kuća' pos='N'>kuće</w><w lemma='biti' pos='V'>je</w></TEI>")));
+
+        final CompiledXPaths xpaths = CompiledXPaths.compile(TEI, "//t:w[@lemma]", "@lemma", "pos");
+
+        final XPathSelector contexts = xpaths.getContext().load();
+        contexts.setContextItem(doc);
+        final XPathSelector selection = xpaths.getSelection().load();
+        final XPathSelector dependent = xpaths.getDependent().load();
+
+        final StringBuilder values = new StringBuilder();
+        for (final XdmItem context : contexts) {
+            selection.setContextItem(context);
+            dependent.setContextItem(context);
+            values.append(selection.evaluateSingle().getStringValue()).append('/').append(dependent.evaluateSingle().getStringValue()).append(' ');
+        }
+        assertEquals("kuća/N biti/V ", values.toString());
+    }
+
+    @Test
+    public void withoutSelectionOrDependent() throws SaxonApiException {
+        final CompiledXPaths xpaths = CompiledXPaths.compile(null, "//w", null, null);
+        assertNull(xpaths.getSelection());
+        assertNull(xpaths.getDependent());
+    }
+
+    @Test
+    public void malformed() {
+        assertThrows(SaxonApiException.class, () -> CompiledXPaths.compile(TEI, "//t:w[", null, null));
+        assertThrows(SaxonApiException.class, () -> CompiledXPaths.compile(TEI, "//t:w", "@", null));
+        assertThrows(SaxonApiException.class, () -> CompiledXPaths.compile(Collections.emptyMap(), "//t:w", null, null));
+    }
+}
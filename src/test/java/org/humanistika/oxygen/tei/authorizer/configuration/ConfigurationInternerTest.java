@@ -0,0 +1,70 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class ConfigurationInternerTest {
+
+    @Test
+    public void namespaceBindings() {
+        final ConfigurationInterner interner = new ConfigurationInterner();
+
+        final Map<String, String> bindings = new HashMap<>();
+        bindings.put("tei", "http://www.tei-c.org/ns/1.0");
+        final Map<String, String> interned = interner.namespaceBindings(bindings);
+        assertEquals(bindings, interned);
+        assertThrows(UnsupportedOperationException.class, () -> interned.put("xml", "http://www.w3.org/XML/1998/namespace"));
+
+        // equal bindings share the interned map
+        final Map<String, String> other = new HashMap<>(bindings);
+        assertSame(interned, interner.namespaceBindings(other));
+
+        bindings.put("xml", "http://www.w3.org/XML/1998/namespace");
+        assertNotSame(interned, interner.namespaceBindings(bindings));
+
+        assertNull(interner.namespaceBindings(null));
+    }
+
+    @Test
+    public void authentication() {
+        final ConfigurationInterner interner = new ConfigurationInterner();
+
+        final Authentication authentication = interner.authentication(new Authentication(Authentication.AuthenticationType.DIGEST, "user", "pass"));
+        assertSame(authentication, interner.authentication(new Authentication(Authentication.AuthenticationType.DIGEST, "user", "pass")));
+        assertNotSame(authentication, interner.authentication(new Authentication(Authentication.AuthenticationType.PREEMPTIVE_BASIC, "user", "pass")));
+        assertNotSame(authentication, interner.authentication(new Authentication(Authentication.AuthenticationType.DIGEST, "user", "other")));
+    }
+}
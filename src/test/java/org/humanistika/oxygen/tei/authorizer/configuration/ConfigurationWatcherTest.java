@@ -0,0 +1,87 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class ConfigurationWatcherTest {
+
+    @Test
+    public void reloadsChangedConfiguration(@TempDir final Path dir) throws IOException, InterruptedException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, "<config/>".getBytes(StandardCharsets.UTF_8));
+
+        final AtomicInteger loads = new AtomicInteger();
+        final BlockingQueue<Configuration> reloaded = new LinkedBlockingQueue<>();
+        try (final ConfigurationWatcher watcher = new ConfigurationWatcher(configFile, () -> { loads.incrementAndGet(); return configuration(); }, reloaded::add)) {
+            Files.write(dir.resolve("other.xml"), "<other/>".getBytes(StandardCharsets.UTF_8));
+            Files.write(configFile, "<config><autoComplete/></config>".getBytes(StandardCharsets.UTF_8));
+            Files.write(configFile, "<config><autoComplete/><autoComplete/></config>".getBytes(StandardCharsets.UTF_8));
+
+            final Configuration configuration = reloaded.poll(10, TimeUnit.SECONDS);
+            assertNotNull(configuration);
+
+            // the writes are coalesced into a single reload
+            assertNull(reloaded.poll(ConfigurationWatcher.QUIET_PERIOD * 2, TimeUnit.MILLISECONDS));
+            assertEquals(1, loads.get());
+        }
+    }
+
+    @Test
+    public void keepsPreviousConfigurationWhenInvalid(@TempDir final Path dir) throws IOException, InterruptedException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, "<config/>".getBytes(StandardCharsets.UTF_8));
+
+        final BlockingQueue<Configuration> reloaded = new LinkedBlockingQueue<>();
+        // a configuration which cannot be loaded has no auto-completes
+        try (final ConfigurationWatcher watcher = new ConfigurationWatcher(configFile, () -> () -> null, reloaded::add)) {
+            Files.write(configFile, "<config".getBytes(StandardCharsets.UTF_8));
+
+            assertNull(reloaded.poll(ConfigurationWatcher.QUIET_PERIOD * 4, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static Configuration configuration() {
+        final List<AutoComplete> autoCompletes = Collections.emptyList();
+        return () -> autoCompletes;
+    }
+}
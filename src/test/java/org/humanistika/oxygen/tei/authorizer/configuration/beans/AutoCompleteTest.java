@@ -0,0 +1,58 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.beans;
+
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class AutoCompleteTest {
+
+    @Test
+    public void pageRequestInfo() {
+        final AutoComplete paged = autoComplete("http://localhost/lemma?s=$selection&offset=$offset&limit=$limit", 50);
+        assertTrue(paged.isServerPaged());
+        assertEquals("http://localhost/lemma?s=$selection&offset=0&limit=50", paged.getPageRequestInfo(0).getUrl());
+        assertEquals("http://localhost/lemma?s=$selection&offset=100&limit=50", paged.getPageRequestInfo(100).getUrl());
+
+        // paged locally
+        final AutoComplete unpaged = autoComplete("http://localhost/lemma?s=$selection", 50);
+        assertFalse(unpaged.isServerPaged());
+        assertSame(unpaged.getRequestInfo(), unpaged.getPageRequestInfo(100));
+
+        // no page size
+        assertFalse(autoComplete("http://localhost/lemma?offset=$offset", 0).isServerPaged());
+    }
+
+    private static AutoComplete autoComplete(final String url, final int pageSize) {
+        return new AutoComplete(Collections.emptyMap(), "//tei:w", "lemmaRef", null, null, new RequestInfo(url, null), null, null, CacheInfo.DEFAULT, 0, pageSize);
+    }
+}
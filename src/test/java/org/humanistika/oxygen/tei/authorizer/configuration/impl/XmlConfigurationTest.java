@@ -0,0 +1,306 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.configuration.impl;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.ConfigurationInterner;
+import org.humanistika.oxygen.tei.authorizer.configuration.Lazy;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UserFieldInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class XmlConfigurationTest {
+
+    private final static String CONFIG =
+            "<config xmlns='http://humanistika.org/ns/tei-authorizer'>\n" +
+            "  <server>\n" +
+            "    <authentication type='Preemptive-Basic'><username>user</username><password>pass</password></authentication>\n" +
+            "    <baseUrl>http://localhost/multext</baseUrl>\n" +
+            "  </server>\n" +
+            "  <namespaceBindings><binding prefix='tei' namespace='http://www.tei-c.org/ns/1.0'/></namespaceBindings>\n" +
+            "  <autoComplete>\n" +
+            "    <context>//tei:w</context>\n" +
+            "    <attribute>lemma</attribute>\n" +
+            "    <dependent default='default-ana'>ana</dependent>\n" +
+            "    <selection>./text()</selection>\n" +
+            "    <request pageSize='25' budget='300'><url>$baseUrl/lemma?s=$selection&amp;d=$dependent</url></request>\n" +
+            "    <response><transformation>lemma.xslt</transformation></response>\n" +
+            "    <cache ttl='120' maxEntries='50' prefetch='10' prefixFilter='true' indexTtl='3600'/>\n" +
+            "    <upload method='PUT' async='true'>\n" +
+            "      <userFields><userField name='sense' label='Sense' required='true' validateWith='[a-z]+'/></userFields>\n" +
+            "      <url>$baseUrl/lemma/$suggestion</url>\n" +
+            "      <body type='JSON' encoding='GZIP' includeSelection='true'/>\n" +
+            "      <batch window='100' maxSize='20'><url>$baseUrl/lemma/batch</url></batch>\n" +
+            "    </upload>\n" +
+            "  </autoComplete>\n" +
+            "  <autoComplete>\n" +
+            "    <context>//tei:name</context>\n" +
+            "    <attribute>ref</attribute>\n" +
+            "    <selection>.</selection>\n" +
+            "    <request><url>$baseUrl/name?s=$selection</url></request>\n" +
+            "  </autoComplete>\n" +
+            "</config>\n";
+
+    @Test
+    public void snapshot(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        final Path snapshotFile = dir.resolve("config.xml.snapshot");
+        Files.write(configFile, CONFIG.getBytes(StandardCharsets.UTF_8));
+
+        final XmlConfiguration configuration = new XmlConfiguration(configFile);
+        final List<AutoComplete> loaded = configuration.getAutoCompletes();
+        assertEquals(2, loaded.size());
+        assertTrue(Files.exists(snapshotFile));
+
+        final byte[] hash = ConfigurationSnapshot.hash(configFile, Files.readAllBytes(configFile));
+        final List<AutoComplete> snapshot = ConfigurationSnapshot.read(snapshotFile, hash, new ConfigurationInterner(), configuration::expandUpload);
+        assertNotNull(snapshot);
+        assertEquals(describe(loaded), describe(snapshot));
+        assertNotNull(snapshot.get(0).getCompiledXPaths());
+
+        assertEquals(describe(loaded), describe(new XmlConfiguration(configFile).getAutoCompletes()));
+
+        // a changed config does not match the snapshot, and is loaded and snapshotted again
+        Files.write(configFile, CONFIG.replace("//tei:name", "//tei:persName").getBytes(StandardCharsets.UTF_8));
+        final byte[] changedHash = ConfigurationSnapshot.hash(configFile, Files.readAllBytes(configFile));
+        assertNull(ConfigurationSnapshot.read(snapshotFile, changedHash, new ConfigurationInterner(), configuration::expandUpload));
+        assertEquals("//tei:persName", new XmlConfiguration(configFile).getAutoCompletes().get(1).getContext());
+        assertEquals("//tei:persName", ConfigurationSnapshot.read(snapshotFile, changedHash, new ConfigurationInterner(), configuration::expandUpload).get(1).getContext());
+    }
+
+    @Test
+    public void uploadsAreNotExpanded(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.getBytes(StandardCharsets.UTF_8));
+
+        // loaded from the config and written to the snapshot, and then from the snapshot
+        for (int i = 0; i < 2; i++) {
+            final AutoComplete lemma = new XmlConfiguration(configFile).getAutoCompletes().get(0);
+            assertFalse(isExpanded(lemma.getUploadInfoSupplier()));
+            assertEquals("PUT $baseUrl/lemma/$suggestion", lemma.getUploadKey());
+            assertFalse(isExpanded(lemma.getUploadInfoSupplier()));
+
+            assertEquals(UploadInfo.Method.PUT, lemma.getUploadInfo().getMethod());
+            assertTrue(isExpanded(lemma.getUploadInfoSupplier()));
+        }
+    }
+
+    private static boolean isExpanded(final Supplier<UploadInfo> uploadInfo) {
+        if (uploadInfo instanceof UnexpandedUpload) {
+            return ((UnexpandedUpload) uploadInfo).isExpanded();
+        }
+        // read from the snapshot, and decoded when it is first needed
+        return ((Lazy<UploadInfo>) uploadInfo).isComputed();
+    }
+
+    @Test
+    public void sharedValues(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.getBytes(StandardCharsets.UTF_8));
+
+        // expanded from the config, and then from the snapshot
+        for (int i = 0; i < 2; i++) {
+            final List<AutoComplete> autoCompletes = new XmlConfiguration(configFile).getAutoCompletes();
+            final AutoComplete lemma = autoCompletes.get(0);
+            final AutoComplete name = autoCompletes.get(1);
+
+            assertSame(lemma.getNamespaceBindings(), name.getNamespaceBindings());
+            assertSame(lemma.getRequestInfo().getAuthentication(), name.getRequestInfo().getAuthentication());
+            assertSame(lemma.getRequestInfo().getAuthentication(), lemma.getUploadInfo().getAuthentication());
+        }
+    }
+
+    @Test
+    public void corruptSnapshot(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("config.xml.snapshot"), new byte[] { 0x54, 0x41, 0x43, 0x53, 0, 0 });
+
+        assertEquals(2, new XmlConfiguration(configFile).getAutoCompletes().size());
+    }
+
+    @Test
+    public void lazyUpload(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.replace("validateWith='[a-z]+'", "validateWith='[a-z'").getBytes(StandardCharsets.UTF_8));
+
+        final List<AutoComplete> autoCompletes = new XmlConfiguration(configFile).getAutoCompletes();
+        assertTrue(autoCompletes.get(0).hasUpload());
+        assertFalse(autoCompletes.get(1).hasUpload());
+
+        // an invalid regex is only reported when the user field is used
+        final UserFieldInfo sense = autoCompletes.get(0).getUploadInfo().getUserFieldsInfo().get(0);
+        assertEquals("[a-z", sense.getValidateWithRegex());
+        assertNull(sense.getValidateWith());
+    }
+
+    @Test
+    public void requestServerInfo(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.replace("<server>", "<server maxConnections='5' maxConnectionsPerHost='2' idleTimeout='60'>").getBytes(StandardCharsets.UTF_8));
+
+        // loaded from the config, and then from the snapshot
+        for (int i = 0; i < 2; i++) {
+            final ServerInfo serverInfo = new XmlConfiguration(configFile).getAutoCompletes().get(0).getRequestServerInfo();
+            assertEquals("http://localhost/multext", serverInfo.getBaseUrl());
+            assertEquals(5, serverInfo.getMaxConnections());
+            assertEquals(2, serverInfo.getMaxConnectionsPerHost());
+            assertEquals(60_000, serverInfo.getIdleTimeout());
+        }
+    }
+
+    @Test
+    public void uploadKeyIsUnchangedByServer(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.getBytes(StandardCharsets.UTF_8));
+        final AutoComplete lemma = new XmlConfiguration(configFile).getAutoCompletes().get(0);
+
+        Files.write(configFile, CONFIG.replace("<password>pass</password>", "<password>changed</password>").replace("http://localhost/multext", "http://localhost:8080/multext").getBytes(StandardCharsets.UTF_8));
+        final AutoComplete reloaded = new XmlConfiguration(configFile).getAutoCompletes().get(0);
+
+        assertEquals("PUT $baseUrl/lemma/$suggestion", lemma.getUploadKey());
+        assertEquals(lemma.getUploadKey(), reloaded.getUploadKey());
+        assertEquals(lemma.getUploadKey(), reloaded.getUploadInfo().getKey());
+        assertNull(new XmlConfiguration(configFile).getAutoCompletes().get(1).getUploadKey());
+    }
+
+    @Test
+    public void pagedUrlRequiresPageSize(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.replace("$baseUrl/name?s=$selection", "$baseUrl/name?s=$selection&amp;o=$offset&amp;n=$limit").getBytes(StandardCharsets.UTF_8));
+
+        // without a pageSize, the auto-complete would send the page variables unexpanded
+        final List<AutoComplete> autoCompletes = new XmlConfiguration(configFile).getAutoCompletes();
+        assertEquals(1, autoCompletes.size());
+        assertEquals("//tei:w", autoCompletes.get(0).getContext());
+
+        Files.write(configFile, CONFIG.replace("<request><url>$baseUrl/name?s=$selection", "<request pageSize='10'><url>$baseUrl/name?s=$selection&amp;o=$offset&amp;n=$limit").getBytes(StandardCharsets.UTF_8));
+        final AutoComplete name = new XmlConfiguration(configFile).getAutoCompletes().get(1);
+        assertTrue(name.isServerPaged());
+        assertEquals("http://localhost/multext/name?s=$selection&o=20&n=10", name.getPageRequestInfo(20).getUrl());
+    }
+
+    @Test
+    public void credentialsAreNotExpandedAgain(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, CONFIG.replace("<password>pass</password>", "<password>pa$suggestion</password>").replace("<url>$baseUrl/lemma/$suggestion</url>", "<url>$baseUrl/lemma/$suggestion?key=$password</url>").getBytes(StandardCharsets.UTF_8));
+
+        // the password is bound once, and is not mistaken for the $suggestion variable
+        final UploadInfo uploadInfo = new XmlConfiguration(configFile).getAutoCompletes().get(0).getUploadInfo();
+        assertEquals("http://localhost/multext/lemma/word?key=pa$suggestion", uploadInfo.getUrl(Collections.singletonMap(UploadInfo.UrlVar.SUGGESTION, "word")).toString());
+    }
+
+    @Test
+    public void compressionLevelIsValidated(@TempDir final Path dir) throws IOException {
+        final Path configFile = dir.resolve("config.xml");
+
+        // each encoding has its own range of levels
+        final String[][] levels = {
+                { "GZIP", "9", "true" },
+                { "GZIP", "10", "false" },
+                { "DEFLATE", "0", "true" },
+                { "DEFLATE", "-2", "false" },
+                { "ZSTD", "22", "true" },
+                { "ZSTD", "0", "false" }
+        };
+        for (final String[] level : levels) {
+            Files.write(configFile, CONFIG.replace("encoding='GZIP'", "encoding='" + level[0] + "' level='" + level[1] + "'").getBytes(StandardCharsets.UTF_8));
+            final List<AutoComplete> autoCompletes = new XmlConfiguration(configFile).getAutoCompletes();
+            assertEquals(Boolean.parseBoolean(level[2]) ? 2 : 1, autoCompletes.size(), level[0] + " level " + level[1]);
+        }
+    }
+
+    @Test
+    public void parallelExpansionPreservesOrder(@TempDir final Path dir) throws IOException {
+        final StringBuilder config = new StringBuilder("<config xmlns='http://humanistika.org/ns/tei-authorizer'>\n");
+        for (int i = 0; i < 100; i++) {
+            config.append("<autoComplete><context>//w").append(i).append("</context><attribute>lemma</attribute><selection>.</selection><request><url>http://localhost/").append(i).append("</url></request></autoComplete>\n");
+        }
+        config.append("</config>\n");
+
+        final Path configFile = dir.resolve("config.xml");
+        Files.write(configFile, config.toString().getBytes(StandardCharsets.UTF_8));
+
+        final List<AutoComplete> autoCompletes = new XmlConfiguration(configFile).getAutoCompletes();
+        assertEquals(100, autoCompletes.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("//w" + i, autoCompletes.get(i).getContext());
+            assertEquals("http://localhost/" + i, autoCompletes.get(i).getRequestInfo().getUrl());
+        }
+    }
+
+    private static List<Object> describe(final List<AutoComplete> autoCompletes) {
+        final List<Object> description = new ArrayList<>();
+        for (final AutoComplete autoComplete : autoCompletes) {
+            description.addAll(Arrays.asList(
+                    autoComplete.getNamespaceBindings(),
+                    autoComplete.getContext(),
+                    autoComplete.getAttribute(),
+                    autoComplete.getDependent() == null ? null : Arrays.asList(autoComplete.getDependent().getDefault(), autoComplete.getDependent().getAttribute(), autoComplete.getDependent().getLabel()),
+                    Arrays.asList(autoComplete.getSelection().getXPath(), autoComplete.getSelection().getLabel()),
+                    autoComplete.getRequestInfo().getUrl(),
+                    autoComplete.getRequestServerInfo(),
+                    Arrays.asList(autoComplete.getRequestInfo().getAuthentication().getAuthenticationType(), autoComplete.getRequestInfo().getAuthentication().getUsername(), autoComplete.getRequestInfo().getAuthentication().getPassword()),
+                    autoComplete.getResponseAction() == null ? null : autoComplete.getResponseAction().getTransformation(),
+                    Arrays.asList(autoComplete.getCacheInfo().getTtl(), autoComplete.getCacheInfo().getMaxEntries(), autoComplete.getCacheInfo().getPrefetch(), autoComplete.getCacheInfo().getIndexTtl(), autoComplete.getCacheInfo().isPrefixFilter()),
+                    autoComplete.getLatencyBudget(),
+                    autoComplete.getPageSize()
+            ));
+
+            final UploadInfo uploadInfo = autoComplete.getUploadInfo();
+            if (uploadInfo != null) {
+                description.addAll(Arrays.asList(autoComplete.getUploadKey(), uploadInfo.getMethod(), uploadInfo.getUrlTemplate(), uploadInfo.getConfiguredUrl(), uploadInfo.isAsync(), uploadInfo.getAuthentication().getUsername()));
+                for (final UserFieldInfo userFieldInfo : uploadInfo.getUserFieldsInfo()) {
+                    description.addAll(Arrays.asList(userFieldInfo.getName(), userFieldInfo.getLabel(), userFieldInfo.isMultiline(), userFieldInfo.isRequired(), userFieldInfo.getInitialValue(), userFieldInfo.getDefaultValue(), userFieldInfo.getValidateWith().pattern()));
+                }
+                final BodyInfo bodyInfo = uploadInfo.getBodyInfo();
+                description.addAll(Arrays.asList(bodyInfo.getBodyType(), bodyInfo.getEncoding(), bodyInfo.isIncludeSelection(), bodyInfo.isIncludeDependent(), bodyInfo.getTransformation(), bodyInfo.getLevel(), bodyInfo.getMinSize()));
+                description.addAll(Arrays.asList(uploadInfo.getBatchInfo().getUrlTemplate(), uploadInfo.getBatchInfo().getWindow(), uploadInfo.getBatchInfo().getMaxSize()));
+                description.add(uploadInfo.getServerInfo());
+            }
+        }
+        return description;
+    }
+}
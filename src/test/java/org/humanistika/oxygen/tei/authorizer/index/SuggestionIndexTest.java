@@ -0,0 +1,136 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.index;
+
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.AutoComplete;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.CacheInfo;
+import org.humanistika.oxygen.tei.completer.configuration.beans.RequestInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.sync.contentcompletion.xml.CIValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class SuggestionIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @Test
+    public void writeAndLookup() throws IOException {
+        final List<SuggestionIndex.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(new SuggestionIndex.Entry("lemma" + i, i % 2 == 0 ? "noun" : null, i, Arrays.asList(new CIValue("id" + i, "Lemma " + i), new CIValue("shared", null))));
+        }
+        entries.add(new SuggestionIndex.Entry(null, null, 5, Collections.singletonList(new CIValue("none", null))));
+        entries.add(new SuggestionIndex.Entry("", "", 5, Collections.emptyList()));
+        entries.add(new SuggestionIndex.Entry("ćирилица 😀", null, 5, Collections.singletonList(new CIValue("ćирилица", "😀"))));
+
+        final Path file = tempDir.resolve("test.idx");
+        SuggestionIndex.write(file, entries);
+
+        try (final SuggestionIndex index = SuggestionIndex.open(file)) {
+            assertEquals(entries.size(), index.size());
+            for (int i = 0; i < 1000; i++) {
+                final List<CIValue> suggestions = index.lookup("lemma" + i, i % 2 == 0 ? "noun" : null, Long.MIN_VALUE);
+                assertNotNull(suggestions);
+                assertEquals(2, suggestions.size());
+                assertEquals("id" + i, suggestions.get(0).getValue());
+                assertEquals("Lemma " + i, suggestions.get(0).getAnnotation());
+                assertEquals("shared", suggestions.get(1).getValue());
+                assertNull(suggestions.get(1).getAnnotation());
+            }
+
+            assertEquals("none", index.lookup(null, null, Long.MIN_VALUE).get(0).getValue());
+            assertEquals(0, index.lookup("", "", Long.MIN_VALUE).size());
+            assertEquals("😀", index.lookup("ćирилица 😀", null, Long.MIN_VALUE).get(0).getAnnotation());
+
+            assertNull(index.lookup("lemma1", "noun", Long.MIN_VALUE));
+            assertNull(index.lookup("lemma", null, Long.MIN_VALUE));
+            assertNull(index.lookup("zzz", null, Long.MIN_VALUE));
+            assertNull(index.lookup("", null, Long.MIN_VALUE));
+            assertNull(index.lookup("\u0000", null, Long.MIN_VALUE));
+
+            // too old
+            assertNull(index.lookup("lemma10", "noun", 11));
+            assertNotNull(index.lookup("lemma10", "noun", 10));
+        }
+    }
+
+    @Test
+    public void persistedAcrossInstances() {
+        final AutoComplete autoComplete = autoComplete("http://localhost/lemma?s=$selected");
+        final AutoComplete other = autoComplete("http://localhost/other?s=$selected");
+
+        final SuggestionIndexes indexes = new SuggestionIndexes(tempDir, now::get, Long.MAX_VALUE);
+        assertNull(indexes.lookup(autoComplete, "a", null, Long.MAX_VALUE));
+
+        indexes.update(autoComplete, "a", null, Collections.singletonList(new CIValue("x", "X")));
+        assertEquals("x", indexes.lookup(autoComplete, "a", null, Long.MAX_VALUE).get(0).getValue());
+        assertNull(indexes.lookup(other, "a", null, Long.MAX_VALUE));
+
+        indexes.flush();
+        indexes.update(autoComplete, "b", null, Collections.singletonList(new CIValue("y", null)));
+        indexes.close();
+
+        now.addAndGet(500);
+        final SuggestionIndexes reopened = new SuggestionIndexes(tempDir, now::get, Long.MAX_VALUE);
+        assertEquals("x", reopened.lookup(autoComplete, "a", null, Long.MAX_VALUE).get(0).getValue());
+        assertEquals("y", reopened.lookup(autoComplete, "b", null, Long.MAX_VALUE).get(0).getValue());
+        assertNull(reopened.lookup(autoComplete, "a", null, 499));
+        assertNull(reopened.lookup(other, "a", null, Long.MAX_VALUE));
+        reopened.close();
+
+        // only the latest generation of the index is kept
+        assertEquals(1, listFiles().size());
+    }
+
+    private List<Path> listFiles() {
+        try (final Stream<Path> files = Files.list(tempDir)) {
+            return files.collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static AutoComplete autoComplete(final String url) {
+        return new AutoComplete(Collections.emptyMap(), "//tei:w", "lemmaRef", null, null, new RequestInfo(url, null), null, null, CacheInfo.DEFAULT);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void timerPercentiles() {
+        final Metrics metrics = new Metrics();
+        final Timer timer = metrics.timer("test");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        final TimerSnapshot snapshot = metrics.getTimers().get("test");
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50.5, snapshot.getMean(), 0.001);
+        assertEquals(100, snapshot.getMax(), 0.001);
+
+        //percentiles are the upper bound of a power of two bucket, so are at most twice the actual value
+        assertTrue(snapshot.getP50() >= 50 && snapshot.getP50() <= 100, "p50: " + snapshot.getP50());
+        assertTrue(snapshot.getP99() >= 99 && snapshot.getP99() <= 100, "p99: " + snapshot.getP99());
+
+        metrics.reset();
+        assertEquals(0, metrics.getTimers().get("test").getCount());
+    }
+
+    @Test
+    public void snapshotFile() throws IOException {
+        final Metrics metrics = new Metrics();
+        metrics.counter("upload.success[http://localhost/suggestion?value=$value]").add(3);
+        metrics.timer("upload.phase.network").record(TimeUnit.MILLISECONDS.toNanos(4));
+
+        final Path snapshotFile = tempDir.resolve("metrics.properties");
+        try (final MetricsReporter reporter = new MetricsReporter(metrics, snapshotFile, 1, TimeUnit.HOURS)) {
+            reporter.writeSnapshot();
+
+            final Properties properties = new Properties();
+            try (final Reader reader = Files.newBufferedReader(snapshotFile)) {
+                properties.load(reader);
+            }
+            assertEquals("3", properties.getProperty("counter.upload.success[http://localhost/suggestion?value=$value]"));
+            assertEquals("1", properties.getProperty("timer.upload.phase.network.count"));
+            assertEquals(4.0, Double.parseDouble(properties.getProperty("timer.upload.phase.network.max")), 0.001);
+        }
+    }
+}
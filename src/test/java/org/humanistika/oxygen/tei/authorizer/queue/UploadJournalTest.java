@@ -0,0 +1,133 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class UploadJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void pendingUploadsSurviveReopen() throws IOException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            final QueuedUpload first = journal.append("POST http://localhost/suggestion", "first", "desc", "sel", "dep", null);
+            journal.append("POST http://localhost/suggestion", "second", null, null, null, null);
+            journal.acknowledge(first.getId());
+        }
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            final List<QueuedUpload> pending = journal.pending();
+            assertEquals(1, pending.size());
+            assertEquals("second", pending.get(0).getSuggestion());
+
+            //ids must not be reused after recovery
+            final QueuedUpload third = journal.append("POST http://localhost/suggestion", "third", null, null, null, null);
+            assertEquals(pending.get(0).getId() + 1, third.getId());
+        }
+    }
+
+    @Test
+    public void tornRecordIsDiscarded() throws IOException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            journal.append("POST http://localhost/suggestion", "first", null, null, null, null);
+            journal.append("POST http://localhost/suggestion", "second", null, null, null, null);
+        }
+
+        //simulate a crash part way through writing the last record
+        try(final FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            assertEquals(1, journal.size());
+            assertEquals("first", journal.pending().get(0).getSuggestion());
+
+            journal.append("POST http://localhost/suggestion", "third", null, null, null, null);
+        }
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            assertEquals(2, journal.size());
+        }
+    }
+
+    @Test
+    public void acknowledgedUploadsAreCompacted() throws IOException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            for(int i = 0; i < 100; i++) {
+                final QueuedUpload queuedUpload = journal.append("POST http://localhost/suggestion", "suggestion-" + i, null, null, null, null);
+                journal.acknowledge(queuedUpload.getId());
+            }
+            journal.append("POST http://localhost/suggestion", "last", null, null, null, null);
+        }
+
+        final long compactedSize = Files.size(journalFile);
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            assertEquals(1, journal.size());
+            assertEquals("last", journal.pending().get(0).getSuggestion());
+        }
+        assertEquals(compactedSize, Files.size(journalFile));
+    }
+
+    @Test
+    public void journalIsOnlyOpenedOnce() throws IOException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            journal.append("POST http://localhost/suggestion", "first", null, null, null, null);
+
+            //a second journal would replay and append concurrently
+            assertThrows(IOException.class, () -> new UploadJournal(journalFile));
+
+            //compaction replaces the journal file, but not the lock
+            for(int i = 0; i < 100; i++) {
+                journal.acknowledge(journal.append("POST http://localhost/suggestion", "suggestion-" + i, null, null, null, null).getId());
+            }
+            assertThrows(IOException.class, () -> new UploadJournal(journalFile));
+        }
+
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            assertEquals(1, journal.size());
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.queue;
+
+import org.humanistika.oxygen.tei.authorizer.remote.Client;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class UploadQueueTest {
+
+    private final static String UPLOAD_KEY = "POST http://localhost/suggestion";
+    private final static String OTHER_UPLOAD_KEY = "POST http://localhost/other-suggestion";
+    private final static long INITIAL_RETRY_DELAY = 50;
+    private final static long MAX_RETRY_DELAY = 200;
+    private final static long TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void replaysInOrder() throws IOException, InterruptedException {
+        final Path journalFile = queue(UPLOAD_KEY, "first", "second", "third");
+
+        final List<String> uploaded = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            final List<Client.SuggestionResponse> suggestionResponses = new ArrayList<>();
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                uploaded.add(queuedUpload.getSuggestion());
+                suggestionResponses.add(new Client.SuggestionResponse(true, null));
+            }
+            return suggestionResponses;
+        }, (queuedUpload, suggestionResponse) -> {}, INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(Arrays.asList("first", "second", "third"), uploaded);
+    }
+
+    @Test
+    public void backsOffWhilstUnreachable() throws IOException, InterruptedException {
+        final Path journalFile = queue(UPLOAD_KEY, "first");
+
+        final int unreachableAttempts = 4;
+        final List<Long> attempts = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            attempts.add(System.nanoTime());
+            final boolean reachable = attempts.size() > unreachableAttempts;
+            return Collections.singletonList(new Client.SuggestionResponse(reachable, reachable ? null : "Connection refused", !reachable));
+        }, (queuedUpload, suggestionResponse) -> {}, INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(unreachableAttempts + 1, attempts.size());
+        long expectedDelay = INITIAL_RETRY_DELAY;
+        for(int i = 1; i < attempts.size(); i++) {
+            final long delay = TimeUnit.NANOSECONDS.toMillis(attempts.get(i) - attempts.get(i - 1));
+            assertTrue(delay >= expectedDelay, "attempt " + i + " was retried after " + delay + "ms, expected at least " + expectedDelay + "ms");
+            expectedDelay = Math.min(expectedDelay * 2, MAX_RETRY_DELAY);
+        }
+    }
+
+    @Test
+    public void rejectedUploadDoesNotBlockQueue() throws IOException, InterruptedException {
+        final Path journalFile = queue(UPLOAD_KEY, "first", "invalid", "third");
+
+        final List<String> uploaded = new CopyOnWriteArrayList<>();
+        final List<String> rejected = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            final List<Client.SuggestionResponse> suggestionResponses = new ArrayList<>();
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                if(queuedUpload.getSuggestion().equals("invalid")) {
+                    suggestionResponses.add(new Client.SuggestionResponse(false, "Bad Request", false));
+                } else {
+                    uploaded.add(queuedUpload.getSuggestion());
+                    suggestionResponses.add(new Client.SuggestionResponse(true, null));
+                }
+            }
+            return suggestionResponses;
+        }, (queuedUpload, suggestionResponse) -> rejected.add(queuedUpload.getSuggestion()), INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(Arrays.asList("first", "third"), uploaded);
+        assertEquals(Collections.singletonList("invalid"), rejected);
+    }
+
+    @Test
+    public void unconfirmedUploadIsKept() throws IOException, InterruptedException {
+        final Path journalFile = queue(UPLOAD_KEY, "first", "unconfirmed", "third");
+
+        final List<String> uploaded = new CopyOnWriteArrayList<>();
+        final List<String> rejected = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            final List<Client.SuggestionResponse> suggestionResponses = new ArrayList<>();
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                if(queuedUpload.getSuggestion().equals("unconfirmed")) {
+                    suggestionResponses.add(new Client.SuggestionResponse(false, "Unable to read the results", false, true));
+                } else {
+                    uploaded.add(queuedUpload.getSuggestion());
+                    suggestionResponses.add(new Client.SuggestionResponse(true, null));
+                }
+            }
+            return suggestionResponses;
+        }, (queuedUpload, suggestionResponse) -> rejected.add(queuedUpload.getSuggestion()), INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            final long deadline = System.currentTimeMillis() + TIMEOUT;
+            while(uploadQueue.size() > 1) {
+                assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the queue to be replayed");
+                Thread.sleep(10);
+            }
+
+            // the unconfirmed upload is not acknowledged
+            assertEquals(1, uploadQueue.size());
+        }
+
+        assertEquals(Arrays.asList("first", "third"), uploaded);
+        assertEquals(Collections.singletonList("unconfirmed"), rejected);
+    }
+
+    @Test
+    public void unconfirmedUploadBacksOff() throws IOException, InterruptedException {
+        final Path journalFile = queue(UPLOAD_KEY, "first");
+
+        final int unconfirmedAttempts = 4;
+        final List<Long> attempts = new CopyOnWriteArrayList<>();
+        final List<String> rejected = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            attempts.add(System.nanoTime());
+            final boolean confirmed = attempts.size() > unconfirmedAttempts;
+            return Collections.singletonList(new Client.SuggestionResponse(confirmed, confirmed ? null : "Unable to read the results", false, !confirmed));
+        }, (queuedUpload, suggestionResponse) -> rejected.add(queuedUpload.getSuggestion()), INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(unconfirmedAttempts + 1, attempts.size());
+        long expectedDelay = INITIAL_RETRY_DELAY;
+        for(int i = 1; i < attempts.size(); i++) {
+            final long delay = TimeUnit.NANOSECONDS.toMillis(attempts.get(i) - attempts.get(i - 1));
+            assertTrue(delay >= expectedDelay, "attempt " + i + " was retried after " + delay + "ms, expected at least " + expectedDelay + "ms");
+            expectedDelay = Math.min(expectedDelay * 2, MAX_RETRY_DELAY);
+        }
+
+        // the user is only told once that the upload could not be confirmed
+        assertEquals(Collections.singletonList("first"), rejected);
+    }
+
+    @Test
+    public void poisonUploadIsRejected() throws IOException, InterruptedException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            journal.append(UPLOAD_KEY, "first", null, null, null, null);
+            journal.append(UPLOAD_KEY, "poison", null, null, null, null);
+            journal.append(UPLOAD_KEY, "third", null, null, null, null);
+            journal.append(OTHER_UPLOAD_KEY, "fourth", null, null, null, null);
+        }
+
+        final AtomicInteger poisonAttempts = new AtomicInteger();
+        final List<String> uploaded = new CopyOnWriteArrayList<>();
+        final List<String> rejected = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            final List<Client.SuggestionResponse> suggestionResponses = new ArrayList<>();
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                if(queuedUpload.getSuggestion().equals("poison")) {
+                    poisonAttempts.incrementAndGet();
+                    throw new IllegalStateException("Unable to upload poison");
+                }
+                suggestionResponses.add(new Client.SuggestionResponse(true, null));
+            }
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                uploaded.add(queuedUpload.getSuggestion());
+            }
+            return suggestionResponses;
+        }, (queuedUpload, suggestionResponse) -> rejected.add(queuedUpload.getSuggestion()), INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(Arrays.asList("first", "third", "fourth"), uploaded);
+        assertEquals(Collections.singletonList("poison"), rejected);
+
+        // once together with its run, and once on its own
+        assertEquals(2, poisonAttempts.get());
+    }
+
+    @Test
+    public void unconfiguredUploadsAreKept() throws IOException, InterruptedException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            journal.append(OTHER_UPLOAD_KEY, "first", null, null, null, null);
+            journal.append(UPLOAD_KEY, "second", null, null, null, null);
+        }
+
+        final AtomicBoolean configured = new AtomicBoolean();
+        final List<String> uploaded = new CopyOnWriteArrayList<>();
+        try(final UploadQueue uploadQueue = new UploadQueue(journalFile, queuedUploads -> {
+            if(queuedUploads.get(0).getUploadKey().equals(OTHER_UPLOAD_KEY) && !configured.get()) {
+                return null;
+            }
+            final List<Client.SuggestionResponse> suggestionResponses = new ArrayList<>();
+            for(final QueuedUpload queuedUpload : queuedUploads) {
+                uploaded.add(queuedUpload.getSuggestion());
+                suggestionResponses.add(new Client.SuggestionResponse(true, null));
+            }
+            return suggestionResponses;
+        }, (queuedUpload, suggestionResponse) -> {}, INITIAL_RETRY_DELAY, MAX_RETRY_DELAY)) {
+
+            // the unconfigured upload does not block those behind it
+            final long deadline = System.currentTimeMillis() + TIMEOUT;
+            while(uploaded.isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the queue to be replayed");
+                Thread.sleep(10);
+            }
+            assertEquals(Collections.singletonList("second"), uploaded);
+            assertEquals(1, uploadQueue.size());
+
+            // once configured again, the kept upload is uploaded
+            configured.set(true);
+            uploadQueue.retry();
+            awaitEmpty(uploadQueue);
+        }
+
+        assertEquals(Arrays.asList("second", "first"), uploaded);
+    }
+
+    private Path queue(final String uploadKey, final String... suggestions) throws IOException {
+        final Path journalFile = tempDir.resolve("upload-queue.journal");
+        try(final UploadJournal journal = new UploadJournal(journalFile)) {
+            for(final String suggestion : suggestions) {
+                journal.append(uploadKey, suggestion, null, null, null, null);
+            }
+        }
+        return journalFile;
+    }
+
+    private static void awaitEmpty(final UploadQueue uploadQueue) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while(uploadQueue.size() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the queue to be replayed");
+            Thread.sleep(10);
+        }
+    }
+}
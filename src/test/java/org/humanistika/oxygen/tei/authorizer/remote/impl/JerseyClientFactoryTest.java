@@ -0,0 +1,113 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BatchInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.authorizer.remote.Client;
+import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
+import org.humanistika.oxygen.tei.completer.remote.ClientFactory.AuthenticationType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link JerseyClientFactory}
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class JerseyClientFactoryTest {
+
+    @Test
+    public void clientsAreSharedPerServerAndAuthentication() {
+        final JerseyClientFactory factory = JerseyClientFactory.getInstance();
+        final ServerInfo server1 = new ServerInfo("http://server1/", 20, 10, 30_000);
+        final ServerInfo server2 = new ServerInfo("http://server2/", 20, 10, 30_000);
+
+        final JerseyClient client = factory.getClient(server1, Authentication.AuthenticationType.DIGEST);
+        assertSame(client, factory.getClient(new ServerInfo("http://server1/", 20, 10, 30_000), Authentication.AuthenticationType.DIGEST));
+        assertNotSame(client, factory.getClient(server1, Authentication.AuthenticationType.PREEMPTIVE_BASIC));
+        assertNotSame(client, factory.getClient(server2, Authentication.AuthenticationType.DIGEST));
+    }
+
+    @Test
+    public void pooledConnectionsAreReleased() throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/upload", exchange -> respond(exchange, 200, "accepted"));
+        server.createContext("/batch", exchange -> respond(exchange, 500, "failed"));
+        server.start();
+        try {
+            final String baseUrl = "http://localhost:" + server.getAddress().getPort();
+            final JerseyClient client = JerseyClientFactory.getInstance().getClient(new ServerInfo(baseUrl, 2, 2, 30_000), null);
+            final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+            final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, baseUrl + "/upload", null, null, bodyInfo, false, null);
+            final UploadInfo batchUploadInfo = new UploadInfo(UploadInfo.Method.POST, baseUrl + "/upload", null, null, bodyInfo, false, new BatchInfo(baseUrl + "/batch", 0, 10));
+
+            // more uploads than there are connections in the pool, each of which has a response body
+            assertTimeoutPreemptively(Duration.ofMillis(JerseyClientFactory.CONNECTION_REQUEST_TIMEOUT), () -> {
+                for (int i = 0; i < 5; i++) {
+                    assertTrue(client.uploadSuggestion(uploadInfo, "suggestion-" + i, null, null, null, null).isSuccess());
+
+                    final Client.SuggestionResponse batchResponse = client.uploadSuggestions(batchUploadInfo, Collections.singletonList(new Client.SuggestionUpload("suggestion-" + i, null, null, null, null))).get(0);
+                    assertFalse(batchResponse.isSuccess());
+                    assertEquals("Internal Server Error", batchResponse.getMessage());
+                }
+            });
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Test
+    public void defaultClientsAreShared() {
+        final JerseyClientFactory factory = JerseyClientFactory.getInstance();
+        assertSame(factory.createClient(AuthenticationType.NONE), factory.createClient(AuthenticationType.NONE));
+        assertSame(factory.createClient(AuthenticationType.NONE), factory.getClient(ServerInfo.DEFAULT, null));
+    }
+}
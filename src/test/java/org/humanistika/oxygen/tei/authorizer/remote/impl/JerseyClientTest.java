@@ -20,14 +20,22 @@
 package org.humanistika.oxygen.tei.authorizer.remote.impl;
 
 import org.apache.commons.codec.binary.Base64;
+import org.glassfish.jersey.message.DeflateEncoder;
 import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.filter.EncodingFilter;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.glassfish.jersey.test.JerseyTest;
 import org.humanistika.ns.tei_authorizer.Suggestion;
+import org.humanistika.ns.tei_authorizer.SuggestionResult;
+import org.humanistika.ns.tei_authorizer.SuggestionResults;
+import org.humanistika.ns.tei_authorizer.Suggestions;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.BatchInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.BodyInfo;
 import org.humanistika.oxygen.tei.authorizer.configuration.beans.UploadInfo;
+import org.humanistika.oxygen.tei.authorizer.configuration.beans.ServerInfo;
+import org.humanistika.oxygen.tei.authorizer.metrics.Metrics;
+import org.humanistika.oxygen.tei.authorizer.remote.Client;
 import org.humanistika.oxygen.tei.completer.configuration.beans.Authentication;
 import org.humanistika.oxygen.tei.completer.remote.ClientFactory.AuthenticationType;
 import org.junit.jupiter.api.BeforeEach;
@@ -40,12 +48,22 @@ import javax.ws.rs.*;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.*;
+import javax.xml.bind.JAXBException;
 
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.nio.file.attribute.UserPrincipal;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -65,7 +83,9 @@ public class JerseyClientTest extends JerseyTest {
                 .register(RolesAllowedDynamicFeature.class)
                 .register(new MockSecurityFilter(), Priorities.AUTHENTICATION)
                 .register(JerseyClient.createMoxyJsonResolver())
+                .register(new ContentEncodingFilter())
                 .register(GZipEncoder.class)
+                .register(DeflateEncoder.class)
                 .register(EncodingFilter.class);
     }
 
@@ -74,6 +94,9 @@ public class JerseyClientTest extends JerseyTest {
     private static String receivedDescription = null;
     private static String receivedSelectionValue = null;
     private static String receivedDependentValue = null;
+    private static String receivedContentEncoding = null;
+
+    private static final List<List<String>> receivedBatches = new CopyOnWriteArrayList<>();
 
     @BeforeEach
     public void resetState() {
@@ -81,6 +104,8 @@ public class JerseyClientTest extends JerseyTest {
         receivedDescription = null;
         receivedSelectionValue = null;
         receivedDependentValue = null;
+        receivedContentEncoding = null;
+        receivedBatches.clear();
     }
 
     @Path("multext")
@@ -107,6 +132,40 @@ public class JerseyClientTest extends JerseyTest {
             receivedDependentValue = dependentValue;
         }
 
+        @POST
+        @Path("batch")
+        @Consumes({MediaType.APPLICATION_XML})
+        @Produces({MediaType.APPLICATION_XML})
+        public SuggestionResults postBatch_Xml(final Suggestions suggestions) {
+            final List<String> batch = new ArrayList<>();
+            final SuggestionResults results = new SuggestionResults();
+            for(final Suggestion suggestion : suggestions.getSuggestion()) {
+                batch.add(suggestion.getValue());
+                if(suggestion.getValue().startsWith("omit")) {
+                    continue;
+                }
+                final SuggestionResult result = new SuggestionResult();
+                result.setSuccess(!suggestion.getValue().startsWith("reject"));
+                if(!result.isSuccess()) {
+                    result.setMessage("rejected " + suggestion.getValue());
+                }
+                results.getSuggestionResult().add(result);
+            }
+            receivedBatches.add(batch);
+            return results;
+        }
+
+        @POST
+        @Path("batch")
+        @Consumes({MediaType.APPLICATION_FORM_URLENCODED})
+        public void postBatch_FormData(final MultivaluedMap<String, String> formData) {
+            final List<String> batch = new ArrayList<>();
+            for(int i = 0; formData.containsKey("suggestion[" + i + "]"); i++) {
+                batch.add(formData.getFirst("suggestion[" + i + "]"));
+            }
+            receivedBatches.add(batch);
+        }
+
         @POST
         @Path("upload-qs")
         public void postUploadQueryString(@QueryParam("suggestion") final String suggestion, @QueryParam("description") final String description, @QueryParam("selectionValue") final String selectionValue, @QueryParam("dependentValue") final String dependentValue) {
@@ -390,6 +449,23 @@ public class JerseyClientTest extends JerseyTest {
         assertEquals(dependentValue, receivedDependentValue);
     }
 
+    @Test
+    public void postUploadSuggestionDescription_queryString_Encoded() {
+        final String suggestion = "ђак & ученик #1";
+        final String description = "a=b+c/d?e";
+        final String selectionValue = null;
+        final String dependentValue = null;
+
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload-qs?" + UploadInfo.UrlVar.SUGGESTION.camelName() + "=" + UploadInfo.UrlVar.SUGGESTION.var() + "&" + UploadInfo.UrlVar.DESCRIPTION.camelName() + "=" + UploadInfo.UrlVar.DESCRIPTION.var(), null, null, null);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+        assertEquals(selectionValue, receivedSelectionValue);
+        assertEquals(dependentValue, receivedDependentValue);
+    }
+
     @Test
     public void postUploadSuggestionDescription_queryString() {
         final String suggestion = "some-suggestion";
@@ -453,6 +529,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -471,12 +548,148 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
         assertEquals(dependentValue, receivedDependentValue);
     }
 
+    @Test
+    public void postUploadSuggestionDescription_Gzip_Level_Xml() {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.GZIP, false, false, null, 9, 0);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Gzip_BelowMinSize_Xml() {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.GZIP, false, false, null, null, 4096);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertNull(receivedContentEncoding);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Gzip_AboveMinSize_Xml() {
+        final StringBuilder suggestion = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            suggestion.append("some-suggestion-");
+        }
+        final String description = "some-description";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.GZIP, false, false, null, null, 1024);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion.toString(), description, null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
+        assertEquals(suggestion.toString(), receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Deflate_Xml() {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.DEFLATE, false, false, null, 1, 0);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals("deflate", receivedContentEncoding);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Deflate_FormData() {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.FORM, BodyInfo.Encoding.DEFLATE, false, false, null, null, 0);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals("deflate", receivedContentEncoding);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Metrics_Xml() {
+        final Metrics metrics = Metrics.getInstance();
+        final String url = getBaseUri() + "multext/upload?metrics";
+        final long requestBytes = metrics.counter(UploadMetrics.REQUEST_BYTES).sum();
+        final long networkCount = metrics.timer(UploadMetrics.PHASE_NETWORK).snapshot().getCount();
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, url, null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, "some-suggestion", "some-description", null, null, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals(1, metrics.counter(UploadMetrics.successCounter(url)).sum());
+        assertEquals(0, metrics.counter(UploadMetrics.failureCounter(url)).sum());
+        assertTrue(metrics.counter(UploadMetrics.REQUEST_BYTES).sum() > requestBytes);
+        assertTrue(metrics.timer(UploadMetrics.PHASE_NETWORK).snapshot().getCount() > networkCount);
+    }
+
+    @Test
+    public void preInitialize() throws JAXBException {
+        // the pooled client connects to a server, so would fail if the canned responses were not used
+        JerseyClientFactory.getInstance().getClient(ServerInfo.DEFAULT, null).preInitialize();
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Metrics_ConfiguredUrl_Xml() {
+        final Metrics metrics = Metrics.getInstance();
+        final String configuredUrl = "$baseUrl/multext/upload?metrics&password=$password";
+        final String url = getBaseUri() + "multext/upload?metrics&password=secret";
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, url, null, null, bodyInfo, false, null, null, configuredUrl);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, "some-suggestion", "some-description", null, null, null).isSuccess();
+
+        // the credentials are not exposed in the name of the counter
+        assertTrue(success);
+        assertEquals(1, metrics.counter(UploadMetrics.successCounter(configuredUrl)).sum());
+        assertEquals(0, metrics.counter(UploadMetrics.successCounter(url)).sum());
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Zstd_Unavailable_Xml() {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+
+        // a Zstandard level which is not a valid GZip level
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.ZSTD, false, false, null, 19, 0);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, null, null, null).isSuccess();
+
+        // zstd-jni is not on the test classpath, so falls back to gzip at its default level
+        assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+    }
+
     @Disabled("Until we figure out how to have Jersey server accept JSON JAXB objects")
     @Test
     public void postUploadSuggestion_GzipJson() {
@@ -490,6 +703,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -509,6 +723,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -527,6 +742,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -545,6 +761,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -701,6 +918,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -719,6 +937,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -738,6 +957,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -757,6 +977,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -793,6 +1014,7 @@ public class JerseyClientTest extends JerseyTest {
         final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
 
         assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
         assertEquals(suggestion, receivedSuggestion);
         assertEquals(description, receivedDescription);
         assertEquals(selectionValue, receivedSelectionValue);
@@ -894,6 +1116,205 @@ public class JerseyClientTest extends JerseyTest {
         assertEquals(dependentValue, receivedDependentValue);
     }
 
+    @Test
+    public void postUploadSuggestionDescription_Async_Xml() throws InterruptedException, ExecutionException {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+        final String selectionValue = null;
+        final String dependentValue = null;
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo, true);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestionAsync(uploadInfo, suggestion, description, selectionValue, dependentValue, null).get().isSuccess();
+
+        assertTrue(success);
+        assertEquals(suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+        assertEquals(selectionValue, receivedSelectionValue);
+        assertEquals(dependentValue, receivedDependentValue);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Async_NotFound_Xml() throws InterruptedException, ExecutionException {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+        final String selectionValue = null;
+        final String dependentValue = null;
+
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/no-such-upload", null, null, bodyInfo, true);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestionAsync(uploadInfo, suggestion, description, selectionValue, dependentValue, null).get().isSuccess();
+
+        assertFalse(success);
+        assertNull(receivedSuggestion);
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Transformed_Xml() throws URISyntaxException {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+        final String selectionValue = null;
+        final String dependentValue = null;
+
+        final java.nio.file.Path transformation = Paths.get(getClass().getResource("/upload-transformation.xslt").toURI());
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, transformation);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final JerseyClient jerseyClient = new JerseyClient(AuthenticationType.NONE, client());
+
+        // upload twice, the second upload uses the cached stylesheet
+        for(int i = 0; i < 2; i++) {
+            resetState();
+            final boolean success = jerseyClient.uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
+
+            assertTrue(success);
+            assertEquals("transformed-" + suggestion, receivedSuggestion);
+            assertEquals(description, receivedDescription);
+            assertEquals(selectionValue, receivedSelectionValue);
+            assertEquals(dependentValue, receivedDependentValue);
+        }
+    }
+
+    @Test
+    public void postUploadSuggestionDescription_Transformed_Gzip_Xml() throws URISyntaxException {
+        final String suggestion = "some-suggestion";
+        final String description = "some-description";
+        final String selectionValue = null;
+        final String dependentValue = null;
+
+        final java.nio.file.Path transformation = Paths.get(getClass().getResource("/upload-transformation.xslt").toURI());
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.GZIP, false, false, transformation);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final boolean success = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, suggestion, description, selectionValue, dependentValue, null).isSuccess();
+
+        assertTrue(success);
+        assertEquals("gzip", receivedContentEncoding);
+        assertEquals("transformed-" + suggestion, receivedSuggestion);
+        assertEquals(description, receivedDescription);
+        assertEquals(selectionValue, receivedSelectionValue);
+        assertEquals(dependentValue, receivedDependentValue);
+    }
+
+    @Test
+    public void postUploadSuggestion_Unreachable_IsRetryable() {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, "http://localhost:1/multext/upload", null, null, bodyInfo);
+
+        // NOTE: the in-memory test client never connects, so the pooled client is used instead
+        final Client.SuggestionResponse suggestionResponse = JerseyClientFactory.getInstance().getClient(ServerInfo.DEFAULT, null).uploadSuggestion(uploadInfo, "some-suggestion", null, null, null, null);
+
+        assertFalse(suggestionResponse.isSuccess());
+        assertTrue(suggestionResponse.isRetryable());
+    }
+
+    @Test
+    public void postUploadSuggestion_TransformationFails_IsNotRetryable() throws URISyntaxException {
+        final java.nio.file.Path transformation = Paths.get(getClass().getResource("/failing-transformation.xslt").toURI());
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, transformation);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+        final Client.SuggestionResponse suggestionResponse = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestion(uploadInfo, "some-suggestion", null, null, null, null);
+
+        assertFalse(suggestionResponse.isSuccess());
+        assertFalse(suggestionResponse.isRetryable());
+        assertNull(receivedSuggestion);
+    }
+
+    @Test
+    public void postUploadSuggestions_Batch_Xml() {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final BatchInfo batchInfo = new BatchInfo(getBaseUri() + "multext/batch", 0, 2);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo, false, batchInfo);
+
+        final List<Client.SuggestionUpload> suggestionUploads = Arrays.asList(
+                new Client.SuggestionUpload("suggestion-1", null, null, null, null),
+                new Client.SuggestionUpload("reject-2", null, null, null, null),
+                new Client.SuggestionUpload("suggestion-3", null, null, null, null)
+        );
+        final List<Client.SuggestionResponse> suggestionResponses = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestions(uploadInfo, suggestionUploads);
+
+        // maxSize of 2 means two batch requests
+        assertEquals(Arrays.asList(Arrays.asList("suggestion-1", "reject-2"), Arrays.asList("suggestion-3")), receivedBatches);
+
+        assertEquals(3, suggestionResponses.size());
+        assertTrue(suggestionResponses.get(0).isSuccess());
+        assertFalse(suggestionResponses.get(1).isSuccess());
+        assertFalse(suggestionResponses.get(1).isRetryable());
+        assertEquals("rejected reject-2", suggestionResponses.get(1).getMessage());
+        assertTrue(suggestionResponses.get(2).isSuccess());
+    }
+
+    @Test
+    public void postUploadSuggestions_Batch_MissingResult_Xml() {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final BatchInfo batchInfo = new BatchInfo(getBaseUri() + "multext/batch", 0, 10);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo, false, batchInfo);
+
+        final List<Client.SuggestionUpload> suggestionUploads = Arrays.asList(
+                new Client.SuggestionUpload("suggestion-1", null, null, null, null),
+                new Client.SuggestionUpload("omit-2", null, null, null, null)
+        );
+        final List<Client.SuggestionResponse> suggestionResponses = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestions(uploadInfo, suggestionUploads);
+
+        // without a result for each suggestion, it is unknown which were accepted
+        assertEquals(2, suggestionResponses.size());
+        for(final Client.SuggestionResponse suggestionResponse : suggestionResponses) {
+            assertFalse(suggestionResponse.isSuccess());
+            assertFalse(suggestionResponse.isRetryable());
+            assertTrue(suggestionResponse.isUnconfirmed());
+        }
+    }
+
+    @Test
+    public void postUploadSuggestions_Batch_FormData() {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.FORM, BodyInfo.Encoding.NONE, false, false, null);
+        final BatchInfo batchInfo = new BatchInfo(getBaseUri() + "multext/batch", 0, 10);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo, false, batchInfo);
+
+        final List<Client.SuggestionUpload> suggestionUploads = Arrays.asList(
+                new Client.SuggestionUpload("suggestion-1", null, null, null, null),
+                new Client.SuggestionUpload("suggestion-2", "description-2", null, null, null)
+        );
+        final List<Client.SuggestionResponse> suggestionResponses = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestions(uploadInfo, suggestionUploads);
+
+        assertEquals(Arrays.asList(Arrays.asList("suggestion-1", "suggestion-2")), receivedBatches);
+        assertTrue(suggestionResponses.get(0).isSuccess());
+        assertTrue(suggestionResponses.get(1).isSuccess());
+    }
+
+    @Test
+    public void postUploadSuggestions_Unbatched() {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo);
+
+        final List<Client.SuggestionUpload> suggestionUploads = Arrays.asList(
+                new Client.SuggestionUpload("suggestion-1", null, null, null, null),
+                new Client.SuggestionUpload("suggestion-2", null, null, null, null)
+        );
+        final List<Client.SuggestionResponse> suggestionResponses = new JerseyClient(AuthenticationType.NONE, client()).uploadSuggestions(uploadInfo, suggestionUploads);
+
+        assertTrue(receivedBatches.isEmpty());
+        assertEquals("suggestion-2", receivedSuggestion);
+        assertTrue(suggestionResponses.get(0).isSuccess());
+        assertTrue(suggestionResponses.get(1).isSuccess());
+    }
+
+    @Test
+    public void postUploadSuggestionAsync_Coalesced() throws ExecutionException, InterruptedException {
+        final BodyInfo bodyInfo = new BodyInfo(BodyInfo.BodyType.XML, BodyInfo.Encoding.NONE, false, false, null);
+        final BatchInfo batchInfo = new BatchInfo(getBaseUri() + "multext/batch", 60_000, 3);
+        final UploadInfo uploadInfo = new UploadInfo(UploadInfo.Method.POST, getBaseUri() + "multext/upload", null, null, bodyInfo, true, batchInfo);
+        final JerseyClient jerseyClient = new JerseyClient(AuthenticationType.NONE, client());
+
+        // the batch is sent as soon as it is full, long before the window elapses
+        final CompletableFuture<Client.SuggestionResponse> first = jerseyClient.uploadSuggestionAsync(uploadInfo, "suggestion-1", null, null, null, null);
+        final CompletableFuture<Client.SuggestionResponse> second = jerseyClient.uploadSuggestionAsync(uploadInfo, "reject-2", null, null, null, null);
+        final CompletableFuture<Client.SuggestionResponse> third = jerseyClient.uploadSuggestionAsync(uploadInfo, "suggestion-3", null, null, null, null);
+
+        assertTrue(first.get().isSuccess());
+        assertFalse(second.get().isSuccess());
+        assertTrue(third.get().isSuccess());
+        assertEquals(Arrays.asList(Arrays.asList("suggestion-1", "reject-2", "suggestion-3")), receivedBatches);
+    }
+
     //TODO(AR) maybe further secure tests for Digest and for PUT
 
     //TODO(AR) further tests for custom XML and JSON transformations of Upload
@@ -903,6 +1324,13 @@ public class JerseyClientTest extends JerseyTest {
     private final static String TEST_USERNAME = "user1";
     private final static String TEST_PASSWORD = "pass1";
 
+    public static class ContentEncodingFilter implements ContainerRequestFilter {
+        @Override
+        public void filter(final ContainerRequestContext requestContext) {
+            receivedContentEncoding = requestContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        }
+    }
+
     public static class MockSecurityFilter implements ContainerRequestFilter {
         @Override
         public void filter(final ContainerRequestContext requestContext) {
@@ -0,0 +1,75 @@
+/**
+ * TEI Authorizer
+ * An Oxygen XML Editor plugin for customizable attribute and value completion and/or creation for TEI P5 documents
+ * Copyright (C) 2016 Belgrade Center for Digital Humanities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.humanistika.oxygen.tei.authorizer.remote.impl;
+
+import net.sf.saxon.s9api.XsltExecutable;
+import org.humanistika.oxygen.tei.completer.response.TransformationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for {@link org.humanistika.oxygen.tei.authorizer.remote.impl.StylesheetCache}
+ *
+ * @author Adam Retter, Evolved Binary Ltd
+ * @version 1.0
+ * @serial 20160405
+ */
+public class StylesheetCacheTest {
+
+    private final static String STYLESHEET =
+            "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">" +
+            "<xsl:template match=\"/\"><result/></xsl:template>" +
+            "</xsl:stylesheet>";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void unmodifiedStylesheetIsNotRecompiled() throws IOException, TransformationException {
+        final Path stylesheet = Files.write(tempDir.resolve("unmodified.xslt"), STYLESHEET.getBytes(StandardCharsets.UTF_8));
+
+        final XsltExecutable first = StylesheetCache.getInstance().get(stylesheet);
+        final XsltExecutable second = StylesheetCache.getInstance().get(stylesheet);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void modifiedStylesheetIsRecompiled() throws IOException, TransformationException {
+        final Path stylesheet = Files.write(tempDir.resolve("modified.xslt"), STYLESHEET.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(stylesheet, FileTime.fromMillis(1_000_000));
+
+        final XsltExecutable first = StylesheetCache.getInstance().get(stylesheet);
+
+        Files.setLastModifiedTime(stylesheet, FileTime.fromMillis(2_000_000));
+        final XsltExecutable second = StylesheetCache.getInstance().get(stylesheet);
+
+        assertNotSame(first, second);
+    }
+}